@@ -0,0 +1,46 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.benchmark;
+
+import io.icw.contract.sdk.Address;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.math.BigInteger;
+
+/**
+ * Burns a random token and mints it back to the same owner, so the supply stays constant.
+ */
+public class BurnBenchmark extends BenchmarkSettings {
+
+    @Benchmark
+    public boolean burnAndRemint(CollectionState state) {
+        BigInteger tokenId = state.nextTokenId();
+        Address owner = state.token.ownerOf(tokenId);
+        state.actAs(owner);
+        state.token.burn(owner, tokenId);
+        state.actAs(state.minter);
+        return state.token.mint(owner, tokenId);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.benchmark;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.IRC721Full;
+import io.icw.token.emulator.Emulator;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An `IRC721Full` collection with `supply` tokens (ids 1..supply) spread over `supply / 10` holders.
+ */
+@State(Scope.Benchmark)
+public class CollectionState {
+
+    static final Address CONTRACT = new Address("irc721-benchmark");
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int supply;
+
+    @Param({"UNIFORM", "ZIPF", "WHALE"})
+    public OwnerDistribution distribution;
+
+    IRC721Full token;
+    Address minter;
+    Address[] holders;
+    BigInteger[] tokenIds;
+    private OwnerSampler sampler;
+    private final FastRandom random = new FastRandom(42);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        minter = new Address("minter");
+        actAs(minter);
+        token = new IRC721Full("Benchmark", "BNC");
+
+        holders = new Address[Math.max(10, supply / 10)];
+        List<List<BigInteger>> holdings = new ArrayList<List<BigInteger>>(holders.length);
+        for (int i = 0; i < holders.length; i++) {
+            holders[i] = new Address("holder-" + i);
+            holdings.add(new ArrayList<BigInteger>());
+        }
+        sampler = distribution.sampler(holders.length);
+        tokenIds = new BigInteger[supply];
+        for (int i = 0; i < supply; i++) {
+            tokenIds[i] = BigInteger.valueOf(i + 1);
+            holdings.get(sampler.next(random)).add(tokenIds[i]);
+        }
+        for (int i = 0; i < holders.length; i++) {
+            List<BigInteger> ids = holdings.get(i);
+            if (!ids.isEmpty()) {
+                token.batchMint(holders[i], ids.toArray(new BigInteger[ids.size()]));
+            }
+        }
+    }
+
+    /**
+     * Makes `sender` the caller of the following contract calls on this thread
+     */
+    void actAs(Address sender) {
+        Emulator.setContractAddress(CONTRACT);
+        Emulator.setSender(sender);
+    }
+
+    Address nextHolder() {
+        return holders[sampler.next(random)];
+    }
+
+    BigInteger nextTokenId() {
+        return tokenIds[random.nextInt(supply)];
+    }
+
+    int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.benchmark;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.IRC721Full;
+import io.icw.token.emulator.ContractHandler;
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.cost.CostProfiler;
+import io.icw.token.emulator.cost.Instrumentation;
+
+import java.math.BigInteger;
+
+/**
+ * Runs a fixed workload against an instrumented collection and prints the cost histogram of every
+ * public entry point as CSV, to be diffed between releases.
+ * <p>Usage: `CostReport [supply] [distribution] [operations]`, defaults to `10000 ZIPF 10000`.</p>
+ */
+public class CostReport {
+
+    private static final int BATCH_SIZE = 10;
+
+    public static void main(String[] args) {
+        CollectionState state = new CollectionState();
+        state.supply = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        state.distribution = args.length > 1 ? OwnerDistribution.valueOf(args[1]) : OwnerDistribution.ZIPF;
+        int operations = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        state.setUp();
+
+        final IRC721Full token = Instrumentation.instrument(state.token);
+        final Address receiver = new Address("receiver-contract");
+        final Address registeredReceiver = new Address("registered-receiver-contract");
+        ContractHandler acceptAll = new ContractHandler() {
+            @Override
+            public String invoke(String methodName, String[][] args) {
+                // accepts every token and supports every interface, IIRC721UnconditionalReceiver included
+                return "true";
+            }
+        };
+        Emulator.deploy(receiver, acceptAll);
+        Emulator.deploy(registeredReceiver, acceptAll);
+        token.registerUnconditionalReceiver(registeredReceiver);
+        CostProfiler profiler = new CostProfiler();
+        long nextId = state.supply + 1;
+        for (int i = 0; i < operations; i++) {
+            final BigInteger tokenId = state.nextTokenId();
+            final Address owner = token.ownerOf(tokenId);
+            final Address to = state.nextHolder();
+            final Address operator = state.nextHolder();
+            state.actAs(owner);
+            profiler.measure("ownerOf", () -> token.ownerOf(tokenId));
+            profiler.measure("balanceOf", () -> token.balanceOf(owner));
+            profiler.measure("tokenByIndex", () -> token.tokenByIndex(state.nextInt(state.supply)));
+            profiler.measure("tokenOfOwnerByIndex", () -> token.tokenOfOwnerByIndex(owner, state.nextInt(token.balanceOf(owner))));
+            profiler.measure("tokenURI", () -> token.tokenURI(tokenId));
+            if (!operator.equals(owner)) {
+                profiler.measure("setApprovalForAll", () -> token.setApprovalForAll(operator, true));
+                profiler.measure("isApprovedForAll", () -> token.isApprovedForAll(owner, operator));
+                profiler.measure("setApprovalForAll", () -> token.setApprovalForAll(operator, false));
+            }
+            if (!to.equals(owner)) {
+                profiler.measure("approve", () -> token.approve(to, tokenId));
+                profiler.measure("getApproved", () -> token.getApproved(tokenId));
+            }
+            switch (i % 5) {
+                case 0:
+                    profiler.measure("transferFrom", () -> token.transferFrom(owner, to, tokenId));
+                    break;
+                case 1:
+                    profiler.measure("safeTransferFrom", () -> token.safeTransferFrom(owner, to, tokenId));
+                    break;
+                case 2:
+                    profiler.measure("safeTransferFrom(contract)", () -> token.safeTransferFrom(owner, receiver, tokenId));
+                    break;
+                case 3:
+                    profiler.measure("safeTransferFrom(registered contract)", () -> token.safeTransferFrom(owner, registeredReceiver, tokenId));
+                    break;
+                default:
+                    profiler.measure("burn", () -> token.burn(owner, tokenId));
+                    state.actAs(state.minter);
+                    profiler.measure("mint", () -> token.mint(owner, tokenId));
+            }
+
+            state.actAs(state.minter);
+            final BigInteger[] batch = new BigInteger[BATCH_SIZE];
+            for (int j = 0; j < BATCH_SIZE; j++) {
+                batch[j] = BigInteger.valueOf(nextId++);
+            }
+            profiler.measure("batchMint(" + BATCH_SIZE + ")", () -> token.batchMint(to, batch));
+            final BigInteger startId = BigInteger.valueOf(nextId);
+            nextId += BATCH_SIZE;
+            profiler.measure("mintRange(" + BATCH_SIZE + ")", () -> token.mintRange(to, startId, BATCH_SIZE));
+            state.actAs(to);
+            profiler.measure("batchTransferFrom(" + BATCH_SIZE + ")", () -> token.batchTransferFrom(to, owner, batch));
+            state.actAs(owner);
+            for (final BigInteger minted : batch) {
+                profiler.measure("burn", () -> token.burn(owner, minted));
+            }
+            state.actAs(to);
+            for (int j = 0; j < BATCH_SIZE; j++) {
+                final BigInteger minted = startId.add(BigInteger.valueOf(j));
+                profiler.measure("burn", () -> token.burn(to, minted));
+            }
+        }
+        profiler.report(System.out);
+    }
+}
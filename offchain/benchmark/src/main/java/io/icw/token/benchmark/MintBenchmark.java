@@ -0,0 +1,94 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mints fresh ids above the collection's supply, the tokens minted by an iteration are burnt after it.
+ */
+@State(Scope.Benchmark)
+public class MintBenchmark extends BenchmarkSettings {
+
+    private static final int BATCH_SIZE = 100;
+
+    private long nextId;
+    private final List<BigInteger> minted = new ArrayList<BigInteger>();
+
+    @Setup(Level.Iteration)
+    public void startIteration(CollectionState state) {
+        nextId = state.supply + 1;
+    }
+
+    @TearDown(Level.Iteration)
+    public void burnMinted(CollectionState state) {
+        for (BigInteger tokenId : minted) {
+            state.actAs(state.token.ownerOf(tokenId));
+            state.token.burn(state.token.ownerOf(tokenId), tokenId);
+        }
+        minted.clear();
+    }
+
+    @Benchmark
+    public boolean mint(CollectionState state) {
+        state.actAs(state.minter);
+        BigInteger tokenId = BigInteger.valueOf(nextId++);
+        minted.add(tokenId);
+        return state.token.mint(state.nextHolder(), tokenId);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public boolean batchMint(CollectionState state) {
+        state.actAs(state.minter);
+        BigInteger[] tokenIds = new BigInteger[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            tokenIds[i] = BigInteger.valueOf(nextId++);
+            minted.add(tokenIds[i]);
+        }
+        return state.token.batchMint(state.nextHolder(), tokenIds);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public boolean mintRange(CollectionState state) {
+        state.actAs(state.minter);
+        BigInteger startId = BigInteger.valueOf(nextId);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            minted.add(BigInteger.valueOf(nextId++));
+        }
+        return state.token.mintRange(state.nextHolder(), startId, BATCH_SIZE);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.benchmark;
+
+/**
+ * Draws holder indexes according to an {@link OwnerDistribution}.
+ */
+final class OwnerSampler {
+
+    private final OwnerDistribution distribution;
+    private final int holders;
+    private final double[] zipfCdf;
+
+    OwnerSampler(OwnerDistribution distribution, int holders) {
+        this.distribution = distribution;
+        this.holders = holders;
+        if (distribution == OwnerDistribution.ZIPF) {
+            zipfCdf = new double[holders];
+            double sum = 0;
+            for (int k = 0; k < holders; k++) {
+                sum += 1.0 / (k + 1);
+                zipfCdf[k] = sum;
+            }
+            for (int k = 0; k < holders; k++) {
+                zipfCdf[k] /= sum;
+            }
+        } else {
+            zipfCdf = null;
+        }
+    }
+
+    int next(FastRandom random) {
+        switch (distribution) {
+            case ZIPF:
+                double u = random.nextDouble();
+                int low = 0;
+                int high = holders - 1;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (zipfCdf[mid] < u) {
+                        low = mid + 1;
+                    } else {
+                        high = mid;
+                    }
+                }
+                return low;
+            case WHALE:
+                return random.nextInt(2) == 0 ? 0 : random.nextInt(holders);
+            default:
+                return random.nextInt(holders);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.benchmark;
+
+import io.icw.contract.sdk.Address;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.math.BigInteger;
+
+/**
+ * Indexed and point reads on an unchanging collection.
+ */
+public class ReadBenchmark extends BenchmarkSettings {
+
+    @Benchmark
+    public Address ownerOf(CollectionState state) {
+        return state.token.ownerOf(state.nextTokenId());
+    }
+
+    @Benchmark
+    public int balanceOf(CollectionState state) {
+        return state.token.balanceOf(state.nextHolder());
+    }
+
+    @Benchmark
+    public BigInteger tokenByIndex(CollectionState state) {
+        return state.token.tokenByIndex(state.nextInt(state.supply));
+    }
+
+    @Benchmark
+    public BigInteger tokenOfOwnerByIndex(CollectionState state) {
+        Address owner = state.token.ownerOf(state.nextTokenId());
+        return state.token.tokenOfOwnerByIndex(owner, state.nextInt(state.token.balanceOf(owner)));
+    }
+
+    @Benchmark
+    public String tokensPaged(CollectionState state) {
+        return state.token.tokensPaged(state.nextInt(state.supply), 100);
+    }
+}
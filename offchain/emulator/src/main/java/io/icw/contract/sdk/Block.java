@@ -21,28 +21,24 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
-package io.icw.token.model;
+
+package io.icw.contract.sdk;
+
+import io.icw.token.emulator.Emulator;
 
 /**
- * @author: PierreLuo
- * @date: 2019-06-04
+ * Stand-in of the contract SDK block context.
  */
-public class Counter {
-    private int value;
-
-    public Counter() {
-        this.value = 0;
-    }
+public class Block {
 
-    public int current() {
-        return value;
+    private Block() {
     }
 
-    public void increment() {
-        value++;
+    public static long number() {
+        return Emulator.blockNumber();
     }
 
-    public void decrement() {
-        value--;
+    public static long timestamp() {
+        return Emulator.blockTimestamp();
     }
 }
@@ -0,0 +1,61 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.contract.sdk;
+
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.RevertException;
+
+/**
+ * Stand-in of the contract SDK utilities, a failed `require` throws {@link RevertException}.
+ */
+public class Utils {
+
+    private Utils() {
+    }
+
+    public static void emit(Event event) {
+        Emulator.emit(event);
+    }
+
+    public static void require(boolean expression) {
+        if (!expression) {
+            revert();
+        }
+    }
+
+    public static void require(boolean expression, String errorMessage) {
+        if (!expression) {
+            revert(errorMessage);
+        }
+    }
+
+    public static void revert() {
+        revert(null);
+    }
+
+    public static void revert(String errorMessage) {
+        throw new RevertException(errorMessage);
+    }
+}
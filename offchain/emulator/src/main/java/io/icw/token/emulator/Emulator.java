@@ -0,0 +1,153 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator;
+
+import io.icw.contract.sdk.Address;
+import io.icw.contract.sdk.Event;
+import io.icw.token.emulator.cost.CostMeter;
+import io.icw.token.emulator.cost.CostMetric;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Execution context behind the SDK stand-in.
+ * <p>The message context (sender, executing contract, event listener) is per thread, so independent
+ * threads can drive contract instances concurrently. Deployed contracts and the block are shared.</p>
+ */
+public final class Emulator {
+
+    private static final ThreadLocal<Frame> FRAME = new ThreadLocal<Frame>() {
+        @Override
+        protected Frame initialValue() {
+            return new Frame();
+        }
+    };
+    private static final Map<Address, ContractHandler> CONTRACTS = new ConcurrentHashMap<Address, ContractHandler>();
+    private static volatile long blockNumber;
+    private static volatile long blockTimestamp;
+
+    private Emulator() {
+    }
+
+    public static void setSender(Address sender) {
+        FRAME.get().sender = sender;
+    }
+
+    public static void setContractAddress(Address contractAddress) {
+        FRAME.get().contractAddress = contractAddress;
+    }
+
+    /**
+     * Receives the events emitted on the current thread, null drops them
+     */
+    public static void setEventListener(EventListener listener) {
+        FRAME.get().listener = listener;
+    }
+
+    public static EventListener eventListener() {
+        return FRAME.get().listener;
+    }
+
+    /**
+     * While isolated, {@link #call} refuses to leave the current contract and throws {@link IsolationException}
+     */
+    public static void setIsolated(boolean isolated) {
+        FRAME.get().isolated = isolated;
+    }
+
+    public static void setBlock(long number, long timestamp) {
+        blockNumber = number;
+        blockTimestamp = timestamp;
+    }
+
+    public static void deploy(Address address, ContractHandler handler) {
+        CONTRACTS.put(address, handler);
+    }
+
+    public static void undeploy(Address address) {
+        CONTRACTS.remove(address);
+    }
+
+    public static Address sender() {
+        return FRAME.get().sender;
+    }
+
+    public static Address contractAddress() {
+        return FRAME.get().contractAddress;
+    }
+
+    public static long blockNumber() {
+        return blockNumber;
+    }
+
+    public static long blockTimestamp() {
+        return blockTimestamp;
+    }
+
+    public static void emit(Event event) {
+        CostMeter.count(CostMetric.EVENT);
+        Frame frame = FRAME.get();
+        if (frame.listener != null) {
+            frame.listener.onEvent(frame.contractAddress, event);
+        }
+    }
+
+    public static boolean isContract(Address address) {
+        return CONTRACTS.containsKey(address);
+    }
+
+    /**
+     * Calls `target` with the executing contract as sender, then restores the message context
+     */
+    public static String call(Address target, String methodName, String[][] args) {
+        CostMeter.count(CostMetric.CROSS_CONTRACT_CALL);
+        ContractHandler handler = CONTRACTS.get(target);
+        if (handler == null) {
+            throw new RevertException("[" + target + "] is not contract address");
+        }
+        Frame frame = FRAME.get();
+        if (frame.isolated) {
+            throw new IsolationException("call to [" + target + "] leaves the isolated contract");
+        }
+        Address sender = frame.sender;
+        Address contractAddress = frame.contractAddress;
+        frame.sender = contractAddress;
+        frame.contractAddress = target;
+        try {
+            return handler.invoke(methodName, args);
+        } finally {
+            frame.sender = sender;
+            frame.contractAddress = contractAddress;
+        }
+    }
+
+    private static final class Frame {
+        private Address sender;
+        private Address contractAddress;
+        private EventListener listener;
+        private boolean isolated;
+    }
+}
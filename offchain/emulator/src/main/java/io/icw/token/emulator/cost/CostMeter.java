@@ -0,0 +1,67 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.cost;
+
+/**
+ * Counts the cost of the entry point running on the current thread.
+ * <p>Until a {@link CostProfiler} measures a call, {@link #count(CostMetric)} is a single volatile read.</p>
+ */
+public final class CostMeter {
+
+    private static final ThreadLocal<long[]> CURRENT = new ThreadLocal<long[]>();
+    private static volatile boolean enabled;
+
+    private CostMeter() {
+    }
+
+    public static void count(CostMetric metric) {
+        if (!enabled) {
+            return;
+        }
+        long[] counters = CURRENT.get();
+        if (counters != null) {
+            counters[metric.ordinal()]++;
+        }
+    }
+
+    static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * @return The counters of the entry point running on this thread, null if none is measured
+     */
+    static long[] current() {
+        return CURRENT.get();
+    }
+
+    static void start(long[] counters) {
+        CURRENT.set(counters);
+    }
+
+    static void stop() {
+        CURRENT.remove();
+    }
+}
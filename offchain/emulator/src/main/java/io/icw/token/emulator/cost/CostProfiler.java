@@ -0,0 +1,142 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.cost;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregates the cost of contract entry points into per-metric histograms.
+ * <pre>
+ *     CostProfiler profiler = new CostProfiler();
+ *     Instrumentation.instrument(token);
+ *     profiler.measure("transferFrom", () -&gt; token.transferFrom(from, to, tokenId));
+ *     profiler.report(System.out);
+ * </pre>
+ * Calls made while an entry point is measured on the same thread count towards that entry point.
+ */
+public class CostProfiler {
+
+    private final Map<String, EntryPointStats> entryPoints = new TreeMap<String, EntryPointStats>();
+
+    public CostProfiler() {
+        CostMeter.enable();
+    }
+
+    public void measure(String entryPoint, Runnable call) {
+        if (CostMeter.current() != null) {
+            call.run();
+            return;
+        }
+        long[] counters = new long[CostMetric.values().length];
+        CostMeter.start(counters);
+        try {
+            call.run();
+        } finally {
+            CostMeter.stop();
+            record(entryPoint, counters);
+        }
+    }
+
+    private synchronized void record(String entryPoint, long[] counters) {
+        EntryPointStats stats = entryPoints.get(entryPoint);
+        if (stats == null) {
+            stats = new EntryPointStats();
+            entryPoints.put(entryPoint, stats);
+        }
+        stats.add(counters);
+    }
+
+    /**
+     * Prints one CSV line per entry point and metric, ordered so that reports of two releases diff line by line
+     */
+    public synchronized void report(PrintStream out) {
+        out.println("entryPoint,metric,calls,total,mean,p50,p90,p99,max");
+        for (Map.Entry<String, EntryPointStats> entry : entryPoints.entrySet()) {
+            EntryPointStats stats = entry.getValue();
+            for (CostMetric metric : CostMetric.values()) {
+                Histogram histogram = stats.histograms[metric.ordinal()];
+                out.printf("%s,%s,%d,%d,%.2f,%d,%d,%d,%d%n", entry.getKey(), metric, stats.calls, histogram.total,
+                        stats.calls == 0 ? 0.0 : (double) histogram.total / stats.calls,
+                        histogram.percentile(0.50), histogram.percentile(0.90), histogram.percentile(0.99), histogram.max());
+            }
+        }
+    }
+
+    public synchronized void reset() {
+        entryPoints.clear();
+    }
+
+    private static final class EntryPointStats {
+        private long calls;
+        private final Histogram[] histograms = new Histogram[CostMetric.values().length];
+
+        private EntryPointStats() {
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new Histogram();
+            }
+        }
+
+        private void add(long[] counters) {
+            calls++;
+            for (int i = 0; i < counters.length; i++) {
+                histograms[i].add(counters[i]);
+            }
+        }
+    }
+
+    /**
+     * Exact count of calls per observed value, the values of one metric per call are small
+     */
+    private static final class Histogram {
+        private final TreeMap<Long, Long> callsByValue = new TreeMap<Long, Long>();
+        private long calls;
+        private long total;
+
+        private void add(long value) {
+            Long count = callsByValue.get(value);
+            callsByValue.put(value, count == null ? 1L : count + 1);
+            calls++;
+            total += value;
+        }
+
+        private long percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * calls);
+            long seen = 0;
+            for (Map.Entry<Long, Long> entry : callsByValue.entrySet()) {
+                seen += entry.getValue();
+                if (seen >= rank) {
+                    return entry.getKey();
+                }
+            }
+            return 0;
+        }
+
+        private long max() {
+            return callsByValue.isEmpty() ? 0 : callsByValue.lastKey();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.cost;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.storage.AddressPairSet;
+
+/**
+ * Counting view of an existing {@link AddressPairSet}, every call is forwarded to it.
+ */
+class CountingAddressPairSet extends AddressPairSet {
+
+    private final AddressPairSet state;
+
+    CountingAddressPairSet(AddressPairSet state) {
+        this.state = state;
+    }
+
+    @Override
+    public int size() {
+        return state.size();
+    }
+
+    @Override
+    public boolean contains(Address first, Address second) {
+        CostMeter.count(CostMetric.STORAGE_READ);
+        return state.contains(first, second);
+    }
+
+    @Override
+    public boolean add(Address first, Address second) {
+        CostMeter.count(CostMetric.STORAGE_WRITE);
+        return state.add(first, second);
+    }
+
+    @Override
+    public boolean remove(Address first, Address second) {
+        CostMeter.count(CostMetric.STORAGE_WRITE);
+        return state.remove(first, second);
+    }
+
+    @Override
+    public int slots() {
+        return state.slots();
+    }
+
+    @Override
+    public Address firstAt(int slot) {
+        return state.firstAt(slot);
+    }
+
+    @Override
+    public Address secondAt(int slot) {
+        return state.secondAt(slot);
+    }
+}
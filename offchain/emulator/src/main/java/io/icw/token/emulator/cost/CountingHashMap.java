@@ -0,0 +1,84 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.cost;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * List values (the per-owner token lists) are handed out as {@link CountingArrayList}s. A list put by the
+ * contract is stored as it is, the caller keeps appending to it, and is swapped for a counting copy on its
+ * next lookup.
+ */
+class CountingHashMap<K, V> extends HashMap<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    CountingHashMap(Map<K, V> state) {
+        super(state);
+        for (Map.Entry<K, V> entry : entrySet()) {
+            entry.setValue(counting(entry.getValue()));
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        CostMeter.count(CostMetric.STORAGE_READ);
+        V value = super.get(key);
+        if (value instanceof ArrayList && !(value instanceof CountingArrayList)) {
+            value = counting(value);
+            super.put((K) key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        CostMeter.count(CostMetric.STORAGE_READ);
+        return super.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        CostMeter.count(CostMetric.STORAGE_WRITE);
+        return super.put(key, value);
+    }
+
+    @Override
+    public V remove(Object key) {
+        CostMeter.count(CostMetric.STORAGE_WRITE);
+        return super.remove(key);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <V> V counting(V value) {
+        if (value instanceof ArrayList && !(value instanceof CountingArrayList)) {
+            return (V) new CountingArrayList((ArrayList) value);
+        }
+        return value;
+    }
+}
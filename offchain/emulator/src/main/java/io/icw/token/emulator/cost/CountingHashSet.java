@@ -0,0 +1,55 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.cost;
+
+import java.util.HashSet;
+import java.util.Set;
+
+class CountingHashSet<E> extends HashSet<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    CountingHashSet(Set<E> state) {
+        super(state);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        CostMeter.count(CostMetric.STORAGE_READ);
+        return super.contains(o);
+    }
+
+    @Override
+    public boolean add(E e) {
+        CostMeter.count(CostMetric.STORAGE_WRITE);
+        return super.add(e);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        CostMeter.count(CostMetric.STORAGE_WRITE);
+        return super.remove(o);
+    }
+}
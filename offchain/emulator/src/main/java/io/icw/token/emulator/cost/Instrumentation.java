@@ -0,0 +1,97 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.cost;
+
+import io.icw.token.storage.AddressIntMap;
+import io.icw.token.storage.AddressPairSet;
+import io.icw.token.storage.TokenIdIntMap;
+import io.icw.token.storage.TokenIdMap;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Swaps the state containers of a contract instance (`IRC721Base`, `IRC721EnumerableBase`,
+ * `IRC721FullBase` and their storages) for counting copies that report to {@link CostMeter}.
+ * <p>An instance that is not instrumented runs the plain containers, without any metering cost.
+ * Lists nested in maps (the per-owner token lists) are counted like list fields once they are looked up
+ * through the map, the appends to the list of a new owner in the call that creates it are not.</p>
+ */
+public final class Instrumentation {
+
+    private static final String CONTRACT_PACKAGE = "io.icw.token.";
+
+    private Instrumentation() {
+    }
+
+    public static <T> T instrument(T contract) {
+        instrument(contract, new IdentityHashMap<Object, Boolean>());
+        return contract;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void instrument(Object target, Map<Object, Boolean> visited) {
+        if (visited.put(target, Boolean.TRUE) != null) {
+            return;
+        }
+        for (Class<?> type = target.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                try {
+                    Object value = field.get(target);
+                    if (value == null || value.getClass().getName().startsWith(Instrumentation.class.getPackage().getName())) {
+                        continue;
+                    }
+                    if (value instanceof Map) {
+                        field.set(target, new CountingHashMap((Map) value));
+                    } else if (value instanceof Set) {
+                        field.set(target, new CountingHashSet((Set) value));
+                    } else if (value instanceof ArrayList) {
+                        field.set(target, new CountingArrayList((ArrayList) value));
+                    } else if (value instanceof TokenIdMap) {
+                        field.set(target, new CountingTokenIdMap((TokenIdMap) value));
+                    } else if (value instanceof AddressIntMap) {
+                        field.set(target, new CountingAddressIntMap((AddressIntMap) value));
+                    } else if (value instanceof AddressPairSet) {
+                        field.set(target, new CountingAddressPairSet((AddressPairSet) value));
+                    } else if (value instanceof TokenIdIntMap) {
+                        field.set(target, new CountingTokenIdIntMap((TokenIdIntMap) value));
+                    } else if (value.getClass().getName().startsWith(CONTRACT_PACKAGE)) {
+                        instrument(value, visited);
+                    }
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("can not instrument " + field, e);
+                }
+            }
+        }
+    }
+}
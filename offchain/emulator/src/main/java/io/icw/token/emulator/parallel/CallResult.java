@@ -0,0 +1,60 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+/**
+ * Outcome of one {@link ContractCall}: its return value or the exception that reverted it.
+ */
+public final class CallResult {
+
+    private final Object value;
+    private final RuntimeException error;
+    private final boolean reexecuted;
+
+    CallResult(Object value, RuntimeException error, boolean reexecuted) {
+        this.value = value;
+        this.error = error;
+        this.reexecuted = reexecuted;
+    }
+
+    public boolean isSucceeded() {
+        return error == null;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * @return true if the speculative run was discarded and the call ran again in order
+     */
+    public boolean isReexecuted() {
+        return reexecuted;
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.EventListener;
+import io.icw.token.emulator.state.PlainFields;
+import io.icw.token.emulator.state.StateContainers;
+import io.icw.token.emulator.state.StripedStateBackend;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One contract instance shared by any number of threads, over the {@link StripedStateBackend}.
+ * <p>Each call runs in a {@link Transaction} that locks the keys it touches, striped by token id, owner
+ * address, operator pair and list, and holds them until its buffered writes are committed: calls on
+ * different keys (independent transfers) run concurrently and the outcome is the one of some serial order.
+ * A call that can not take a lock in time drops its writes and runs again. Barrier calls run alone.</p>
+ * <p>Plain fields ({@link PlainFields}: `baseURI`, the token range of the sequential owner storage) are only
+ * assigned by calls running alone: a call runs on a replica of the contract with its own plain fields over the
+ * same state containers, a call that changed one drops its writes and runs again alone on the contract, as a
+ * barrier, its plain fields restored if it reverts.</p>
+ * <p>{@link #view} runs without transaction nor key lock, between barriers: it sees each key at its latest
+ * committed value.</p>
+ * <p>Calls reaching state that can not be isolated (a walk of a map or set field) fail with
+ * {@link io.icw.token.emulator.IsolationException}.</p>
+ */
+public class ConcurrentContract<T> {
+
+    private static final int DEFAULT_STRIPES = 1024;
+    private static final long LOCK_TIMEOUT_NANOS = 2000000L;
+
+    private final T contract;
+    private final Address contractAddress;
+    private final EventListener listener;
+    private final StripedLocks locks;
+    private final ReentrantReadWriteLock barrier = new ReentrantReadWriteLock();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    /**
+     * Replica of the contract kept by each thread while the plain fields it copied are current
+     */
+    private final ThreadLocal<Replica<T>> replicas = new ThreadLocal<Replica<T>>();
+    /**
+     * Count of barrier calls, a replica copied before the last one may be stale
+     */
+    private volatile long barriers;
+
+    /**
+     * @param listener Receives the events of the committed calls, from the calling threads, null drops them
+     */
+    public ConcurrentContract(T contract, Address contractAddress, EventListener listener) {
+        this(contract, contractAddress, listener, DEFAULT_STRIPES);
+    }
+
+    public ConcurrentContract(T contract, Address contractAddress, EventListener listener, int stripes) {
+        this.contract = StateContainers.install(contract, new TransactionalBackend(new StripedStateBackend()));
+        this.contractAddress = contractAddress;
+        this.listener = listener;
+        this.locks = new StripedLocks(stripes, LOCK_TIMEOUT_NANOS);
+    }
+
+    public CallResult call(ContractCall<T> call) {
+        if (!call.isBarrier()) {
+            CallResult result = runConcurrently(call);
+            if (result != null) {
+                return result;
+            }
+        }
+        barrier.writeLock().lock();
+        try {
+            return runAlone(call);
+        } finally {
+            barrier.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The result of the call, null if it changed a plain field and must run alone
+     */
+    private CallResult runConcurrently(ContractCall<T> call) {
+        barrier.readLock().lock();
+        try {
+            Set<Integer> exclusiveStripes = new HashSet<Integer>();
+            for (int attempt = 0; ; attempt++) {
+                Replica<T> replica = replica();
+                Transaction transaction = new Transaction(locks, exclusiveStripes);
+                try {
+                    Object value;
+                    RuntimeException error = null;
+                    try {
+                        value = run(call, replica.contract, transaction);
+                    } catch (LockConflictException e) {
+                        retried.incrementAndGet();
+                        transaction.release();
+                        dropIfChanged(replica);
+                        backOff(attempt);
+                        continue;
+                    } catch (RuntimeException e) {
+                        value = null;
+                        error = e;
+                    }
+                    if (dropIfChanged(replica) && error == null) {
+                        return null;
+                    }
+                    if (error != null) {
+                        return new CallResult(null, error, attempt > 0);
+                    }
+                    transaction.commit();
+                    transaction.replayEvents(listener);
+                    committed.incrementAndGet();
+                    return new CallResult(value, null, attempt > 0);
+                } finally {
+                    transaction.release();
+                }
+            }
+        } finally {
+            barrier.readLock().unlock();
+        }
+    }
+
+    /**
+     * Run a read-only operation on the committed state
+     */
+    public Object view(Address sender, ContractCall.Operation<T> operation) {
+        Address previousSender = Emulator.sender();
+        Address previousContract = Emulator.contractAddress();
+        Emulator.setSender(sender);
+        Emulator.setContractAddress(contractAddress);
+        barrier.readLock().lock();
+        try {
+            return operation.apply(contract);
+        } finally {
+            barrier.readLock().unlock();
+            Emulator.setSender(previousSender);
+            Emulator.setContractAddress(previousContract);
+        }
+    }
+
+    /**
+     * @return The count of committed calls
+     */
+    public long getCommitted() {
+        return committed.get();
+    }
+
+    /**
+     * @return The count of attempts dropped for a lock conflict
+     */
+    public long getRetried() {
+        return retried.get();
+    }
+
+    private Object run(ContractCall<T> call, T target, Transaction transaction) {
+        Address sender = Emulator.sender();
+        Address contractAddress = Emulator.contractAddress();
+        EventListener listener = Emulator.eventListener();
+        Emulator.setSender(call.getSender());
+        Emulator.setContractAddress(this.contractAddress);
+        Emulator.setEventListener(transaction);
+        Transaction.setCurrent(transaction);
+        try {
+            return call.getOperation().apply(target);
+        } finally {
+            Transaction.setCurrent(null);
+            Emulator.setSender(sender);
+            Emulator.setContractAddress(contractAddress);
+            Emulator.setEventListener(listener);
+        }
+    }
+
+    /**
+     * Run a barrier call, alone, in a transaction without locks, its plain fields restored if it reverts
+     */
+    private CallResult runAlone(ContractCall<T> call) {
+        barriers++;
+        PlainFields fields = PlainFields.capture(contract);
+        Transaction transaction = new Transaction();
+        try {
+            Object value = run(call, contract, transaction);
+            transaction.commit();
+            transaction.replayEvents(listener);
+            committed.incrementAndGet();
+            return new CallResult(value, null, false);
+        } catch (RuntimeException e) {
+            fields.restore();
+            return new CallResult(null, e, false);
+        }
+    }
+
+    /**
+     * @return The replica of the contract of the current thread, copied again after a barrier
+     */
+    private Replica<T> replica() {
+        Replica<T> replica = replicas.get();
+        if (replica == null || replica.barriers != barriers) {
+            replica = new Replica<T>(Replicas.replicate(contract), PlainFields.capture(contract), barriers);
+            replicas.set(replica);
+        }
+        return replica;
+    }
+
+    /**
+     * @return true if the call changed a plain field of `replica`, which is then dropped
+     */
+    private boolean dropIfChanged(Replica<T> replica) {
+        if (replica.fields.matches(replica.contract)) {
+            return false;
+        }
+        replicas.remove();
+        return true;
+    }
+
+    private static void backOff(int attempt) {
+        if (attempt < 2) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(1000L << Math.min(attempt, 10)));
+        }
+    }
+
+    private static final class Replica<T> {
+        private final T contract;
+        private final PlainFields fields;
+        private final long barriers;
+
+        private Replica(T contract, PlainFields fields, long barriers) {
+            this.contract = contract;
+            this.fields = fields;
+            this.barriers = barriers;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.contract.sdk.Address;
+
+/**
+ * One call submitted to a {@link ParallelExecutor}.
+ * <p>Calls assigning plain fields of the contract (`changeBaseURI`, the sequential owner storage) are
+ * invisible to the read/write tracking, a {@link ParallelExecutor} runs such a call again in order with every
+ * later call of its batch: they are best submitted as barriers.</p>
+ */
+public final class ContractCall<T> {
+
+    public interface Operation<T> {
+        Object apply(T contract);
+    }
+
+    private final Address sender;
+    private final Operation<T> operation;
+    private final boolean barrier;
+
+    private ContractCall(Address sender, Operation<T> operation, boolean barrier) {
+        this.sender = sender;
+        this.operation = operation;
+        this.barrier = barrier;
+    }
+
+    public static <T> ContractCall<T> of(Address sender, Operation<T> operation) {
+        return new ContractCall<T>(sender, operation, false);
+    }
+
+    /**
+     * A call run alone, after every call before it and before every call after it
+     */
+    public static <T> ContractCall<T> barrier(Address sender, Operation<T> operation) {
+        return new ContractCall<T>(sender, operation, true);
+    }
+
+    public Address getSender() {
+        return sender;
+    }
+
+    public Operation<T> getOperation() {
+        return operation;
+    }
+
+    public boolean isBarrier() {
+        return barrier;
+    }
+}
@@ -0,0 +1,200 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Copy-on-write view of a committed list for one transaction.
+ * <p>Appends, tail removals and in-place sets (the swap-and-pop of the enumerations) are kept as patches
+ * over the committed list, any other structural change copies it once into this list.</p>
+ */
+final class OverlayList<E> extends ArrayList<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<E> base;
+    private final TreeMap<Integer, E> patches = new TreeMap<Integer, E>();
+    private int size;
+    /**
+     * True once the contents are copied into this list, patches are then unused
+     */
+    private boolean copied;
+    private boolean modified;
+
+    OverlayList(List<E> base) {
+        super(0);
+        this.base = base;
+        this.size = base.size();
+    }
+
+    boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Bring `target`, the committed list, to the contents of this view
+     */
+    void applyTo(List<E> target) {
+        if (copied) {
+            target.clear();
+            target.addAll(this);
+            return;
+        }
+        while (target.size() > size) {
+            target.remove(target.size() - 1);
+        }
+        for (Map.Entry<Integer, E> patch : patches.entrySet()) {
+            if (patch.getKey() < target.size()) {
+                target.set(patch.getKey(), patch.getValue());
+            } else {
+                target.add(patch.getValue());
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return copied ? super.size() : size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public E get(int index) {
+        if (copied) {
+            return super.get(index);
+        }
+        checkIndex(index);
+        E patched = patches.get(index);
+        return patched != null || patches.containsKey(index) ? patched : base.get(index);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        modified = true;
+        if (copied) {
+            return super.set(index, element);
+        }
+        E previous = get(index);
+        patches.put(index, element);
+        return previous;
+    }
+
+    @Override
+    public boolean add(E element) {
+        modified = true;
+        if (copied) {
+            return super.add(element);
+        }
+        patches.put(size++, element);
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (!copied && index == size) {
+            add(element);
+            return;
+        }
+        modified = true;
+        copy();
+        super.add(index, element);
+    }
+
+    @Override
+    public E remove(int index) {
+        modified = true;
+        if (!copied && index == size - 1) {
+            E previous = get(index);
+            patches.remove(index);
+            size--;
+            return previous;
+        }
+        copy();
+        return super.remove(index);
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity) {
+        if (copied) {
+            super.ensureCapacity(minCapacity);
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        if (copied) {
+            return super.iterator();
+        }
+        return new Iterator<E>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public E next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private void copy() {
+        if (copied) {
+            return;
+        }
+        super.ensureCapacity(size);
+        for (int i = 0; i < size; i++) {
+            super.add(get(i));
+        }
+        copied = true;
+        patches.clear();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
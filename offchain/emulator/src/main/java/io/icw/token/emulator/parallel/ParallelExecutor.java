@@ -0,0 +1,253 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.EventListener;
+import io.icw.token.emulator.IsolationException;
+import io.icw.token.emulator.state.DurableStateBackend;
+import io.icw.token.emulator.state.HeapStateBackend;
+import io.icw.token.emulator.state.PlainFields;
+import io.icw.token.emulator.state.StateBackend;
+import io.icw.token.emulator.state.StateContainers;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Optimistic parallel executor of the calls to one contract instance.
+ * <p>The calls of a batch first run concurrently on the fork-join pool, each in its own {@link Transaction}
+ * against the state at the start of the batch: reads are tracked per key of the state containers
+ * (`tokenOwner`, `ownedTokensCount`, `tokenApprovals`, `operatorApprovals`, the token indexes, the per-owner
+ * token lists and `allTokens`) and writes are buffered. The runs are then committed one by one in submission
+ * order, a run that read a key written by a call committed before it in the batch is discarded and the
+ * call runs again against the current state. The final state and the event order are the ones of a serial
+ * run in which a reverted call leaves no trace, as on chain.</p>
+ * <p>A speculative run reaching another contract (the receiver check of `safeTransferFrom`) is discarded, the
+ * call runs again in order so that the other contract sees it once. A call reaching state that can not be
+ * isolated fails with {@link IsolationException} and leaves no trace.</p>
+ * <p>Plain fields ({@link PlainFields}: `baseURI`, the token range of the sequential owner storage) are not
+ * tracked per key: a speculative run calls a replica of the contract with its own plain fields over the same
+ * state containers, a run that changed one is discarded and the call runs again in order on the contract,
+ * followed by every later call of the batch. A reverted call has its plain fields restored. Barrier calls
+ * split the batch and run alone.</p>
+ * <p>Over a {@link DurableStateBackend}, each committed call is one durable group of writes.</p>
+ * <p>The contract instance is prepared on construction and must not be called outside the executor while
+ * a batch runs.</p>
+ */
+public class ParallelExecutor<T> {
+
+    private final T contract;
+    private final Address contractAddress;
+    private final ForkJoinPool pool;
+    private final EventListener listener;
+    private final DurableStateBackend durable;
+
+    private long speculated;
+    private long reexecuted;
+
+    /**
+     * @param listener Receives the events of the committed calls in submission order, null drops them
+     */
+    public ParallelExecutor(T contract, Address contractAddress, ForkJoinPool pool, EventListener listener) {
+        this(contract, contractAddress, pool, listener, new HeapStateBackend());
+    }
+
+    /**
+     * @param committed Holds the committed state of the contract
+     */
+    public ParallelExecutor(T contract, Address contractAddress, ForkJoinPool pool, EventListener listener, StateBackend committed) {
+        // the committed containers first, a durable backend keeps the plain fields of the contract it is installed in
+        StateContainers.install(contract, committed);
+        this.contract = StateContainers.install(contract, new TransactionalBackend(committed));
+        this.contractAddress = contractAddress;
+        this.pool = pool;
+        this.listener = listener;
+        this.durable = committed instanceof DurableStateBackend ? (DurableStateBackend) committed : null;
+        if (durable != null) {
+            durable.commit();
+        }
+    }
+
+    /**
+     * @return The results aligned with `calls`
+     */
+    public List<CallResult> execute(List<ContractCall<T>> calls) {
+        List<CallResult> results = new ArrayList<CallResult>(calls.size());
+        int start = 0;
+        for (int i = 0; i <= calls.size(); i++) {
+            if (i == calls.size() || calls.get(i).isBarrier()) {
+                executeSegment(calls.subList(start, i), results);
+                if (i < calls.size()) {
+                    results.add(runAlone(calls.get(i)));
+                }
+                start = i + 1;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @return The count of calls run speculatively
+     */
+    public long getSpeculated() {
+        return speculated;
+    }
+
+    /**
+     * @return The count of speculative runs discarded for a conflict
+     */
+    public long getReexecuted() {
+        return reexecuted;
+    }
+
+    private void executeSegment(List<ContractCall<T>> calls, List<CallResult> results) {
+        if (calls.isEmpty()) {
+            return;
+        }
+        final PlainFields fields = PlainFields.capture(contract);
+        List<Callable<Run>> tasks = new ArrayList<Callable<Run>>(calls.size());
+        for (final ContractCall<T> call : calls) {
+            tasks.add(new Callable<Run>() {
+                @Override
+                public Run call() {
+                    T replica = Replicas.replicate(contract);
+                    Run run = runTransaction(call, replica, true);
+                    run.plainFieldsChanged = !fields.matches(replica);
+                    return run;
+                }
+            });
+        }
+        List<Future<Run>> runs = pool.invokeAll(tasks);
+        speculated += calls.size();
+
+        Set<StateKey> written = new HashSet<StateKey>();
+        // set once a committed call changed a plain field, the speculative runs after it may have read it
+        boolean untracked = false;
+        for (int i = 0; i < calls.size(); i++) {
+            Run run = await(runs.get(i));
+            if (!run.isolationBroken && !run.plainFieldsChanged && !untracked && !run.transaction.readsAny(written)) {
+                results.add(commit(run, written, false));
+                continue;
+            }
+            reexecuted++;
+            run = runInOrder(calls.get(i));
+            results.add(commit(run, written, true));
+            untracked |= run.plainFieldsChanged;
+        }
+    }
+
+    /**
+     * Run a barrier call, in a transaction of its own committed at once
+     */
+    private CallResult runAlone(ContractCall<T> call) {
+        return commit(runInOrder(call), new HashSet<StateKey>(), false);
+    }
+
+    /**
+     * Run a call on the contract against the current state, the plain fields it changed are restored if it reverted
+     */
+    private Run runInOrder(ContractCall<T> call) {
+        PlainFields fields = PlainFields.capture(contract);
+        Run run = runTransaction(call, contract, false);
+        if (run.error != null) {
+            fields.restore();
+        } else {
+            run.plainFieldsChanged = !fields.matches(contract);
+        }
+        return run;
+    }
+
+    private CallResult commit(Run run, Set<StateKey> written, boolean reexecuted) {
+        if (run.error == null) {
+            written.addAll(run.transaction.commit());
+            run.transaction.replayEvents(listener);
+            if (durable != null) {
+                durable.commit();
+            }
+        }
+        return new CallResult(run.value, run.error, reexecuted);
+    }
+
+    /**
+     * @param isolated true to refuse calls to other contracts, for speculative runs
+     */
+    private Run runTransaction(ContractCall<T> call, T target, boolean isolated) {
+        Run run = new Run();
+        run.transaction = new Transaction();
+        Address sender = Emulator.sender();
+        Address contractAddress = Emulator.contractAddress();
+        EventListener listener = Emulator.eventListener();
+        Emulator.setSender(call.getSender());
+        Emulator.setContractAddress(this.contractAddress);
+        Emulator.setEventListener(run.transaction);
+        Emulator.setIsolated(isolated);
+        Transaction.setCurrent(run.transaction);
+        try {
+            run.value = call.getOperation().apply(target);
+        } catch (IsolationException e) {
+            if (isolated) {
+                run.isolationBroken = true;
+            } else {
+                run.error = e;
+            }
+        } catch (RuntimeException e) {
+            run.error = e;
+        } finally {
+            Transaction.setCurrent(null);
+            Emulator.setIsolated(false);
+            Emulator.setSender(sender);
+            Emulator.setContractAddress(contractAddress);
+            Emulator.setEventListener(listener);
+        }
+        return run;
+    }
+
+    private static Run await(Future<Run> run) {
+        try {
+            return run.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while waiting for a speculative run", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("speculative run failed", e.getCause());
+        }
+    }
+
+    private static final class Run {
+        private Transaction transaction;
+        private Object value;
+        private RuntimeException error;
+        private boolean isolationBroken;
+        private boolean plainFieldsChanged;
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.token.emulator.state.StateContainers;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Copies of the objects of a contract, allocated without running a constructor.
+ * <ul>
+ *     <li>The mutable per-token records kept in the state containers (`PackedToken`, the ownership history
+ *     checkpoints) are handed out to a transaction as copies, as {@link OverlayList} is for lists.</li>
+ *     <li>A speculative run calls a replica of the contract: the same state containers, its own plain fields.</li>
+ * </ul>
+ */
+final class Replicas {
+
+    private static final Object UNSAFE;
+    private static final Method ALLOCATE_INSTANCE;
+
+    static {
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field instance = type.getDeclaredField("theUnsafe");
+            instance.setAccessible(true);
+            UNSAFE = instance.get(null);
+            ALLOCATE_INSTANCE = type.getMethod("allocateInstance", Class.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Replicas() {
+    }
+
+    static boolean isRecord(Object value) {
+        return StateContainers.isContractObject(value);
+    }
+
+    /**
+     * @return A copy of `record`, arrays copied
+     */
+    @SuppressWarnings("unchecked")
+    static <V> V copyRecord(V record) {
+        Object copy = allocate(record.getClass());
+        for (Class<?> type = record.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    set(field, copy, copyArray(get(field, record)));
+                }
+            }
+        }
+        return (V) copy;
+    }
+
+    /**
+     * @return true if the fields of `copy` hold the values of the ones of `record`
+     */
+    static boolean sameState(Object copy, Object record) {
+        for (Class<?> type = record.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())
+                        && !Arrays.deepEquals(new Object[]{get(field, copy)}, new Object[]{get(field, record)})) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return A copy of `contract` and of the storages it reaches, sharing their state containers
+     */
+    static <T> T replicate(T contract) {
+        return replicate(contract, new IdentityHashMap<Object, Object>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T replicate(T target, Map<Object, Object> replicas) {
+        Object replica = replicas.get(target);
+        if (replica != null) {
+            return (T) replica;
+        }
+        replica = allocate(target.getClass());
+        replicas.put(target, replica);
+        for (Class<?> type = target.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                Object value = get(field, target);
+                if (StateContainers.isContainer(value) || field.isSynthetic()) {
+                    set(field, replica, value);
+                } else if (StateContainers.isContractObject(value)) {
+                    set(field, replica, replicate(value, replicas));
+                } else {
+                    set(field, replica, copyArray(value));
+                }
+            }
+        }
+        return (T) replica;
+    }
+
+    private static Object allocate(Class<?> type) {
+        try {
+            return ALLOCATE_INSTANCE.invoke(UNSAFE, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("can not allocate " + type.getName(), e);
+        }
+    }
+
+    private static Object get(Field field, Object target) {
+        field.setAccessible(true);
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("can not read " + field, e);
+        }
+    }
+
+    private static void set(Field field, Object target, Object value) {
+        field.setAccessible(true);
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("can not assign " + field, e);
+        }
+    }
+
+    private static Object copyArray(Object value) {
+        if (value == null || !value.getClass().isArray()) {
+            return value;
+        }
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, copy, 0, length);
+        return copy;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+/**
+ * A key of one state container, containers are compared by identity and keys by value.
+ */
+final class StateKey {
+
+    /**
+     * Key of the entry count of a container
+     */
+    static final Object SIZE = new Object();
+    /**
+     * Key of a list, tracked as a whole
+     */
+    static final Object WHOLE = new Object();
+
+    private final Object container;
+    private final Object key;
+
+    StateKey(Object container, Object key) {
+        this.container = container;
+        this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StateKey)) {
+            return false;
+        }
+        StateKey other = (StateKey) o;
+        return container == other.container && (key == null ? other.key == null : key.equals(other.key));
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(container) * 31 + (key == null ? 0 : key.hashCode());
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read/write locks striped over the state keys, see {@link Transaction}.
+ */
+final class StripedLocks {
+
+    private final ReentrantReadWriteLock[] stripes;
+    private final int mask;
+    private final long timeoutNanos;
+
+    /**
+     * @param count Rounded up to a power of two
+     */
+    StripedLocks(int count, long timeoutNanos) {
+        int size = Integer.highestOneBit(Math.max(count - 1, 1)) << 1;
+        this.stripes = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        this.mask = size - 1;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    int stripeOf(StateKey key) {
+        int hash = key.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * @return false if the lock was not free within the timeout
+     */
+    boolean tryLock(int stripe, boolean exclusive) {
+        ReentrantReadWriteLock lock = stripes[stripe];
+        try {
+            return exclusive ? lock.writeLock().tryLock(timeoutNanos, TimeUnit.NANOSECONDS)
+                    : lock.readLock().tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    void unlock(int stripe, boolean exclusive) {
+        if (exclusive) {
+            stripes[stripe].writeLock().unlock();
+        } else {
+            stripes[stripe].readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.contract.sdk.Address;
+import io.icw.contract.sdk.Event;
+import io.icw.token.emulator.EventListener;
+import io.icw.token.emulator.IsolationException;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read set, buffered writes and events of one call.
+ * <p>While a transaction is current on a thread, the {@link TransactionalState} containers read the committed
+ * state through its writes and record every committed key they read, nothing is written to the containers
+ * before {@link #commit()}.</p>
+ * <p>With {@link StripedLocks}, every key is locked on first access and until {@link #release()}: exclusively,
+ * or shared for the reads of {@link #readShared(Object, Object)}. A lock that can not be taken in time, or a
+ * shared lock that would need an upgrade, aborts the call with {@link LockConflictException}; the upgrade is
+ * remembered so that the next attempt takes the stripe exclusively from the start.</p>
+ */
+final class Transaction implements EventListener {
+
+    static final Object REMOVED = new Object();
+
+    private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<Transaction>();
+
+    private static final int SHARED = 1;
+    private static final int EXCLUSIVE = 2;
+
+    private final StripedLocks locks;
+    /**
+     * Stripes to lock exclusively on first access, kept across the attempts of a call
+     */
+    private final Set<Integer> exclusiveStripes;
+    private final Map<Integer, Integer> held = new HashMap<Integer, Integer>();
+    private final Set<StateKey> reads = new HashSet<StateKey>();
+    private final Map<Object, Map<Object, Object>> writes = new IdentityHashMap<Object, Map<Object, Object>>();
+    /**
+     * Committed record of each record copy handed out
+     */
+    private final Map<Object, Object> records = new IdentityHashMap<Object, Object>();
+    private final List<Address> eventSources = new ArrayList<Address>();
+    private final List<Event> events = new ArrayList<Event>();
+
+    Transaction() {
+        this(null, null);
+    }
+
+    Transaction(StripedLocks locks, Set<Integer> exclusiveStripes) {
+        this.locks = locks;
+        this.exclusiveStripes = exclusiveStripes;
+    }
+
+    static Transaction current() {
+        return CURRENT.get();
+    }
+
+    static void setCurrent(Transaction transaction) {
+        if (transaction == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(transaction);
+        }
+    }
+
+    /**
+     * Read of a key the call may write next
+     */
+    void read(Object container, Object key) {
+        StateKey stateKey = new StateKey(container, key);
+        lock(stateKey, true);
+        reads.add(stateKey);
+    }
+
+    void readShared(Object container, Object key) {
+        StateKey stateKey = new StateKey(container, key);
+        lock(stateKey, false);
+        reads.add(stateKey);
+    }
+
+    /**
+     * @return The buffered writes of `container`, null if it has none
+     */
+    Map<Object, Object> writesOf(Object container) {
+        return writes.get(container);
+    }
+
+    void write(Object container, Object key, Object value) {
+        if (locks != null) {
+            lock(new StateKey(container, key), true);
+        }
+        Map<Object, Object> buffered = writes.get(container);
+        if (buffered == null) {
+            buffered = new LinkedHashMap<Object, Object>();
+            writes.put(container, buffered);
+        }
+        buffered.put(key, value);
+    }
+
+    /**
+     * Hand out a copy of the committed `record` stored under `key`, buffered as its write
+     */
+    <V> V copyOf(Object container, Object key, V record) {
+        V copy = Replicas.copyRecord(record);
+        records.put(copy, record);
+        write(container, key, copy);
+        return copy;
+    }
+
+    private void lock(StateKey key, boolean exclusive) {
+        if (locks == null) {
+            return;
+        }
+        int stripe = locks.stripeOf(key);
+        boolean wanted = exclusive || exclusiveStripes.contains(stripe);
+        Integer mode = held.get(stripe);
+        if (mode != null) {
+            if (mode == EXCLUSIVE || !wanted) {
+                return;
+            }
+            exclusiveStripes.add(stripe);
+            throw LockConflictException.INSTANCE;
+        }
+        if (!locks.tryLock(stripe, wanted)) {
+            throw LockConflictException.INSTANCE;
+        }
+        held.put(stripe, wanted ? EXCLUSIVE : SHARED);
+    }
+
+    /**
+     * Release the locks taken by this transaction
+     */
+    void release() {
+        for (Map.Entry<Integer, Integer> stripe : held.entrySet()) {
+            locks.unlock(stripe.getKey(), stripe.getValue() == EXCLUSIVE);
+        }
+        held.clear();
+    }
+
+    /**
+     * @return true if a key read by this transaction is in `written`
+     */
+    boolean readsAny(Set<StateKey> written) {
+        for (StateKey key : reads) {
+            if (written.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Apply the buffered writes to the containers, must run without a current transaction
+     * @return The keys written, the entry count of every written container included
+     */
+    Set<StateKey> commit() {
+        Set<StateKey> written = new HashSet<StateKey>();
+        for (Map.Entry<Object, Map<Object, Object>> entry : writes.entrySet()) {
+            Object container = entry.getKey();
+            for (Iterator<Map.Entry<Object, Object>> i = entry.getValue().entrySet().iterator(); i.hasNext(); ) {
+                Map.Entry<Object, Object> write = i.next();
+                Object value = write.getValue();
+                if (value instanceof OverlayList && !((OverlayList<?>) value).isModified()) {
+                    continue;
+                }
+                Object record = records.get(value);
+                if (record != null && Replicas.sameState(value, record)) {
+                    i.remove();
+                    continue;
+                }
+                written.add(new StateKey(container, write.getKey()));
+                written.add(new StateKey(container, StateKey.SIZE));
+            }
+            ((TransactionalState) container).commit(entry.getValue());
+        }
+        return written;
+    }
+
+    void replayEvents(EventListener listener) {
+        if (listener == null) {
+            return;
+        }
+        for (int i = 0; i < events.size(); i++) {
+            listener.onEvent(eventSources.get(i), events.get(i));
+        }
+    }
+
+    @Override
+    public void onEvent(Address contractAddress, Event event) {
+        eventSources.add(contractAddress);
+        events.add(event);
+    }
+
+    /**
+     * Committed values handed out to a call must not be mutated in place behind the transaction, the per-token
+     * records are handed out through {@link #copyOf}, other values can not be isolated.
+     */
+    static <V> V immutable(V value) {
+        if (value == null || value instanceof Address || value instanceof String || value instanceof BigInteger
+                || value instanceof Integer || value instanceof Long || value instanceof Boolean) {
+            return value;
+        }
+        throw new IsolationException("mutable state value " + value.getClass().getName() + " can not be isolated");
+    }
+}
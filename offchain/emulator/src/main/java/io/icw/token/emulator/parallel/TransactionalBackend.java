@@ -0,0 +1,82 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.token.emulator.state.StateBackend;
+import io.icw.token.storage.AddressIntMap;
+import io.icw.token.storage.AddressPairSet;
+import io.icw.token.storage.TokenIdIntMap;
+import io.icw.token.storage.TokenIdMap;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Transactional containers over the committed containers of another backend.
+ */
+final class TransactionalBackend implements StateBackend {
+
+    private final StateBackend committed;
+
+    TransactionalBackend(StateBackend committed) {
+        this.committed = committed;
+    }
+
+    @Override
+    public <V> TokenIdMap<V> tokenIdMap(TokenIdMap<V> current) {
+        return current instanceof TransactionalState ? current : new TxTokenIdMap<V>(committed.tokenIdMap(current));
+    }
+
+    @Override
+    public TokenIdIntMap tokenIdIntMap(TokenIdIntMap current) {
+        return current instanceof TransactionalState ? current : new TxTokenIdIntMap(committed.tokenIdIntMap(current));
+    }
+
+    @Override
+    public AddressIntMap addressIntMap(AddressIntMap current) {
+        return current instanceof TransactionalState ? current : new TxAddressIntMap(committed.addressIntMap(current));
+    }
+
+    @Override
+    public AddressPairSet addressPairSet(AddressPairSet current) {
+        return current instanceof TransactionalState ? current : new TxAddressPairSet(committed.addressPairSet(current));
+    }
+
+    @Override
+    public <K, V> Map<K, V> map(Map<K, V> current) {
+        return current instanceof TransactionalState ? current : new TxMap<K, V>(committed.map(current));
+    }
+
+    @Override
+    public <E> Set<E> set(Set<E> current) {
+        return current instanceof TransactionalState ? current : new TxSet<E>(committed.set(current));
+    }
+
+    @Override
+    public <E> ArrayList<E> list(ArrayList<E> current) {
+        return current instanceof TransactionalState ? current : new TxList<E>(committed.list(current));
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.storage.AddressIntMap;
+
+import java.util.Map;
+
+/**
+ * Transactional view of an existing {@link AddressIntMap}, calls without a transaction are forwarded to it.
+ * Writes are buffered as the final count of each address, counts are read under shared locks and updated
+ * under exclusive ones.
+ */
+class TxAddressIntMap extends AddressIntMap implements TransactionalState {
+
+    private final AddressIntMap state;
+
+    TxAddressIntMap(AddressIntMap state) {
+        this.state = state;
+    }
+
+    @Override
+    public void commit(Map<Object, Object> writes) {
+        for (Map.Entry<Object, Object> write : writes.entrySet()) {
+            Address key = (Address) write.getKey();
+            state.add(key, (Integer) write.getValue() - state.get(key));
+        }
+    }
+
+    @Override
+    public int size() {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.size();
+        }
+        tx.read(this, StateKey.SIZE);
+        int size = state.size();
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null) {
+            for (Map.Entry<Object, Object> write : writes.entrySet()) {
+                boolean committed = state.get((Address) write.getKey()) != 0;
+                boolean present = (Integer) write.getValue() != 0;
+                size += committed == present ? 0 : present ? 1 : -1;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int get(Address key) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.get(key);
+        }
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null && writes.containsKey(key)) {
+            return (Integer) writes.get(key);
+        }
+        tx.readShared(this, key);
+        return state.get(key);
+    }
+
+    @Override
+    public int add(Address key, int delta) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.add(key, delta);
+        }
+        tx.read(this, key);
+        int value = get(key) + delta;
+        tx.write(this, key, value);
+        return value;
+    }
+
+    @Override
+    public int slots() {
+        return state.slots();
+    }
+
+    @Override
+    public Address keyAt(int slot) {
+        return state.keyAt(slot);
+    }
+
+    @Override
+    public int valueAt(int slot) {
+        return state.valueAt(slot);
+    }
+}
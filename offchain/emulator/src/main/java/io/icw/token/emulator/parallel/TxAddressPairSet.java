@@ -0,0 +1,130 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.storage.AddressPairSet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transactional view of an existing {@link AddressPairSet}, calls without a transaction are forwarded to it.
+ */
+class TxAddressPairSet extends AddressPairSet implements TransactionalState {
+
+    private final AddressPairSet state;
+
+    TxAddressPairSet(AddressPairSet state) {
+        this.state = state;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void commit(Map<Object, Object> writes) {
+        for (Map.Entry<Object, Object> write : writes.entrySet()) {
+            List<Address> pair = (List<Address>) write.getKey();
+            if (write.getValue() == Transaction.REMOVED) {
+                state.remove(pair.get(0), pair.get(1));
+            } else {
+                state.add(pair.get(0), pair.get(1));
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.size();
+        }
+        tx.read(this, StateKey.SIZE);
+        int size = state.size();
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null) {
+            for (Map.Entry<Object, Object> write : writes.entrySet()) {
+                @SuppressWarnings("unchecked")
+                List<Address> pair = (List<Address>) write.getKey();
+                boolean committed = state.contains(pair.get(0), pair.get(1));
+                boolean present = write.getValue() != Transaction.REMOVED;
+                size += committed == present ? 0 : present ? 1 : -1;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean contains(Address first, Address second) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.contains(first, second);
+        }
+        List<Address> pair = Arrays.asList(first, second);
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null && writes.containsKey(pair)) {
+            return writes.get(pair) != Transaction.REMOVED;
+        }
+        tx.read(this, pair);
+        return state.contains(first, second);
+    }
+
+    @Override
+    public boolean add(Address first, Address second) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.add(first, second);
+        }
+        boolean added = !contains(first, second);
+        tx.write(this, Arrays.asList(first, second), Boolean.TRUE);
+        return added;
+    }
+
+    @Override
+    public boolean remove(Address first, Address second) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.remove(first, second);
+        }
+        boolean removed = contains(first, second);
+        tx.write(this, Arrays.asList(first, second), Transaction.REMOVED);
+        return removed;
+    }
+
+    @Override
+    public int slots() {
+        return state.slots();
+    }
+
+    @Override
+    public Address firstAt(int slot) {
+        return state.firstAt(slot);
+    }
+
+    @Override
+    public Address secondAt(int slot) {
+        return state.secondAt(slot);
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.token.emulator.IsolationException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Transactional view of a list field, tracked as one key: calls touching the same list conflict.
+ * Calls without a transaction are forwarded to the committed list.
+ */
+class TxList<E> extends ArrayList<E> implements TransactionalState {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<E> state;
+
+    TxList(ArrayList<E> state) {
+        super(0);
+        this.state = state;
+    }
+
+    @SuppressWarnings("unchecked")
+    private OverlayList<E> overlay(Transaction tx) {
+        Map<Object, Object> writes = tx.writesOf(this);
+        OverlayList<E> overlay = writes == null ? null : (OverlayList<E>) writes.get(StateKey.WHOLE);
+        if (overlay == null) {
+            tx.read(this, StateKey.WHOLE);
+            overlay = new OverlayList<E>(state);
+            tx.write(this, StateKey.WHOLE, overlay);
+        }
+        return overlay;
+    }
+
+    private void outsideTransaction() {
+        if (Transaction.current() != null) {
+            throw new IsolationException("list access not covered by transactions");
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void commit(Map<Object, Object> writes) {
+        ((OverlayList<E>) writes.get(StateKey.WHOLE)).applyTo(state);
+    }
+
+    @Override
+    public int size() {
+        Transaction tx = Transaction.current();
+        return tx == null ? state.size() : overlay(tx).size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        Transaction tx = Transaction.current();
+        return tx == null ? state.isEmpty() : overlay(tx).isEmpty();
+    }
+
+    @Override
+    public E get(int index) {
+        Transaction tx = Transaction.current();
+        return tx == null ? state.get(index) : overlay(tx).get(index);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        Transaction tx = Transaction.current();
+        return tx == null ? state.set(index, element) : overlay(tx).set(index, element);
+    }
+
+    @Override
+    public boolean add(E element) {
+        Transaction tx = Transaction.current();
+        return tx == null ? state.add(element) : overlay(tx).add(element);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            state.add(index, element);
+        } else {
+            overlay(tx).add(index, element);
+        }
+    }
+
+    @Override
+    public E remove(int index) {
+        Transaction tx = Transaction.current();
+        return tx == null ? state.remove(index) : overlay(tx).remove(index);
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            state.ensureCapacity(minCapacity);
+        } else {
+            overlay(tx).ensureCapacity(minCapacity);
+        }
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        Transaction tx = Transaction.current();
+        return tx == null ? state.iterator() : overlay(tx).iterator();
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        outsideTransaction();
+        return state.contains(element);
+    }
+
+    @Override
+    public int indexOf(Object element) {
+        outsideTransaction();
+        return state.indexOf(element);
+    }
+
+    @Override
+    public Object[] toArray() {
+        outsideTransaction();
+        return state.toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] target) {
+        outsideTransaction();
+        return state.toArray(target);
+    }
+
+    @Override
+    public void clear() {
+        outsideTransaction();
+        state.clear();
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> contents) {
+        outsideTransaction();
+        return state.addAll(contents);
+    }
+}
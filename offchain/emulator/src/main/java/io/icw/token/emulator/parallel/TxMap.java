@@ -0,0 +1,151 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.token.emulator.IsolationException;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Transactional view of a map field, calls without a transaction are forwarded to the committed map.
+ * Per-owner token lists are handed out as {@link OverlayList} views of the committed list and tracked
+ * under their owner key, per-holder records (the balance checkpoints) as copies, see {@link Replicas}.
+ */
+class TxMap<K, V> extends AbstractMap<K, V> implements TransactionalState {
+
+    private final Map<K, V> state;
+
+    TxMap(Map<K, V> state) {
+        this.state = state;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void commit(Map<Object, Object> writes) {
+        for (Map.Entry<Object, Object> write : writes.entrySet()) {
+            Object value = write.getValue();
+            if (value == Transaction.REMOVED) {
+                state.remove(write.getKey());
+            } else if (value instanceof OverlayList) {
+                ((OverlayList<Object>) value).applyTo((ArrayList<Object>) state.get(write.getKey()));
+            } else {
+                state.put((K) write.getKey(), (V) value);
+            }
+        }
+    }
+
+    @Override
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public V get(Object key) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.get(key);
+        }
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null && writes.containsKey(key)) {
+            Object value = writes.get(key);
+            return value == Transaction.REMOVED ? null : (V) value;
+        }
+        tx.read(this, key);
+        V value = state.get(key);
+        if (value instanceof ArrayList) {
+            V overlay = (V) new OverlayList((ArrayList) value);
+            tx.write(this, key, overlay);
+            return overlay;
+        }
+        return Replicas.isRecord(value) ? tx.copyOf(this, key, value) : Transaction.immutable(value);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.containsKey(key);
+        }
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null && writes.containsKey(key)) {
+            return writes.get(key) != Transaction.REMOVED;
+        }
+        tx.read(this, key);
+        return state.containsKey(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.put(key, value);
+        }
+        V previous = get(key);
+        tx.write(this, key, value);
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.remove(key);
+        }
+        V previous = get(key);
+        tx.write(this, key, Transaction.REMOVED);
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.size();
+        }
+        tx.read(this, StateKey.SIZE);
+        int size = state.size();
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null) {
+            for (Map.Entry<Object, Object> write : writes.entrySet()) {
+                boolean committed = state.containsKey(write.getKey());
+                boolean present = write.getValue() != Transaction.REMOVED;
+                size += committed == present ? 0 : present ? 1 : -1;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        if (Transaction.current() != null) {
+            throw new IsolationException("map walk not covered by transactions");
+        }
+        return state.entrySet();
+    }
+}
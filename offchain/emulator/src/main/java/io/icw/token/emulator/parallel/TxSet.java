@@ -0,0 +1,122 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.token.emulator.IsolationException;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Transactional view of a set field, calls without a transaction are forwarded to the committed set.
+ * Membership checks take shared locks, the registries behind them are read by most calls.
+ */
+class TxSet<E> extends AbstractSet<E> implements TransactionalState {
+
+    private final Set<E> state;
+
+    TxSet(Set<E> state) {
+        this.state = state;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void commit(Map<Object, Object> writes) {
+        for (Map.Entry<Object, Object> write : writes.entrySet()) {
+            if (write.getValue() == Transaction.REMOVED) {
+                state.remove(write.getKey());
+            } else {
+                state.add((E) write.getKey());
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.contains(element);
+        }
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null && writes.containsKey(element)) {
+            return writes.get(element) != Transaction.REMOVED;
+        }
+        tx.readShared(this, element);
+        return state.contains(element);
+    }
+
+    @Override
+    public boolean add(E element) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.add(element);
+        }
+        tx.read(this, element);
+        boolean added = !contains(element);
+        tx.write(this, element, Boolean.TRUE);
+        return added;
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.remove(element);
+        }
+        tx.read(this, element);
+        boolean removed = contains(element);
+        tx.write(this, element, Transaction.REMOVED);
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.size();
+        }
+        tx.read(this, StateKey.SIZE);
+        int size = state.size();
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null) {
+            for (Map.Entry<Object, Object> write : writes.entrySet()) {
+                boolean committed = state.contains(write.getKey());
+                boolean present = write.getValue() != Transaction.REMOVED;
+                size += committed == present ? 0 : present ? 1 : -1;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        if (Transaction.current() != null) {
+            throw new IsolationException("set walk not covered by transactions");
+        }
+        return state.iterator();
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.token.storage.TokenIdIntMap;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * Transactional view of an existing {@link TokenIdIntMap}, calls without a transaction are forwarded to it.
+ */
+class TxTokenIdIntMap extends TokenIdIntMap implements TransactionalState {
+
+    private final TokenIdIntMap state;
+
+    TxTokenIdIntMap(TokenIdIntMap state) {
+        this.state = state;
+    }
+
+    @Override
+    public void commit(Map<Object, Object> writes) {
+        for (Map.Entry<Object, Object> write : writes.entrySet()) {
+            BigInteger tokenId = (BigInteger) write.getKey();
+            if (write.getValue() == Transaction.REMOVED) {
+                state.remove(tokenId);
+            } else {
+                state.put(tokenId, (Integer) write.getValue());
+            }
+        }
+    }
+
+    @Override
+    public int get(BigInteger tokenId) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.get(tokenId);
+        }
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null && writes.containsKey(tokenId)) {
+            Object value = writes.get(tokenId);
+            return value == Transaction.REMOVED ? NO_VALUE : (Integer) value;
+        }
+        tx.read(this, tokenId);
+        return state.get(tokenId);
+    }
+
+    @Override
+    public void put(BigInteger tokenId, int value) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            state.put(tokenId, value);
+        } else {
+            tx.write(this, tokenId, value);
+        }
+    }
+
+    @Override
+    public void remove(BigInteger tokenId) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            state.remove(tokenId);
+        } else {
+            tx.write(this, tokenId, Transaction.REMOVED);
+        }
+    }
+}
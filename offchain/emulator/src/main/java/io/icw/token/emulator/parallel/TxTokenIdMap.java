@@ -0,0 +1,128 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.parallel;
+
+import io.icw.token.storage.TokenIdMap;
+
+import java.math.BigInteger;
+import java.util.Map;
+
+/**
+ * Transactional view of an existing {@link TokenIdMap}, calls without a transaction are forwarded to it.
+ * Per-token records are handed out as copies, see {@link Replicas}.
+ */
+class TxTokenIdMap<V> extends TokenIdMap<V> implements TransactionalState {
+
+    private final TokenIdMap<V> state;
+
+    TxTokenIdMap(TokenIdMap<V> state) {
+        this.state = state;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void commit(Map<Object, Object> writes) {
+        for (Map.Entry<Object, Object> write : writes.entrySet()) {
+            BigInteger tokenId = (BigInteger) write.getKey();
+            if (write.getValue() == Transaction.REMOVED) {
+                state.remove(tokenId);
+            } else {
+                state.put(tokenId, (V) write.getValue());
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.size();
+        }
+        tx.read(this, StateKey.SIZE);
+        int size = state.size();
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null) {
+            for (Map.Entry<Object, Object> write : writes.entrySet()) {
+                boolean committed = state.containsKey((BigInteger) write.getKey());
+                boolean present = write.getValue() != Transaction.REMOVED;
+                size += committed == present ? 0 : present ? 1 : -1;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(BigInteger tokenId) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.containsKey(tokenId);
+        }
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null && writes.containsKey(tokenId)) {
+            return writes.get(tokenId) != Transaction.REMOVED;
+        }
+        tx.read(this, tokenId);
+        return state.containsKey(tokenId);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(BigInteger tokenId) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.get(tokenId);
+        }
+        Map<Object, Object> writes = tx.writesOf(this);
+        if (writes != null && writes.containsKey(tokenId)) {
+            Object value = writes.get(tokenId);
+            return value == Transaction.REMOVED ? null : (V) value;
+        }
+        tx.read(this, tokenId);
+        V value = state.get(tokenId);
+        return Replicas.isRecord(value) ? tx.copyOf(this, tokenId, value) : Transaction.immutable(value);
+    }
+
+    @Override
+    public V put(BigInteger tokenId, V value) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.put(tokenId, value);
+        }
+        V previous = get(tokenId);
+        tx.write(this, tokenId, Replicas.isRecord(value) ? value : Transaction.immutable(value));
+        return previous;
+    }
+
+    @Override
+    public V remove(BigInteger tokenId) {
+        Transaction tx = Transaction.current();
+        if (tx == null) {
+            return state.remove(tokenId);
+        }
+        V previous = get(tokenId);
+        tx.write(this, tokenId, Transaction.REMOVED);
+        return previous;
+    }
+}
@@ -0,0 +1,274 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.snapshot;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.base.IRC165Base;
+import io.icw.token.base.IRC721Base;
+import io.icw.token.base.IRC721EnumerableBase;
+import io.icw.token.base.IRC721FullBase;
+import io.icw.token.role.Minter;
+import io.icw.token.role.RoleMembers;
+import io.icw.token.storage.AddressIntMap;
+import io.icw.token.storage.AddressPairSet;
+import io.icw.token.storage.MappedTokenApprovalStorage;
+import io.icw.token.storage.MappedTokenIndexStorage;
+import io.icw.token.storage.MappedTokenOwnerStorage;
+import io.icw.token.storage.PackedTokenStorage;
+import io.icw.token.storage.SequentialTokenOwnerStorage;
+import io.icw.token.storage.TokenApprovalStorage;
+import io.icw.token.storage.TokenIdMap;
+import io.icw.token.storage.TokenIndexStorage;
+import io.icw.token.storage.TokenOwnerStorage;
+
+import java.lang.reflect.Field;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and replaces the private state of an `IRC721FullBase` instance.
+ */
+final class ContractState {
+
+    private ContractState() {
+    }
+
+    /**
+     * @throws UnsupportedOperationException if `contract` records an ownership history, snapshots do not carry it
+     */
+    @SuppressWarnings("unchecked")
+    static StateImage capture(IRC721FullBase contract) {
+        requireNoHistory(contract);
+        StateImage image = new StateImage();
+        image.name = contract.name();
+        image.symbol = contract.symbol();
+        image.baseURI = (String) get(contract, IRC721FullBase.class, "baseURI");
+        image.baseURISuffix = (String) get(contract, IRC721FullBase.class, "baseURISuffix");
+        image.rangeStarts.addAll((List<BigInteger>) get(contract, IRC721FullBase.class, "rangeStarts"));
+        image.rangeBaseURIs.addAll((List<String>) get(contract, IRC721FullBase.class, "rangeBaseURIs"));
+        RoleMembers minters = (RoleMembers) get(contract, Minter.class, "minters");
+        for (int i = 0; i < minters.size(); i++) {
+            image.minters.add(minters.get(i));
+        }
+        image.interfaces.addAll((Set<String>) get(contract, IRC165Base.class, "supportedInterfaces"));
+        image.unconditionalReceivers.addAll((Set<Address>) get(contract, IRC721Base.class, "unconditionalReceivers"));
+        Object tokenOwner = get(contract, IRC721Base.class, "tokenOwner");
+        if (tokenOwner instanceof SequentialTokenOwnerStorage) {
+            image.startTokenId = (BigInteger) get(tokenOwner, SequentialTokenOwnerStorage.class, "startTokenId");
+            image.nextTokenId = (BigInteger) get(tokenOwner, SequentialTokenOwnerStorage.class, "nextTokenId");
+        }
+
+        TokenApprovalStorage tokenApprovals = (TokenApprovalStorage) get(contract, IRC721Base.class, "tokenApprovals");
+        TokenIdMap<String> tokenURIs = (TokenIdMap<String>) get(contract, IRC721FullBase.class, "tokenURIs");
+        TokenIndexStorage tokenIndexes = (TokenIndexStorage) get(contract, IRC721EnumerableBase.class, "tokenIndexes");
+        Map<Address, List<BigInteger>> ownedTokens = (Map<Address, List<BigInteger>>) get(contract, IRC721EnumerableBase.class, "ownedTokens");
+        for (Map.Entry<Address, List<BigInteger>> entry : ownedTokens.entrySet()) {
+            List<BigInteger> tokens = entry.getValue();
+            for (int i = 0; i < tokens.size(); i++) {
+                BigInteger tokenId = tokens.get(i);
+                image.tokens.put(tokenId, new TokenRecord(tokenId, entry.getKey(), i, tokenIndexes.globalIndexOf(tokenId),
+                        tokenApprovals.approvedOf(tokenId), tokenURIs.get(tokenId)));
+            }
+        }
+
+        AddressPairSet operatorApprovals = (AddressPairSet) get(contract, IRC721Base.class, "operatorApprovals");
+        for (int slot = 0; slot < operatorApprovals.slots(); slot++) {
+            Address owner = operatorApprovals.firstAt(slot);
+            if (owner == null) {
+                continue;
+            }
+            Map<Address, Boolean> operators = image.operators.get(owner);
+            if (operators == null) {
+                operators = new HashMap<Address, Boolean>();
+                image.operators.put(owner, operators);
+            }
+            operators.put(operatorApprovals.secondAt(slot), true);
+        }
+        return image;
+    }
+
+    /**
+     * Replace the whole state of `contract` by `image`, the contract must use the mapped, the packed or,
+     * for an image of a sequential storage, the sequential token storage
+     */
+    static void restore(IRC721FullBase contract, StateImage image) {
+        requireNoHistory(contract);
+        Object currentStorage = get(contract, IRC721Base.class, "tokenOwner");
+        TokenOwnerStorage tokenOwner;
+        TokenApprovalStorage tokenApprovals;
+        TokenIndexStorage tokenIndexes;
+        if (currentStorage instanceof PackedTokenStorage) {
+            PackedTokenStorage packed = new PackedTokenStorage();
+            tokenOwner = packed;
+            tokenApprovals = packed;
+            tokenIndexes = packed;
+        } else if (currentStorage instanceof MappedTokenOwnerStorage) {
+            tokenOwner = new MappedTokenOwnerStorage();
+            tokenApprovals = new MappedTokenApprovalStorage();
+            tokenIndexes = new MappedTokenIndexStorage();
+        } else if (currentStorage instanceof SequentialTokenOwnerStorage) {
+            if (image.startTokenId == null) {
+                throw new IllegalArgumentException("the snapshot was not taken from a sequential token storage");
+            }
+            tokenOwner = sequentialStorage(image);
+            tokenApprovals = new MappedTokenApprovalStorage();
+            tokenIndexes = new MappedTokenIndexStorage();
+        } else {
+            throw new UnsupportedOperationException("can not restore a contract with " + currentStorage.getClass().getSimpleName());
+        }
+        set(contract, IRC721FullBase.class, "name", image.name);
+        set(contract, IRC721FullBase.class, "symbol", image.symbol);
+        set(contract, IRC721FullBase.class, "baseURI", image.baseURI);
+        set(contract, IRC721FullBase.class, "baseURISuffix", image.baseURISuffix);
+        set(contract, IRC721FullBase.class, "rangeStarts", new ArrayList<BigInteger>(image.rangeStarts));
+        set(contract, IRC721FullBase.class, "rangeBaseURIs", new ArrayList<String>(image.rangeBaseURIs));
+        RoleMembers minters = new RoleMembers();
+        for (Address minter : image.minters) {
+            minters.add(minter);
+        }
+        set(contract, Minter.class, "minters", minters);
+        set(contract, IRC165Base.class, "supportedInterfaces", new HashSet<String>(image.interfaces));
+        set(contract, IRC721Base.class, "unconditionalReceivers", new HashSet<Address>(image.unconditionalReceivers));
+
+        TokenIdMap<String> tokenURIs = new TokenIdMap<String>();
+        AddressIntMap ownedTokensCount = new AddressIntMap();
+        Map<Address, ArrayList<BigInteger>> ownedTokens = new HashMap<Address, ArrayList<BigInteger>>();
+        ArrayList<BigInteger> allTokens = new ArrayList<BigInteger>(Collections.<BigInteger>nCopies(image.tokens.size(), null));
+        boolean mintOwners = !(tokenOwner instanceof SequentialTokenOwnerStorage);
+        for (TokenRecord token : image.tokens.values()) {
+            if (mintOwners) {
+                tokenOwner.mint(token.tokenId, token.owner);
+            }
+            if (token.approved != null) {
+                tokenApprovals.approve(token.tokenId, token.approved);
+            }
+            if (token.uri != null) {
+                tokenURIs.put(token.tokenId, token.uri);
+            }
+            tokenIndexes.setOwnerIndex(token.tokenId, token.ownerIndex);
+            tokenIndexes.setGlobalIndex(token.tokenId, token.globalIndex);
+            allTokens.set(token.globalIndex, token.tokenId);
+            ownedTokensCount.add(token.owner, 1);
+            ArrayList<BigInteger> tokens = ownedTokens.get(token.owner);
+            if (tokens == null) {
+                tokens = new ArrayList<BigInteger>();
+                ownedTokens.put(token.owner, tokens);
+            }
+            while (tokens.size() <= token.ownerIndex) {
+                tokens.add(null);
+            }
+            tokens.set(token.ownerIndex, token.tokenId);
+        }
+        AddressPairSet operatorApprovals = new AddressPairSet();
+        for (Map.Entry<Address, Map<Address, Boolean>> owner : image.operators.entrySet()) {
+            for (Map.Entry<Address, Boolean> operator : owner.getValue().entrySet()) {
+                if (operator.getValue()) {
+                    operatorApprovals.add(owner.getKey(), operator.getKey());
+                }
+            }
+        }
+
+        set(contract, IRC721Base.class, "tokenOwner", tokenOwner);
+        set(contract, IRC721Base.class, "tokenApprovals", tokenApprovals);
+        set(contract, IRC721Base.class, "ownedTokensCount", ownedTokensCount);
+        set(contract, IRC721Base.class, "operatorApprovals", operatorApprovals);
+        set(contract, IRC721EnumerableBase.class, "ownedTokens", ownedTokens);
+        set(contract, IRC721EnumerableBase.class, "allTokens", allTokens);
+        set(contract, IRC721EnumerableBase.class, "tokenIndexes", tokenIndexes);
+        set(contract, IRC721FullBase.class, "tokenURIs", tokenURIs);
+    }
+
+    /**
+     * The checkpoints are keyed by token id in a map that can not be walked, and a restored contract without
+     * them would answer `ownerOfAt` wrongly
+     */
+    private static void requireNoHistory(IRC721FullBase contract) {
+        if (get(contract, IRC721Base.class, "ownershipHistory") != null) {
+            throw new UnsupportedOperationException("snapshots do not carry the ownership history");
+        }
+    }
+
+    /**
+     * Rebuild the runs from the token owners: a run starts after a burned token and where the owner changes,
+     * so `ownerOf` never scans across a burned token, as in a storage built by mints, transfers and burns
+     */
+    private static SequentialTokenOwnerStorage sequentialStorage(StateImage image) {
+        SequentialTokenOwnerStorage storage = new SequentialTokenOwnerStorage(image.startTokenId);
+        TokenIdMap<Address> runOwners = new TokenIdMap<Address>();
+        Set<BigInteger> burnedTokens = new HashSet<BigInteger>();
+        Address previous = null;
+        for (BigInteger tokenId = image.startTokenId; tokenId.compareTo(image.nextTokenId) < 0; tokenId = tokenId.add(BigInteger.ONE)) {
+            TokenRecord token = image.tokens.get(tokenId);
+            if (token == null) {
+                burnedTokens.add(tokenId);
+                previous = null;
+                continue;
+            }
+            if (!token.owner.equals(previous)) {
+                runOwners.put(tokenId, token.owner);
+            }
+            previous = token.owner;
+        }
+        if (image.tokens.size() + burnedTokens.size() != image.nextTokenId.subtract(image.startTokenId).intValue()) {
+            throw new IllegalArgumentException("the snapshot holds tokens outside of the sequential id range");
+        }
+        set(storage, SequentialTokenOwnerStorage.class, "runOwners", runOwners);
+        set(storage, SequentialTokenOwnerStorage.class, "burnedTokens", burnedTokens);
+        set(storage, SequentialTokenOwnerStorage.class, "nextTokenId", image.nextTokenId);
+        return storage;
+    }
+
+    private static Object get(Object target, Class<?> declaring, String name) {
+        try {
+            return field(declaring, name).get(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void set(Object target, Class<?> declaring, String name, Object value) {
+        try {
+            field(declaring, name).set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Field field(Class<?> declaring, String name) {
+        try {
+            Field field = declaring.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("the state layout of " + declaring.getSimpleName() + " changed, missing " + name, e);
+        }
+    }
+}
@@ -0,0 +1,344 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.snapshot;
+
+import io.icw.contract.sdk.Address;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes the file header and the payload of a snapshot frame.
+ * <p>A base frame carries the whole state, a delta frame the metadata plus the tokens and operator
+ * approvals that changed since the previous frame. Integers are varints, addresses are written once per
+ * frame in an address table and referenced by index.</p>
+ */
+final class SnapshotCodec {
+
+    static final int MAGIC = 0x49524346;
+    /**
+     * Bumped on any change of the payload encoding, files of another version are refused
+     */
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+
+    private static final int OPERATOR_REVOKED = 0;
+    private static final int OPERATOR_APPROVED = 1;
+    private static final int OPERATOR_REMOVED = 2;
+
+    private SnapshotCodec() {
+    }
+
+    static void writeHeader(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    static void readHeader(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("not a snapshot file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported snapshot version " + version + ", expected " + VERSION);
+        }
+    }
+
+    /**
+     * @param previous The image the delta applies to, null for a base frame
+     */
+    static byte[] encode(StateImage current, StateImage previous) throws IOException {
+        List<TokenRecord> changed = new ArrayList<TokenRecord>();
+        for (TokenRecord token : current.tokens.values()) {
+            if (previous == null || !token.sameAs(previous.tokens.get(token.tokenId))) {
+                changed.add(token);
+            }
+        }
+        List<BigInteger> removed = new ArrayList<BigInteger>();
+        if (previous != null) {
+            for (BigInteger tokenId : previous.tokens.keySet()) {
+                if (!current.tokens.containsKey(tokenId)) {
+                    removed.add(tokenId);
+                }
+            }
+        }
+        List<Address[]> operatorKeys = new ArrayList<Address[]>();
+        List<Integer> operatorStates = new ArrayList<Integer>();
+        for (Map.Entry<Address, Map<Address, Boolean>> owner : current.operators.entrySet()) {
+            Map<Address, Boolean> before = previous == null ? null : previous.operators.get(owner.getKey());
+            for (Map.Entry<Address, Boolean> operator : owner.getValue().entrySet()) {
+                if (before == null || !operator.getValue().equals(before.get(operator.getKey()))) {
+                    operatorKeys.add(new Address[]{owner.getKey(), operator.getKey()});
+                    operatorStates.add(operator.getValue() ? OPERATOR_APPROVED : OPERATOR_REVOKED);
+                }
+            }
+        }
+        if (previous != null) {
+            for (Map.Entry<Address, Map<Address, Boolean>> owner : previous.operators.entrySet()) {
+                Map<Address, Boolean> after = current.operators.get(owner.getKey());
+                for (Address operator : owner.getValue().keySet()) {
+                    if (after == null || !after.containsKey(operator)) {
+                        operatorKeys.add(new Address[]{owner.getKey(), operator});
+                        operatorStates.add(OPERATOR_REMOVED);
+                    }
+                }
+            }
+        }
+
+        AddressTable addresses = new AddressTable();
+        for (Address minter : current.minters) {
+            addresses.indexOf(minter);
+        }
+        for (Address receiver : current.unconditionalReceivers) {
+            addresses.indexOf(receiver);
+        }
+        for (TokenRecord token : changed) {
+            addresses.indexOf(token.owner);
+            addresses.indexOf(token.approved);
+        }
+        for (Address[] key : operatorKeys) {
+            addresses.indexOf(key[0]);
+            addresses.indexOf(key[1]);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeString(out, current.name);
+        writeString(out, current.symbol);
+        writeString(out, current.baseURI);
+        writeString(out, current.baseURISuffix);
+        writeVarInt(out, current.rangeStarts.size());
+        for (int i = 0; i < current.rangeStarts.size(); i++) {
+            writeBigInteger(out, current.rangeStarts.get(i));
+            writeString(out, current.rangeBaseURIs.get(i));
+        }
+        writeVarInt(out, current.interfaces.size());
+        for (String name : current.interfaces) {
+            writeString(out, name);
+        }
+        if (current.startTokenId == null) {
+            out.writeByte(0);
+        } else {
+            out.writeByte(1);
+            writeBigInteger(out, current.startTokenId);
+            writeBigInteger(out, current.nextTokenId);
+        }
+
+        writeVarInt(out, addresses.values.size());
+        for (Address address : addresses.values) {
+            writeString(out, address.toString());
+        }
+        writeVarInt(out, current.minters.size());
+        for (Address minter : current.minters) {
+            writeVarInt(out, addresses.indexOf(minter));
+        }
+        writeVarInt(out, current.unconditionalReceivers.size());
+        for (Address receiver : current.unconditionalReceivers) {
+            writeVarInt(out, addresses.indexOf(receiver));
+        }
+
+        writeVarInt(out, removed.size());
+        for (BigInteger tokenId : removed) {
+            writeBigInteger(out, tokenId);
+        }
+        writeVarInt(out, changed.size());
+        for (TokenRecord token : changed) {
+            writeBigInteger(out, token.tokenId);
+            writeVarInt(out, addresses.indexOf(token.owner));
+            writeVarInt(out, token.ownerIndex);
+            writeVarInt(out, token.globalIndex);
+            writeVarInt(out, token.approved == null ? 0 : addresses.indexOf(token.approved) + 1);
+            writeString(out, token.uri);
+        }
+        writeVarInt(out, operatorKeys.size());
+        for (int i = 0; i < operatorKeys.size(); i++) {
+            writeVarInt(out, addresses.indexOf(operatorKeys.get(i)[0]));
+            writeVarInt(out, addresses.indexOf(operatorKeys.get(i)[1]));
+            out.writeByte(operatorStates.get(i));
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Apply a frame payload to `image`, an empty image for a base frame
+     */
+    static void decode(DataInputStream in, StateImage image) throws IOException {
+        image.name = readString(in);
+        image.symbol = readString(in);
+        image.baseURI = readString(in);
+        image.baseURISuffix = readString(in);
+        image.rangeStarts.clear();
+        image.rangeBaseURIs.clear();
+        int ranges = readVarInt(in);
+        for (int i = 0; i < ranges; i++) {
+            image.rangeStarts.add(readBigInteger(in));
+            image.rangeBaseURIs.add(readString(in));
+        }
+        image.interfaces.clear();
+        int interfaces = readVarInt(in);
+        for (int i = 0; i < interfaces; i++) {
+            image.interfaces.add(readString(in));
+        }
+        boolean sequential = in.readByte() == 1;
+        image.startTokenId = sequential ? readBigInteger(in) : null;
+        image.nextTokenId = sequential ? readBigInteger(in) : null;
+
+        Address[] addresses = new Address[readVarInt(in)];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = new Address(readString(in));
+        }
+        image.minters.clear();
+        int minters = readVarInt(in);
+        for (int i = 0; i < minters; i++) {
+            image.minters.add(addresses[readVarInt(in)]);
+        }
+        image.unconditionalReceivers.clear();
+        int receivers = readVarInt(in);
+        for (int i = 0; i < receivers; i++) {
+            image.unconditionalReceivers.add(addresses[readVarInt(in)]);
+        }
+
+        int removed = readVarInt(in);
+        for (int i = 0; i < removed; i++) {
+            image.tokens.remove(readBigInteger(in));
+        }
+        int changed = readVarInt(in);
+        for (int i = 0; i < changed; i++) {
+            BigInteger tokenId = readBigInteger(in);
+            Address owner = addresses[readVarInt(in)];
+            int ownerIndex = readVarInt(in);
+            int globalIndex = readVarInt(in);
+            int approved = readVarInt(in);
+            String uri = readString(in);
+            image.tokens.put(tokenId, new TokenRecord(tokenId, owner, ownerIndex, globalIndex,
+                    approved == 0 ? null : addresses[approved - 1], uri));
+        }
+        int operators = readVarInt(in);
+        for (int i = 0; i < operators; i++) {
+            Address owner = addresses[readVarInt(in)];
+            Address operator = addresses[readVarInt(in)];
+            int state = in.readByte();
+            Map<Address, Boolean> approvals = image.operators.get(owner);
+            if (state == OPERATOR_REMOVED) {
+                if (approvals != null) {
+                    approvals.remove(operator);
+                    if (approvals.isEmpty()) {
+                        image.operators.remove(owner);
+                    }
+                }
+                continue;
+            }
+            if (approvals == null) {
+                approvals = new HashMap<Address, Boolean>();
+                image.operators.put(owner, approvals);
+            }
+            approvals.put(operator, state == OPERATOR_APPROVED);
+        }
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    private static void writeBigInteger(DataOutputStream out, BigInteger value) throws IOException {
+        byte[] bytes = value.toByteArray();
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static BigInteger readBigInteger(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new BigInteger(bytes);
+    }
+
+    /**
+     * Length + 1 prefixed, 0 for null
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class AddressTable {
+        private final Map<Address, Integer> indexes = new HashMap<Address, Integer>();
+        private final List<Address> values = new ArrayList<Address>();
+
+        private int indexOf(Address address) {
+            if (address == null) {
+                return -1;
+            }
+            Integer index = indexes.get(address);
+            if (index == null) {
+                index = values.size();
+                indexes.put(address, index);
+                values.add(address);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.snapshot;
+
+import io.icw.token.base.IRC721FullBase;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of snapshot frames: one base frame followed by delta frames.
+ * <pre>
+ *     SnapshotFile snapshots = new SnapshotFile(file);
+ *     snapshots.append(token);          // base frame on an empty file, delta frame otherwise
+ *     ...
+ *     SnapshotFile.restore(file, new IRC721Full("name", "symbol"));
+ * </pre>
+ * <p>The file starts with a magic number and the format version, a file of another version is refused.
+ * Frame: magic(int), type(byte), payload length(int), payload, CRC32 of the payload(int).
+ * A torn frame at the end of the file (crash while appending) is ignored and overwritten.</p>
+ * <p>A contract with an enabled ownership history can not be snapshotted nor restored.</p>
+ */
+public class SnapshotFile {
+
+    private static final int MAGIC = 0x49524353;
+    private static final byte BASE = 1;
+    private static final byte DELTA = 2;
+
+    private final File file;
+    private StateImage image;
+    private long end;
+    private int frames;
+
+    public SnapshotFile(File file) throws IOException {
+        this.file = file;
+        if (file.exists() && file.length() > 0) {
+            load();
+        }
+    }
+
+    /**
+     * Replace the state of `contract`, a freshly constructed instance, by the last state stored in `file`
+     */
+    public static void restore(File file, IRC721FullBase contract) throws IOException {
+        SnapshotFile snapshots = new SnapshotFile(file);
+        if (snapshots.image == null) {
+            throw new IOException("no snapshot in " + file);
+        }
+        ContractState.restore(contract, snapshots.image);
+    }
+
+    /**
+     * Append the changes of `contract` since the last frame, or its whole state if the file has none
+     */
+    public void append(IRC721FullBase contract) throws IOException {
+        StateImage current = ContractState.capture(contract);
+        writeFrame(image == null ? BASE : DELTA, SnapshotCodec.encode(current, image));
+        image = current;
+    }
+
+    /**
+     * Start the file over with a base frame of `contract`, dropping the previous frames
+     */
+    public void rebase(IRC721FullBase contract) throws IOException {
+        StateImage current = ContractState.capture(contract);
+        byte[] payload = SnapshotCodec.encode(current, null);
+        end = 0;
+        frames = 0;
+        writeFrame(BASE, payload);
+        image = current;
+    }
+
+    /**
+     * @return The count of frames, rebase once the deltas make restores slow
+     */
+    public int frames() {
+        return frames;
+    }
+
+    private void load() throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            long length = in.length();
+            if (length < SnapshotCodec.HEADER_SIZE) {
+                // torn while the header was written, nothing was stored yet
+                return;
+            }
+            SnapshotCodec.readHeader(in);
+            end = SnapshotCodec.HEADER_SIZE;
+            while (end + 13 <= length) {
+                in.seek(end);
+                if (in.readInt() != MAGIC) {
+                    break;
+                }
+                byte type = in.readByte();
+                int size = in.readInt();
+                if (size < 0 || end + 13 + size > length) {
+                    break;
+                }
+                byte[] payload = new byte[size];
+                in.readFully(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (in.readInt() != (int) crc.getValue() || (type == BASE) != (image == null)) {
+                    break;
+                }
+                if (image == null) {
+                    image = new StateImage();
+                }
+                SnapshotCodec.decode(new DataInputStream(new ByteArrayInputStream(payload)), image);
+                end += 13 + size;
+                frames++;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void writeFrame(byte type, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        RandomAccessFile out = new RandomAccessFile(file, "rw");
+        try {
+            if (end == 0) {
+                out.setLength(0);
+                SnapshotCodec.writeHeader(out);
+                end = SnapshotCodec.HEADER_SIZE;
+            }
+            out.setLength(end);
+            out.seek(end);
+            out.writeInt(MAGIC);
+            out.writeByte(type);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeInt((int) crc.getValue());
+            out.getFD().sync();
+            end = out.getFilePointer();
+            frames++;
+        } finally {
+            out.close();
+        }
+    }
+}
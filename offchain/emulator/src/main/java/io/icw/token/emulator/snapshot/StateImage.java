@@ -0,0 +1,60 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.snapshot;
+
+import io.icw.contract.sdk.Address;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Logical state of an `IRC721FullBase` contract, as captured from an instance or decoded from snapshot frames.
+ */
+final class StateImage {
+
+    String name;
+    String symbol;
+    String baseURI;
+    String baseURISuffix;
+    List<BigInteger> rangeStarts = new ArrayList<BigInteger>();
+    List<String> rangeBaseURIs = new ArrayList<String>();
+    List<Address> minters = new ArrayList<Address>();
+    List<String> interfaces = new ArrayList<String>();
+    List<Address> unconditionalReceivers = new ArrayList<Address>();
+    /**
+     * The id range of a `SequentialTokenOwnerStorage`, null for the other storages. The ids of the range
+     * missing from `tokens` were burned.
+     */
+    BigInteger startTokenId;
+    BigInteger nextTokenId;
+    Map<BigInteger, TokenRecord> tokens = new HashMap<BigInteger, TokenRecord>();
+    /**
+     * owner -- operator -- approved, snapshots written before revocations were pruned may still hold `false`
+     */
+    Map<Address, Map<Address, Boolean>> operators = new HashMap<Address, Map<Address, Boolean>>();
+}
@@ -0,0 +1,61 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.snapshot;
+
+import io.icw.contract.sdk.Address;
+
+import java.math.BigInteger;
+
+/**
+ * Everything the contract stores about one token. The positions in the owner's and in the global
+ * enumeration lists are kept, so the lists are rebuilt in the same order.
+ */
+final class TokenRecord {
+
+    final BigInteger tokenId;
+    final Address owner;
+    final int ownerIndex;
+    final int globalIndex;
+    final Address approved;
+    final String uri;
+
+    TokenRecord(BigInteger tokenId, Address owner, int ownerIndex, int globalIndex, Address approved, String uri) {
+        this.tokenId = tokenId;
+        this.owner = owner;
+        this.ownerIndex = ownerIndex;
+        this.globalIndex = globalIndex;
+        this.approved = approved;
+        this.uri = uri;
+    }
+
+    boolean sameAs(TokenRecord other) {
+        return other != null
+                && owner.equals(other.owner)
+                && ownerIndex == other.ownerIndex
+                && globalIndex == other.globalIndex
+                && (approved == null ? other.approved == null : approved.equals(other.approved))
+                && (uri == null ? other.uri == null : uri.equals(other.uri));
+    }
+}
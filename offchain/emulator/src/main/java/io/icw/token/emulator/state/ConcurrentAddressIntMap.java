@@ -0,0 +1,101 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.state;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.storage.AddressIntMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link AddressIntMap} with lock-free reads, a single writer per address at a time.
+ * <p>{@link #slots()} takes a copy of the entries that {@link #keyAt(int)} and {@link #valueAt(int)} then walk,
+ * walks are meant for a quiescent instance.</p>
+ */
+class ConcurrentAddressIntMap extends AddressIntMap {
+
+    private final ConcurrentHashMap<Address, Integer> counts = new ConcurrentHashMap<Address, Integer>();
+    private volatile Address[] walkKeys = new Address[0];
+    private volatile int[] walkValues = new int[0];
+
+    ConcurrentAddressIntMap(AddressIntMap contents) {
+        for (int slot = 0; slot < contents.slots(); slot++) {
+            Address key = contents.keyAt(slot);
+            if (key != null) {
+                counts.put(key, contents.valueAt(slot));
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return counts.size();
+    }
+
+    @Override
+    public int get(Address key) {
+        Integer count = counts.get(key);
+        return count == null ? 0 : count;
+    }
+
+    @Override
+    public int add(Address key, int delta) {
+        int value = get(key) + delta;
+        if (value == 0) {
+            counts.remove(key);
+        } else {
+            counts.put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public int slots() {
+        Address[] keys = new Address[counts.size()];
+        int[] values = new int[keys.length];
+        int slot = 0;
+        for (Map.Entry<Address, Integer> entry : counts.entrySet()) {
+            if (slot == keys.length) {
+                break;
+            }
+            keys[slot] = entry.getKey();
+            values[slot++] = entry.getValue();
+        }
+        walkValues = values;
+        walkKeys = keys;
+        return slot;
+    }
+
+    @Override
+    public Address keyAt(int slot) {
+        return walkKeys[slot];
+    }
+
+    @Override
+    public int valueAt(int slot) {
+        return walkValues[slot];
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.state;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.storage.AddressPairSet;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link AddressPairSet} with lock-free reads, a single writer per pair at a time. Walks take a copy as in
+ * {@link ConcurrentAddressIntMap}.
+ */
+class ConcurrentAddressPairSet extends AddressPairSet {
+
+    private final Set<List<Address>> pairs = ConcurrentHashMap.newKeySet();
+    private volatile Address[] walkFirsts = new Address[0];
+    private volatile Address[] walkSeconds = new Address[0];
+
+    ConcurrentAddressPairSet(AddressPairSet contents) {
+        for (int slot = 0; slot < contents.slots(); slot++) {
+            Address first = contents.firstAt(slot);
+            if (first != null) {
+                pairs.add(Arrays.asList(first, contents.secondAt(slot)));
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return pairs.size();
+    }
+
+    @Override
+    public boolean contains(Address first, Address second) {
+        return pairs.contains(Arrays.asList(first, second));
+    }
+
+    @Override
+    public boolean add(Address first, Address second) {
+        return pairs.add(Arrays.asList(first, second));
+    }
+
+    @Override
+    public boolean remove(Address first, Address second) {
+        return pairs.remove(Arrays.asList(first, second));
+    }
+
+    @Override
+    public int slots() {
+        Address[] firsts = new Address[pairs.size()];
+        Address[] seconds = new Address[firsts.length];
+        int slot = 0;
+        for (List<Address> pair : pairs) {
+            if (slot == firsts.length) {
+                break;
+            }
+            firsts[slot] = pair.get(0);
+            seconds[slot++] = pair.get(1);
+        }
+        walkSeconds = seconds;
+        walkFirsts = firsts;
+        return slot;
+    }
+
+    @Override
+    public Address firstAt(int slot) {
+        return walkFirsts[slot];
+    }
+
+    @Override
+    public Address secondAt(int slot) {
+        return walkSeconds[slot];
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.state;
+
+import io.icw.token.storage.TokenIdMap;
+
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link TokenIdMap} with lock-free reads, a single writer per token id at a time.
+ * <p>The entries found at install stay in the original map, which is only read from then on, changes are
+ * kept in a concurrent map on top of it.</p>
+ */
+class ConcurrentTokenIdMap<V> extends TokenIdMap<V> {
+
+    private static final Object REMOVED = new Object();
+
+    private final TokenIdMap<V> base;
+    private final ConcurrentHashMap<BigInteger, Object> changes = new ConcurrentHashMap<BigInteger, Object>();
+    private final AtomicInteger size;
+
+    ConcurrentTokenIdMap(TokenIdMap<V> base) {
+        this.base = base;
+        this.size = new AtomicInteger(base.size());
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean containsKey(BigInteger tokenId) {
+        Object change = changes.get(tokenId);
+        if (change != null) {
+            return change != REMOVED;
+        }
+        return base.containsKey(tokenId);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(BigInteger tokenId) {
+        Object change = changes.get(tokenId);
+        if (change != null) {
+            return change == REMOVED ? null : (V) change;
+        }
+        return base.get(tokenId);
+    }
+
+    @Override
+    public V put(BigInteger tokenId, V value) {
+        if (value == null) {
+            return remove(tokenId);
+        }
+        V previous = get(tokenId);
+        changes.put(tokenId, value);
+        if (previous == null) {
+            size.incrementAndGet();
+        }
+        return previous;
+    }
+
+    @Override
+    public V remove(BigInteger tokenId) {
+        V previous = get(tokenId);
+        if (previous != null) {
+            changes.put(tokenId, REMOVED);
+            size.decrementAndGet();
+        }
+        return previous;
+    }
+}
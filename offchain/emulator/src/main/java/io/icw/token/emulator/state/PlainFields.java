@@ -0,0 +1,166 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.state;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Values of the plain fields of a contract instance, the fields walked by {@link StateContainers} that hold no
+ * state container: `name`, `symbol`, `baseURI` and `baseURISuffix`, the token range of the sequential owner
+ * storage, the references to the storages and to the ownership history.
+ * <p>Plain fields are assigned in place by the calls, no {@link StateBackend} sees them.</p>
+ */
+public final class PlainFields {
+
+    private final List<Object> targets = new ArrayList<Object>();
+    private final List<Field> fields = new ArrayList<Field>();
+    private final List<Object> values = new ArrayList<Object>();
+    /**
+     * Walk order of the objects of the contract, references to them are compared by position
+     */
+    private final Map<Object, Integer> objects = new IdentityHashMap<Object, Integer>();
+
+    private PlainFields() {
+    }
+
+    public static PlainFields capture(Object contract) {
+        PlainFields captured = new PlainFields();
+        captured.walk(contract);
+        return captured;
+    }
+
+    /**
+     * @return true if the plain fields of `contract` still hold the captured values
+     */
+    public boolean matches(Object contract) {
+        return matches(capture(contract));
+    }
+
+    /**
+     * @return true if both captures hold the same values, the objects of the contract compared by their position
+     * in the walk so that the plain fields of two copies of a contract can be compared
+     */
+    public boolean matches(PlainFields other) {
+        if (other.fields.size() != fields.size()) {
+            return false;
+        }
+        for (int i = 0; i < fields.size(); i++) {
+            if (!other.fields.get(i).equals(fields.get(i)) || !sameValue(values.get(i), other, other.values.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean sameValue(Object value, PlainFields other, Object otherValue) {
+        if (objects.containsKey(value) || other.objects.containsKey(otherValue)) {
+            Integer position = objects.get(value);
+            return position != null && position.equals(other.objects.get(otherValue));
+        }
+        return Arrays.deepEquals(new Object[]{value}, new Object[]{otherValue});
+    }
+
+    /**
+     * @return The count of captured fields
+     */
+    public int size() {
+        return fields.size();
+    }
+
+    public Field fieldAt(int index) {
+        return fields.get(index);
+    }
+
+    public Object valueAt(int index) {
+        return values.get(index);
+    }
+
+    /**
+     * Assign `value` to the field at `index` of the captured contract
+     */
+    public void assign(int index, Object value) {
+        try {
+            fields.get(index).set(targets.get(index), value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("can not assign " + fields.get(index), e);
+        }
+    }
+
+    /**
+     * Assign the captured values back
+     */
+    public void restore() {
+        for (int i = 0; i < fields.size(); i++) {
+            assign(i, copy(values.get(i)));
+        }
+    }
+
+    private void walk(Object target) {
+        if (objects.containsKey(target)) {
+            return;
+        }
+        objects.put(target, objects.size());
+        for (Class<?> type = target.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                Object value;
+                try {
+                    value = field.get(target);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("can not read " + field, e);
+                }
+                if (StateContainers.isContainer(value)) {
+                    continue;
+                }
+                targets.add(target);
+                fields.add(field);
+                values.add(copy(value));
+                if (StateContainers.isContractObject(value)) {
+                    walk(value);
+                }
+            }
+        }
+    }
+
+    private static Object copy(Object value) {
+        if (value == null || !value.getClass().isArray()) {
+            return value;
+        }
+        int length = Array.getLength(value);
+        Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+        System.arraycopy(value, 0, copy, 0, length);
+        return copy;
+    }
+}
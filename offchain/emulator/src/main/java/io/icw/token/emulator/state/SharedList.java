@@ -0,0 +1,234 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.state;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * List with lock-free reads and a single writer at a time, the writers are serialized by the caller.
+ * <p>A reader sees every element at its latest published value, a swap-and-pop in progress can show the
+ * moved element twice. Popped slots are not cleared, so that a reader walking up to a size it read before
+ * a concurrent removal gets the popped element instead of a failure.</p>
+ */
+class SharedList<E> extends ArrayList<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    private volatile AtomicReferenceArray<E> elements;
+    private volatile int size;
+
+    SharedList(Collection<? extends E> contents) {
+        super(0);
+        @SuppressWarnings("unchecked")
+        E[] copy = (E[]) contents.toArray();
+        elements = new AtomicReferenceArray<E>(Math.max(copy.length, 4));
+        for (int i = 0; i < copy.length; i++) {
+            elements.lazySet(i, copy[i]);
+        }
+        size = copy.length;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public E get(int index) {
+        AtomicReferenceArray<E> current = elements;
+        if (index >= size && index < current.length()) {
+            E popped = current.get(index);
+            if (popped != null) {
+                return popped;
+            }
+        }
+        checkIndex(index, size);
+        return current.get(index);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        checkIndex(index, size);
+        return elements.getAndSet(index, element);
+    }
+
+    @Override
+    public boolean add(E element) {
+        int n = size;
+        ensureCapacity(n + 1);
+        elements.set(n, element);
+        size = n + 1;
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        int n = size;
+        if (index < 0 || index > n) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + n);
+        }
+        ensureCapacity(n + 1);
+        AtomicReferenceArray<E> current = elements;
+        for (int i = n; i > index; i--) {
+            current.set(i, current.get(i - 1));
+        }
+        current.set(index, element);
+        size = n + 1;
+    }
+
+    @Override
+    public E remove(int index) {
+        int n = size;
+        checkIndex(index, n);
+        AtomicReferenceArray<E> current = elements;
+        E previous = current.get(index);
+        for (int i = index; i < n - 1; i++) {
+            current.set(i, current.get(i + 1));
+        }
+        size = n - 1;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        int n = size;
+        size = 0;
+        AtomicReferenceArray<E> current = elements;
+        for (int i = 0; i < n; i++) {
+            current.set(i, null);
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> contents) {
+        for (E element : contents) {
+            add(element);
+        }
+        return !contents.isEmpty();
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity) {
+        AtomicReferenceArray<E> current = elements;
+        if (minCapacity <= current.length()) {
+            return;
+        }
+        AtomicReferenceArray<E> grown = new AtomicReferenceArray<E>(Math.max(minCapacity, current.length() * 2));
+        int n = size;
+        for (int i = 0; i < n; i++) {
+            grown.lazySet(i, current.get(i));
+        }
+        elements = grown;
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return indexOf(element) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object element) {
+        int n = size;
+        AtomicReferenceArray<E> current = elements;
+        for (int i = 0; i < n; i++) {
+            E value = current.get(i);
+            if (element == null ? value == null : element.equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public Object[] toArray() {
+        int n = size;
+        AtomicReferenceArray<E> current = elements;
+        Object[] copy = new Object[n];
+        for (int i = 0; i < n; i++) {
+            copy[i] = current.get(i);
+        }
+        return copy;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T[] toArray(T[] target) {
+        Object[] copy = toArray();
+        if (target.length < copy.length) {
+            return (T[]) Arrays.copyOf(copy, copy.length, target.getClass());
+        }
+        System.arraycopy(copy, 0, target, 0, copy.length);
+        if (target.length > copy.length) {
+            target[copy.length] = null;
+        }
+        return target;
+    }
+
+    /**
+     * Iterates over the elements below the size at creation
+     */
+    @Override
+    public Iterator<E> iterator() {
+        final int n = size;
+        final AtomicReferenceArray<E> current = elements;
+        return new Iterator<E>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < n;
+            }
+
+            @Override
+            public E next() {
+                if (next >= n) {
+                    throw new NoSuchElementException();
+                }
+                return current.get(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
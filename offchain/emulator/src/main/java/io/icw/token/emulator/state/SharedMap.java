@@ -0,0 +1,57 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.state;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent map whose list values (the per-owner token lists) are kept as {@link SharedList}s.
+ * <p>A list put into the map is copied, the caller keeps writing through {@link #get(Object)}.</p>
+ */
+class SharedMap<K, V> extends ConcurrentHashMap<K, V> {
+
+    private static final long serialVersionUID = 1L;
+
+    SharedMap(Map<K, V> contents) {
+        for (Map.Entry<K, V> entry : contents.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public V put(K key, V value) {
+        return super.put(key, share(value));
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private V share(V value) {
+        if (value instanceof ArrayList && !(value instanceof SharedList)) {
+            return (V) new SharedList((ArrayList) value);
+        }
+        return value;
+    }
+}
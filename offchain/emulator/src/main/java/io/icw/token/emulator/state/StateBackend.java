@@ -0,0 +1,60 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.state;
+
+import io.icw.token.storage.AddressIntMap;
+import io.icw.token.storage.AddressPairSet;
+import io.icw.token.storage.TokenIdIntMap;
+import io.icw.token.storage.TokenIdMap;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Provides the containers holding the state of a contract instance, installed by {@link StateContainers}.
+ * <p>Each method receives the container found in a field and returns the one to use instead, holding the
+ * same contents. The received container is no longer referenced by the contract afterwards.</p>
+ * <p>Backends only exist in the emulator, the on-chain contract has no such extension point.</p>
+ */
+public interface StateBackend {
+
+    <V> TokenIdMap<V> tokenIdMap(TokenIdMap<V> current);
+
+    TokenIdIntMap tokenIdIntMap(TokenIdIntMap current);
+
+    AddressIntMap addressIntMap(AddressIntMap current);
+
+    AddressPairSet addressPairSet(AddressPairSet current);
+
+    /**
+     * Also holds the per-owner token lists, as values
+     */
+    <K, V> Map<K, V> map(Map<K, V> current);
+
+    <E> Set<E> set(Set<E> current);
+
+    <E> ArrayList<E> list(ArrayList<E> current);
+}
@@ -0,0 +1,153 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.state;
+
+import io.icw.token.storage.AddressIntMap;
+import io.icw.token.storage.AddressPairSet;
+import io.icw.token.storage.TokenIdIntMap;
+import io.icw.token.storage.TokenIdMap;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Swaps the state containers of a contract instance (`IRC721Base`, `IRC721EnumerableBase`, `IRC721FullBase`,
+ * `IRC165Base`, `Minter` and their storages) for the ones of a {@link StateBackend}, the same walk as
+ * {@link io.icw.token.emulator.cost.Instrumentation}.
+ * <p>The swap is done by reflection on the fields of an instance built by the emulator: the contract sources
+ * are not changed and the contract deployed on chain keeps the containers it allocates.</p>
+ */
+public final class StateContainers {
+
+    private static final String CONTRACT_PACKAGE = "io.icw.token.";
+
+    private StateContainers() {
+    }
+
+    /**
+     * @return true if `value` is an object of the contract walked for its fields, a storage or a record
+     */
+    public static boolean isContractObject(Object value) {
+        return value != null && isContractType(value.getClass());
+    }
+
+    public static boolean isContractType(Class<?> type) {
+        return type.getName().startsWith(CONTRACT_PACKAGE);
+    }
+
+    /**
+     * @return true if `value` is a state container, replaced on install
+     */
+    public static boolean isContainer(Object value) {
+        return value instanceof Map || value instanceof Set || value instanceof ArrayList || value instanceof TokenIdMap
+                || value instanceof AddressIntMap || value instanceof AddressPairSet || value instanceof TokenIdIntMap;
+    }
+
+    public static <T> T install(T contract, StateBackend backend) {
+        if (backend instanceof DurableStateBackend) {
+            ((DurableStateBackend) backend).attach(contract);
+        }
+        install(contract, backend, new IdentityHashMap<Object, Boolean>());
+        return contract;
+    }
+
+    /**
+     * @return The fields holding the state containers of `contract` and of the objects it reaches
+     */
+    public static List<Field> containerFields(Object contract) {
+        List<Field> fields = new ArrayList<Field>();
+        containerFields(contract, fields, new IdentityHashMap<Object, Boolean>());
+        return fields;
+    }
+
+    private static void containerFields(Object target, List<Field> fields, Map<Object, Boolean> visited) {
+        if (visited.put(target, Boolean.TRUE) != null) {
+            return;
+        }
+        for (Class<?> type = target.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                try {
+                    Object value = field.get(target);
+                    if (isContainer(value)) {
+                        fields.add(field);
+                    } else if (isContractObject(value)) {
+                        containerFields(value, fields, visited);
+                    }
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("can not read " + field, e);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static void install(Object target, StateBackend backend, Map<Object, Boolean> visited) {
+        if (visited.put(target, Boolean.TRUE) != null) {
+            return;
+        }
+        for (Class<?> type = target.getClass(); type != null && type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                try {
+                    Object value = field.get(target);
+                    if (value == null) {
+                        continue;
+                    }
+                    if (value instanceof Map) {
+                        field.set(target, backend.map((Map) value));
+                    } else if (value instanceof Set) {
+                        field.set(target, backend.set((Set) value));
+                    } else if (value instanceof ArrayList) {
+                        field.set(target, backend.list((ArrayList) value));
+                    } else if (value instanceof TokenIdMap) {
+                        field.set(target, backend.tokenIdMap((TokenIdMap) value));
+                    } else if (value instanceof AddressIntMap) {
+                        field.set(target, backend.addressIntMap((AddressIntMap) value));
+                    } else if (value instanceof AddressPairSet) {
+                        field.set(target, backend.addressPairSet((AddressPairSet) value));
+                    } else if (value instanceof TokenIdIntMap) {
+                        field.set(target, backend.tokenIdIntMap((TokenIdIntMap) value));
+                    } else if (isContractObject(value)) {
+                        install(value, backend, visited);
+                    }
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("can not install state container in " + field, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.state;
+
+import io.icw.token.storage.AddressIntMap;
+import io.icw.token.storage.AddressPairSet;
+import io.icw.token.storage.TokenIdIntMap;
+import io.icw.token.storage.TokenIdMap;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Concurrent containers for a contract instance shared between threads.
+ * <p>Reads are lock-free and see each key at its latest written value. Writers of the same key (token id,
+ * address, operator pair, per-owner list or whole list) must be serialized by the caller, writers of
+ * different keys can run concurrently: `ConcurrentContract` does so with striped locks.</p>
+ */
+public class StripedStateBackend implements StateBackend {
+
+    @Override
+    public <V> TokenIdMap<V> tokenIdMap(TokenIdMap<V> current) {
+        return current instanceof ConcurrentTokenIdMap ? current : new ConcurrentTokenIdMap<V>(current);
+    }
+
+    @Override
+    public TokenIdIntMap tokenIdIntMap(TokenIdIntMap current) {
+        return current instanceof ConcurrentTokenIdIntMap ? current : new ConcurrentTokenIdIntMap(current);
+    }
+
+    @Override
+    public AddressIntMap addressIntMap(AddressIntMap current) {
+        return current instanceof ConcurrentAddressIntMap ? current : new ConcurrentAddressIntMap(current);
+    }
+
+    @Override
+    public AddressPairSet addressPairSet(AddressPairSet current) {
+        return current instanceof ConcurrentAddressPairSet ? current : new ConcurrentAddressPairSet(current);
+    }
+
+    @Override
+    public <K, V> Map<K, V> map(Map<K, V> current) {
+        return current instanceof SharedMap ? current : new SharedMap<K, V>(current);
+    }
+
+    @Override
+    public <E> Set<E> set(Set<E> current) {
+        if (current.getClass().getName().startsWith("java.util.concurrent.")) {
+            return current;
+        }
+        Set<E> shared = ConcurrentHashMap.newKeySet();
+        shared.addAll(current);
+        return shared;
+    }
+
+    @Override
+    public <E> ArrayList<E> list(ArrayList<E> current) {
+        return current instanceof SharedList ? current : new SharedList<E>(current);
+    }
+}
@@ -0,0 +1,182 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Open addressing hash index from key hash to record location, kept in a memory-mapped scratch file so that
+ * the heap does not grow with the key count. It is rebuilt from the log on open.
+ * <p>A slot is `[long hash][int segment][int offset]`, segment 0 marks an empty slot and -1 a removed one.
+ * Keys sharing a hash are told apart by the caller, from the key of the record.</p>
+ */
+final class HashIndex {
+
+    static final int EMPTY = 0;
+    static final int REMOVED = -1;
+
+    private static final int SLOT_BYTES = 16;
+    private static final int SLOTS_PER_CHUNK = 1 << 26;
+
+    private final File file;
+    private final List<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+    private RandomAccessFile raf;
+    private long capacity;
+    private long mask;
+    private long used;
+    private long removed;
+
+    HashIndex(File file, long initialCapacity) throws IOException {
+        this.file = file;
+        map(Math.max(1024L, Long.highestOneBit(initialCapacity - 1) << 1));
+    }
+
+    long capacity() {
+        return capacity;
+    }
+
+    long hashAt(long slot) {
+        return chunk(slot).getLong(offset(slot));
+    }
+
+    int segmentAt(long slot) {
+        return chunk(slot).getInt(offset(slot) + 8);
+    }
+
+    int offsetAt(long slot) {
+        return chunk(slot).getInt(offset(slot) + 12);
+    }
+
+    /**
+     * @return The first slot probed for `hash`, walk on with {@link #next(long)} up to an empty slot
+     */
+    long first(long hash) {
+        return mix(hash) & mask;
+    }
+
+    long next(long slot) {
+        return (slot + 1) & mask;
+    }
+
+    void set(long slot, long hash, int segment, int offset) throws IOException {
+        int previous = segmentAt(slot);
+        MappedByteBuffer chunk = chunk(slot);
+        int at = offset(slot);
+        chunk.putLong(at, hash);
+        chunk.putInt(at + 8, segment);
+        chunk.putInt(at + 12, offset);
+        if (previous == EMPTY) {
+            used++;
+            if (used * 2 > capacity) {
+                rehash(capacity * 2);
+            }
+        } else if (previous == REMOVED) {
+            removed--;
+        }
+    }
+
+    void remove(long slot) throws IOException {
+        chunk(slot).putInt(offset(slot) + 8, REMOVED);
+        removed++;
+        if (removed * 4 > capacity) {
+            rehash(capacity);
+        }
+    }
+
+    void close() throws IOException {
+        chunks.clear();
+        if (raf != null) {
+            raf.close();
+            raf = null;
+        }
+        file.delete();
+    }
+
+    private void rehash(long newCapacity) throws IOException {
+        long oldCapacity = capacity;
+        List<MappedByteBuffer> oldChunks = new ArrayList<MappedByteBuffer>(chunks);
+        RandomAccessFile oldRaf = raf;
+        File oldFile = new File(file.getPath() + ".old");
+        file.renameTo(oldFile);
+        map(newCapacity);
+        for (long slot = 0; slot < oldCapacity; slot++) {
+            MappedByteBuffer chunk = oldChunks.get((int) (slot / SLOTS_PER_CHUNK));
+            int at = (int) (slot % SLOTS_PER_CHUNK) * SLOT_BYTES;
+            int segment = chunk.getInt(at + 8);
+            if (segment == EMPTY || segment == REMOVED) {
+                continue;
+            }
+            long hash = chunk.getLong(at);
+            long target = first(hash);
+            while (segmentAt(target) != EMPTY) {
+                target = next(target);
+            }
+            MappedByteBuffer targetChunk = chunk(target);
+            int targetAt = offset(target);
+            targetChunk.putLong(targetAt, hash);
+            targetChunk.putInt(targetAt + 8, segment);
+            targetChunk.putInt(targetAt + 12, chunk.getInt(at + 12));
+            used++;
+        }
+        oldChunks.clear();
+        oldRaf.close();
+        oldFile.delete();
+    }
+
+    private void map(long newCapacity) throws IOException {
+        file.delete();
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(newCapacity * SLOT_BYTES);
+        chunks.clear();
+        for (long first = 0; first < newCapacity; first += SLOTS_PER_CHUNK) {
+            long slots = Math.min(SLOTS_PER_CHUNK, newCapacity - first);
+            chunks.add(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, first * SLOT_BYTES, slots * SLOT_BYTES));
+        }
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+        used = 0;
+        removed = 0;
+    }
+
+    private MappedByteBuffer chunk(long slot) {
+        return chunks.get((int) (slot / SLOTS_PER_CHUNK));
+    }
+
+    private static int offset(long slot) {
+        return (int) (slot % SLOTS_PER_CHUNK) * SLOT_BYTES;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        return hash ^ (hash >>> 33);
+    }
+}
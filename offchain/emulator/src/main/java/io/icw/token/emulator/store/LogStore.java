@@ -0,0 +1,471 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Embedded log-structured key-value store over memory-mapped segment files.
+ * <p>Every write is appended to the head segment, the segments are the write-ahead log: records are
+ * `[int crc][byte type][int key length][int value length][key][value]` and a commit record closes each atomic
+ * group of writes. On open the log is replayed up to the last intact commit, a torn or uncommitted tail is
+ * dropped. The index from key to record lives in a memory-mapped {@link HashIndex}, values are read from
+ * the segments, so the heap does not grow with the data.</p>
+ * <p>Compaction copies the live records of the sealed segments to the head, commits and then deletes the
+ * sealed segments; it runs on commit once they hold more dead than live bytes.</p>
+ * <p>One writer at a time. Reads may run concurrently with each other, not with a writer.</p>
+ */
+class LogStore implements Closeable {
+
+    interface Visitor {
+        void visit(byte[] key, byte[] value);
+    }
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte COMMIT = 3;
+    /**
+     * Closes a segment, the log goes on in the next one
+     */
+    private static final byte SEAL = 4;
+    private static final int HEADER = 13;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final File directory;
+    private final int segmentSize;
+    private final boolean syncOnCommit;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<Integer, Segment>();
+    private final HashIndex index;
+    private Segment head;
+    private int position;
+    private boolean dirty;
+
+    /**
+     * @param segmentSize Bytes per segment file, also the upper bound of a record
+     * @param syncOnCommit Force the head segment to disk on every commit, else only on {@link #sync()}
+     */
+    public LogStore(File directory, int segmentSize, boolean syncOnCommit) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("can not create " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncOnCommit = syncOnCommit;
+        this.index = new HashIndex(new File(directory, "index.tmp"), 1024);
+        recover();
+    }
+
+    public byte[] get(byte[] key) {
+        long slot = find(key, hash(key));
+        if (slot < 0) {
+            return null;
+        }
+        return readValue(segments.get(index.segmentAt(slot)), index.offsetAt(slot));
+    }
+
+    public void put(byte[] key, byte[] value) {
+        try {
+            int offset = append(PUT, key, value);
+            apply(PUT, key, head, offset, HEADER + key.length + value.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void remove(byte[] key) {
+        if (find(key, hash(key)) < 0) {
+            return;
+        }
+        try {
+            int offset = append(DELETE, key, new byte[0]);
+            apply(DELETE, key, head, offset, HEADER + key.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Close the group of writes since the previous commit, they survive a crash together or not at all
+     */
+    public void commit() {
+        if (!dirty) {
+            return;
+        }
+        try {
+            append(COMMIT, new byte[0], new byte[0]);
+            dirty = false;
+            if (syncOnCommit) {
+                head.buffer.force();
+            }
+            if (compactionDue()) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Force every segment to disk
+     */
+    public void sync() {
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * Visit every key starting with `prefix`, in no particular order. The store must not be written meanwhile.
+     */
+    public void forEach(byte[] prefix, Visitor visitor) {
+        for (long slot = 0; slot < index.capacity(); slot++) {
+            int segmentId = index.segmentAt(slot);
+            if (segmentId == HashIndex.EMPTY || segmentId == HashIndex.REMOVED) {
+                continue;
+            }
+            Segment segment = segments.get(segmentId);
+            int offset = index.offsetAt(slot);
+            byte[] key = readKey(segment, offset);
+            if (startsWith(key, prefix)) {
+                visitor.visit(key, readValue(segment, offset));
+            }
+        }
+    }
+
+    /**
+     * Copy the live records of the sealed segments to the head and delete them
+     */
+    public void compact() throws IOException {
+        commit();
+        List<Segment> sealed = new ArrayList<Segment>(segments.headMap(head.id).values());
+        if (sealed.isEmpty()) {
+            return;
+        }
+        for (Segment segment : sealed) {
+            int offset = 0;
+            while (offset + HEADER <= segmentSize) {
+                byte type = segment.buffer.get(offset + 4);
+                if (type != PUT && type != DELETE && type != COMMIT) {
+                    break;
+                }
+                int keyLength = segment.buffer.getInt(offset + 5);
+                int valueLength = segment.buffer.getInt(offset + 9);
+                if (type == PUT) {
+                    byte[] key = readKey(segment, offset);
+                    long slot = find(key, hash(key));
+                    if (slot >= 0 && index.segmentAt(slot) == segment.id && index.offsetAt(slot) == offset) {
+                        put(key, readValue(segment, offset));
+                    }
+                }
+                offset += HEADER + keyLength + valueLength;
+            }
+        }
+        if (dirty) {
+            append(COMMIT, new byte[0], new byte[0]);
+            dirty = false;
+        }
+        head.buffer.force();
+        for (Segment segment : sealed) {
+            segments.remove(segment.id);
+            segment.close();
+            segment.file.delete();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        commit();
+        sync();
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+        index.close();
+    }
+
+    private boolean compactionDue() {
+        long live = 0;
+        long dead = 0;
+        for (Segment segment : segments.headMap(head.id).values()) {
+            live += segment.live;
+            dead += segment.written - segment.live;
+        }
+        return dead > live && dead + live >= segmentSize;
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(id, new Segment(id, file, segmentSize));
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            head = openSegment(1);
+            position = 0;
+            return;
+        }
+        // replay, the writes of a group are applied once its commit record is read
+        List<int[]> group = new ArrayList<int[]>();
+        Segment committedSegment = segments.firstEntry().getValue();
+        int committedPosition = 0;
+        replay:
+        for (Segment segment : segments.values()) {
+            int offset = 0;
+            while (true) {
+                if (offset + HEADER > segmentSize) {
+                    break replay;
+                }
+                byte type = segment.buffer.get(offset + 4);
+                int keyLength = segment.buffer.getInt(offset + 5);
+                int valueLength = segment.buffer.getInt(offset + 9);
+                if (type < PUT || type > SEAL || keyLength < 0 || valueLength < 0
+                        || offset + HEADER + (long) keyLength + valueLength > segmentSize
+                        || segment.buffer.getInt(offset) != crc(segment, offset, HEADER - 4 + keyLength + valueLength)) {
+                    break replay;
+                }
+                int length = HEADER + keyLength + valueLength;
+                segment.written = offset + length;
+                if (type == SEAL) {
+                    continue replay;
+                }
+                if (type == COMMIT) {
+                    for (int[] write : group) {
+                        Segment written = segments.get(write[0]);
+                        byte[] key = readKey(written, write[1]);
+                        apply(written.buffer.get(write[1] + 4), key, written, write[1], write[2]);
+                    }
+                    group.clear();
+                    committedSegment = segment;
+                    committedPosition = offset + length;
+                } else {
+                    group.add(new int[]{segment.id, offset, length});
+                }
+                offset += length;
+            }
+        }
+        // drop the uncommitted tail
+        for (Segment segment : new ArrayList<Segment>(segments.tailMap(committedSegment.id, false).values())) {
+            segments.remove(segment.id);
+            segment.close();
+            segment.file.delete();
+        }
+        head = committedSegment;
+        position = committedPosition;
+        head.written = position;
+        for (int i = position; i < segmentSize; i++) {
+            head.buffer.put(i, (byte) 0);
+        }
+        head.buffer.force();
+    }
+
+    private int append(byte type, byte[] key, byte[] value) throws IOException {
+        int length = HEADER + key.length + value.length;
+        if (length + HEADER > segmentSize) {
+            throw new IllegalArgumentException("record of " + length + " bytes does not fit a segment");
+        }
+        if (position + length + HEADER > segmentSize) {
+            write(SEAL, new byte[0], new byte[0]);
+            head = openSegment(head.id + 1);
+            position = 0;
+        }
+        int offset = position;
+        write(type, key, value);
+        if (type != COMMIT) {
+            dirty = true;
+        }
+        return offset;
+    }
+
+    private void write(byte type, byte[] key, byte[] value) {
+        MappedByteBuffer buffer = head.buffer;
+        int offset = position;
+        buffer.put(offset + 4, type);
+        buffer.putInt(offset + 5, key.length);
+        buffer.putInt(offset + 9, value.length);
+        for (int i = 0; i < key.length; i++) {
+            buffer.put(offset + HEADER + i, key[i]);
+        }
+        for (int i = 0; i < value.length; i++) {
+            buffer.put(offset + HEADER + key.length + i, value[i]);
+        }
+        buffer.putInt(offset, crc(head, offset, HEADER - 4 + key.length + value.length));
+        position = offset + HEADER + key.length + value.length;
+        head.written = position;
+    }
+
+    /**
+     * Point the index at the record, and account for the record it replaces
+     */
+    private void apply(byte type, byte[] key, Segment segment, int offset, int length) throws IOException {
+        long hash = hash(key);
+        long slot = find(key, hash);
+        if (slot >= 0) {
+            Segment previous = segments.get(index.segmentAt(slot));
+            int previousOffset = index.offsetAt(slot);
+            previous.live -= HEADER + previous.buffer.getInt(previousOffset + 5) + previous.buffer.getInt(previousOffset + 9);
+        }
+        if (type == PUT) {
+            index.set(slot >= 0 ? slot : ~slot, hash, segment.id, offset);
+            segment.live += length;
+        } else if (slot >= 0) {
+            index.remove(slot);
+        }
+    }
+
+    /**
+     * @return The slot of `key`, or the complement of the slot to insert it in
+     */
+    private long find(byte[] key, long hash) {
+        long slot = index.first(hash);
+        long insert = -1;
+        while (true) {
+            int segmentId = index.segmentAt(slot);
+            if (segmentId == HashIndex.EMPTY) {
+                return ~(insert >= 0 ? insert : slot);
+            }
+            if (segmentId == HashIndex.REMOVED) {
+                if (insert < 0) {
+                    insert = slot;
+                }
+            } else if (index.hashAt(slot) == hash && keyEquals(segments.get(segmentId), index.offsetAt(slot), key)) {
+                return slot;
+            }
+            slot = index.next(slot);
+        }
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        Segment segment = new Segment(id, new File(directory, String.format("%s%010d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX)), segmentSize);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private static byte[] readKey(Segment segment, int offset) {
+        byte[] key = new byte[segment.buffer.getInt(offset + 5)];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = segment.buffer.get(offset + HEADER + i);
+        }
+        return key;
+    }
+
+    private static byte[] readValue(Segment segment, int offset) {
+        int keyLength = segment.buffer.getInt(offset + 5);
+        byte[] value = new byte[segment.buffer.getInt(offset + 9)];
+        for (int i = 0; i < value.length; i++) {
+            value[i] = segment.buffer.get(offset + HEADER + keyLength + i);
+        }
+        return value;
+    }
+
+    private static boolean keyEquals(Segment segment, int offset, byte[] key) {
+        if (segment.buffer.getInt(offset + 5) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (segment.buffer.get(offset + HEADER + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * CRC of the `length` bytes following the crc field of the record at `offset`
+     */
+    private static int crc(Segment segment, int offset, int length) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < length; i++) {
+            crc.update(segment.buffer.get(offset + 4 + i));
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 64-bit FNV-1a
+     */
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static final class Segment {
+        private final int id;
+        private final File file;
+        private final RandomAccessFile raf;
+        private final MappedByteBuffer buffer;
+        /**
+         * Bytes of records still pointed to by the index
+         */
+        private long live;
+        private long written;
+
+        private Segment(int id, File file, int size) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            if (raf.length() < size) {
+                raf.setLength(size);
+            }
+            this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        private void close() throws IOException {
+            raf.close();
+        }
+    }
+}
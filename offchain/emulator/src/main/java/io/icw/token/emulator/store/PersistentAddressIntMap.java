@@ -0,0 +1,104 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.store;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.storage.AddressIntMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link AddressIntMap} kept in a {@link LogStore}.
+ * <p>{@link #slots()} takes a copy of the entries that {@link #keyAt(int)} and {@link #valueAt(int)} then walk.</p>
+ */
+class PersistentAddressIntMap extends AddressIntMap {
+
+    private final StoreNamespace namespace;
+    private Address[] walkKeys = new Address[0];
+    private int[] walkValues = new int[0];
+
+    PersistentAddressIntMap(StoreNamespace namespace) {
+        this.namespace = namespace;
+    }
+
+    @Override
+    public int size() {
+        return namespace.count();
+    }
+
+    @Override
+    public int get(Address key) {
+        return StoreCodec.decodeInt(namespace.store.get(namespace.key(StoreCodec.ENTRY, key)), 0);
+    }
+
+    @Override
+    public int add(Address key, int delta) {
+        int previous = get(key);
+        int value = previous + delta;
+        byte[] entryKey = namespace.key(StoreCodec.ENTRY, key);
+        if (value == 0) {
+            if (previous != 0) {
+                namespace.store.remove(entryKey);
+                namespace.addCount(-1);
+            }
+        } else {
+            namespace.store.put(entryKey, StoreCodec.encode(value));
+            if (previous == 0) {
+                namespace.addCount(1);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public int slots() {
+        final List<Address> keys = new ArrayList<Address>(namespace.count());
+        final List<Integer> values = new ArrayList<Integer>(namespace.count());
+        namespace.forEachEntry(new LogStore.Visitor() {
+            @Override
+            public void visit(byte[] key, byte[] value) {
+                keys.add((Address) StoreCodec.decode(key, StoreNamespace.PART_OFFSET));
+                values.add(StoreCodec.decodeInt(value, 0));
+            }
+        });
+        walkKeys = keys.toArray(new Address[keys.size()]);
+        walkValues = new int[values.size()];
+        for (int i = 0; i < walkValues.length; i++) {
+            walkValues[i] = values.get(i);
+        }
+        return walkKeys.length;
+    }
+
+    @Override
+    public Address keyAt(int slot) {
+        return walkKeys[slot];
+    }
+
+    @Override
+    public int valueAt(int slot) {
+        return walkValues[slot];
+    }
+}
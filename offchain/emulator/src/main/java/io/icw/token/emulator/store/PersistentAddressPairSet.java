@@ -0,0 +1,105 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.store;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.storage.AddressPairSet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link AddressPairSet} kept in a {@link LogStore}.
+ * <p>{@link #slots()} takes a copy of the pairs that {@link #firstAt(int)} and {@link #secondAt(int)} then walk.</p>
+ */
+class PersistentAddressPairSet extends AddressPairSet {
+
+    private static final byte[] PRESENT = new byte[0];
+
+    private final StoreNamespace namespace;
+    private Address[] walkFirsts = new Address[0];
+    private Address[] walkSeconds = new Address[0];
+
+    PersistentAddressPairSet(StoreNamespace namespace) {
+        this.namespace = namespace;
+    }
+
+    @Override
+    public int size() {
+        return namespace.count();
+    }
+
+    @Override
+    public boolean contains(Address first, Address second) {
+        return namespace.store.get(namespace.key(StoreCodec.ENTRY, first, second)) != null;
+    }
+
+    @Override
+    public boolean add(Address first, Address second) {
+        if (contains(first, second)) {
+            return false;
+        }
+        namespace.store.put(namespace.key(StoreCodec.ENTRY, first, second), PRESENT);
+        namespace.addCount(1);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Address first, Address second) {
+        if (!contains(first, second)) {
+            return false;
+        }
+        namespace.store.remove(namespace.key(StoreCodec.ENTRY, first, second));
+        namespace.addCount(-1);
+        return true;
+    }
+
+    @Override
+    public int slots() {
+        final List<Address> firsts = new ArrayList<Address>(namespace.count());
+        final List<Address> seconds = new ArrayList<Address>(namespace.count());
+        namespace.forEachEntry(new LogStore.Visitor() {
+            @Override
+            public void visit(byte[] key, byte[] value) {
+                int offset = StoreNamespace.PART_OFFSET;
+                firsts.add((Address) StoreCodec.decode(key, offset));
+                seconds.add((Address) StoreCodec.decode(key, StoreCodec.skip(key, offset)));
+            }
+        });
+        walkFirsts = firsts.toArray(new Address[firsts.size()]);
+        walkSeconds = seconds.toArray(new Address[seconds.size()]);
+        return walkFirsts.length;
+    }
+
+    @Override
+    public Address firstAt(int slot) {
+        return walkFirsts[slot];
+    }
+
+    @Override
+    public Address secondAt(int slot) {
+        return walkSeconds[slot];
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.store;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map kept in a {@link LogStore}. List values (the per-owner token lists) are stored element by element and
+ * handed out as {@link StoredList} views.
+ * <p>A list put into the map is copied, later changes must go through {@link #get(Object)}. {@link #entrySet()}
+ * is a copy of the entries.</p>
+ */
+class PersistentMap<K, V> extends AbstractMap<K, V> {
+
+    private final StoreNamespace namespace;
+
+    PersistentMap(StoreNamespace namespace) {
+        this.namespace = namespace;
+    }
+
+    @Override
+    public int size() {
+        return namespace.count();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return namespace.store.get(namespace.key(StoreCodec.ENTRY, key)) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        return value(key, namespace.store.get(namespace.key(StoreCodec.ENTRY, key)));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (value instanceof StoredList && ((StoredList<?>) value).isViewOf(namespace, key)) {
+            return value;
+        }
+        V previous = remove(key);
+        byte[] entryKey = namespace.key(StoreCodec.ENTRY, key);
+        if (value instanceof List) {
+            namespace.store.put(entryKey, StoreCodec.LIST_MARKER);
+            new StoredList<Object>(namespace, key).addAll((List<Object>) value);
+        } else {
+            namespace.store.put(entryKey, StoreCodec.encode(value));
+        }
+        namespace.addCount(1);
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        byte[] entryKey = namespace.key(StoreCodec.ENTRY, key);
+        byte[] stored = namespace.store.get(entryKey);
+        if (stored == null) {
+            return null;
+        }
+        V previous;
+        if (StoreCodec.isList(stored)) {
+            StoredList<Object> list = new StoredList<Object>(namespace, key);
+            previous = copyOf(list);
+            list.clear();
+        } else {
+            previous = value(key, stored);
+        }
+        namespace.store.remove(entryKey);
+        namespace.addCount(-1);
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        final List<Entry<K, V>> entries = new ArrayList<Entry<K, V>>(namespace.count());
+        namespace.forEachEntry(new LogStore.Visitor() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void visit(byte[] key, byte[] value) {
+                K entryKey = (K) StoreCodec.decode(key, StoreNamespace.PART_OFFSET);
+                entries.add(new SimpleImmutableEntry<K, V>(entryKey, value(entryKey, value)));
+            }
+        });
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return entries.iterator();
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private V value(Object key, byte[] stored) {
+        if (StoreCodec.isList(stored)) {
+            return (V) new StoredList<Object>(namespace, key);
+        }
+        return (V) StoreCodec.decode(stored);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V copyOf(List<Object> list) {
+        return (V) new ArrayList<Object>(list);
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.store;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Set kept in a {@link LogStore}, iterated over a copy of its elements.
+ */
+class PersistentSet<E> extends AbstractSet<E> {
+
+    private static final byte[] PRESENT = new byte[0];
+
+    private final StoreNamespace namespace;
+
+    PersistentSet(StoreNamespace namespace) {
+        this.namespace = namespace;
+    }
+
+    @Override
+    public int size() {
+        return namespace.count();
+    }
+
+    @Override
+    public boolean contains(Object element) {
+        return namespace.store.get(namespace.key(StoreCodec.ENTRY, element)) != null;
+    }
+
+    @Override
+    public boolean add(E element) {
+        if (contains(element)) {
+            return false;
+        }
+        namespace.store.put(namespace.key(StoreCodec.ENTRY, element), PRESENT);
+        namespace.addCount(1);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object element) {
+        if (!contains(element)) {
+            return false;
+        }
+        namespace.store.remove(namespace.key(StoreCodec.ENTRY, element));
+        namespace.addCount(-1);
+        return true;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        final List<E> elements = new ArrayList<E>(namespace.count());
+        namespace.forEachEntry(new LogStore.Visitor() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void visit(byte[] key, byte[] value) {
+                elements.add((E) StoreCodec.decode(key, StoreNamespace.PART_OFFSET));
+            }
+        });
+        final Iterator<E> copy = elements.iterator();
+        return new Iterator<E>() {
+            private E last;
+
+            @Override
+            public boolean hasNext() {
+                return copy.hasNext();
+            }
+
+            @Override
+            public E next() {
+                last = copy.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                PersistentSet.this.remove(last);
+            }
+        };
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.store;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.emulator.state.DurableStateBackend;
+import io.icw.token.emulator.state.PlainFields;
+import io.icw.token.emulator.state.StateContainers;
+import io.icw.token.storage.AddressIntMap;
+import io.icw.token.storage.AddressPairSet;
+import io.icw.token.storage.TokenIdIntMap;
+import io.icw.token.storage.TokenIdMap;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the state containers of a contract instance in a {@link LogStore} directory instead of the heap, so
+ * that collections of tens of millions of tokens run with a bounded heap and are recovered after a crash.
+ * <p>Containers are numbered in the order {@link StateContainers} installs them: a directory is reopened by
+ * installing it into a new instance of the same contract class, whose containers then hold the stored
+ * contents instead of the ones of its constructor. The plain fields of the contract ({@link PlainFields}: name,
+ * base URI, the bounds of the sequential owner storage) are stored on every commit and assigned back on
+ * install.</p>
+ * <p>Values must be immutable `Address`, `String`, `BigInteger`, `Integer` or `Boolean` (or lists of them as
+ * map values). A contract whose fields are declared with other types, the packed per-token records, the
+ * ownership history checkpoints or the custody records of a receiver, is refused on install. A token id map
+ * must be empty when installed. A list put into a map is copied, later changes must go through a new `get`,
+ * as the transactional containers of the parallel executors do.</p>
+ */
+public class PersistentStateBackend implements DurableStateBackend, Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private static final Set<Type> STORABLE = new HashSet<Type>(Arrays.<Type>asList(Address.class, String.class,
+            BigInteger.class, Integer.class, Boolean.class, int.class, boolean.class));
+
+    private final LogStore store;
+    /**
+     * Namespace of the plain fields, keyed by their position in {@link PlainFields}, its marker holds their names
+     */
+    private final StoreNamespace plainFields;
+    private int nextNamespace = 1;
+    private Object contract;
+    /**
+     * Values of the plain fields as of the last commit
+     */
+    private Object[] storedValues;
+
+    public PersistentStateBackend(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, false);
+    }
+
+    /**
+     * @param syncOnCommit Force every commit to disk, to survive a machine crash and not only a process crash
+     */
+    public PersistentStateBackend(File directory, int segmentSize, boolean syncOnCommit) throws IOException {
+        this.store = new LogStore(directory, segmentSize, syncOnCommit);
+        this.plainFields = new StoreNamespace(store, 0);
+    }
+
+    @Override
+    public void attach(Object contract) {
+        if (contract == this.contract) {
+            return;
+        }
+        if (this.contract != null) {
+            throw new IllegalStateException("the store already keeps another contract");
+        }
+        for (Field field : StateContainers.containerFields(contract)) {
+            requireStorable(field);
+        }
+        PlainFields fields = PlainFields.capture(contract);
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.fieldAt(i);
+            if (!isReference(field) && !STORABLE.contains(field.getType())) {
+                throw new IllegalArgumentException("can not persist " + field);
+            }
+            names.append(field.getDeclaringClass().getName()).append('.').append(field.getName()).append(',');
+        }
+        byte[] marker = plainFields.key(StoreCodec.INITIALIZED);
+        byte[] stored = store.get(marker);
+        storedValues = new Object[fields.size()];
+        if (stored == null) {
+            store.put(marker, StoreCodec.encode(names.toString()));
+            storePlainFields(fields, true);
+        } else {
+            if (!names.toString().equals(StoreCodec.decode(stored))) {
+                throw new IllegalStateException("the stored plain fields " + StoreCodec.decode(stored) + " are not the ones of " + contract.getClass().getName());
+            }
+            for (int i = 0; i < fields.size(); i++) {
+                if (!isReference(fields.fieldAt(i))) {
+                    storedValues[i] = StoreCodec.decode(store.get(plainFields.key(StoreCodec.ENTRY, i)));
+                    fields.assign(i, storedValues[i]);
+                }
+            }
+        }
+        this.contract = contract;
+    }
+
+    @Override
+    public <V> TokenIdMap<V> tokenIdMap(TokenIdMap<V> current) {
+        if (current instanceof PersistentTokenIdMap) {
+            return current;
+        }
+        StoreNamespace namespace = namespace();
+        if (!namespace.isInitialized()) {
+            if (current.size() > 0) {
+                throw new IllegalArgumentException("can not copy the entries of a token id map, install before minting");
+            }
+            namespace.markInitialized();
+        }
+        return new PersistentTokenIdMap<V>(namespace);
+    }
+
+    @Override
+    public TokenIdIntMap tokenIdIntMap(TokenIdIntMap current) {
+        if (current instanceof PersistentTokenIdIntMap) {
+            return current;
+        }
+        StoreNamespace namespace = namespace();
+        if (!namespace.isInitialized()) {
+            namespace.markInitialized();
+        }
+        return new PersistentTokenIdIntMap(namespace);
+    }
+
+    @Override
+    public AddressIntMap addressIntMap(AddressIntMap current) {
+        if (current instanceof PersistentAddressIntMap) {
+            return current;
+        }
+        StoreNamespace namespace = namespace();
+        PersistentAddressIntMap stored = new PersistentAddressIntMap(namespace);
+        if (!namespace.isInitialized()) {
+            for (int slot = 0; slot < current.slots(); slot++) {
+                Address key = current.keyAt(slot);
+                if (key != null) {
+                    stored.add(key, current.valueAt(slot));
+                }
+            }
+            namespace.markInitialized();
+        }
+        return stored;
+    }
+
+    @Override
+    public AddressPairSet addressPairSet(AddressPairSet current) {
+        if (current instanceof PersistentAddressPairSet) {
+            return current;
+        }
+        StoreNamespace namespace = namespace();
+        PersistentAddressPairSet stored = new PersistentAddressPairSet(namespace);
+        if (!namespace.isInitialized()) {
+            for (int slot = 0; slot < current.slots(); slot++) {
+                Address first = current.firstAt(slot);
+                if (first != null) {
+                    stored.add(first, current.secondAt(slot));
+                }
+            }
+            namespace.markInitialized();
+        }
+        return stored;
+    }
+
+    @Override
+    public <K, V> Map<K, V> map(Map<K, V> current) {
+        if (current instanceof PersistentMap) {
+            return current;
+        }
+        StoreNamespace namespace = namespace();
+        PersistentMap<K, V> stored = new PersistentMap<K, V>(namespace);
+        if (!namespace.isInitialized()) {
+            stored.putAll(current);
+            namespace.markInitialized();
+        }
+        return stored;
+    }
+
+    @Override
+    public <E> Set<E> set(Set<E> current) {
+        if (current instanceof PersistentSet) {
+            return current;
+        }
+        StoreNamespace namespace = namespace();
+        PersistentSet<E> stored = new PersistentSet<E>(namespace);
+        if (!namespace.isInitialized()) {
+            stored.addAll(current);
+            namespace.markInitialized();
+        }
+        return stored;
+    }
+
+    @Override
+    public <E> ArrayList<E> list(ArrayList<E> current) {
+        if (current instanceof StoredList) {
+            return current;
+        }
+        StoreNamespace namespace = namespace();
+        StoredList<E> stored = new StoredList<E>(namespace, null);
+        if (!namespace.isInitialized()) {
+            stored.addAll(current);
+            namespace.markInitialized();
+        }
+        return stored;
+    }
+
+    @Override
+    public void commit() {
+        if (contract != null) {
+            PlainFields fields = PlainFields.capture(contract);
+            if (fields.size() != storedValues.length) {
+                throw new IllegalStateException("the plain fields of " + contract.getClass().getName() + " changed since install");
+            }
+            storePlainFields(fields, false);
+        }
+        store.commit();
+    }
+
+    /**
+     * Rewrite the live records of the sealed log segments and delete them, also done on commit once they
+     * hold more dead than live bytes
+     */
+    public void compact() throws IOException {
+        store.compact();
+    }
+
+    /**
+     * Force the committed writes to disk
+     */
+    public void sync() {
+        store.sync();
+    }
+
+    /**
+     * Commit and close the store, the containers must not be used afterwards
+     */
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+    private void storePlainFields(PlainFields fields, boolean all) {
+        for (int i = 0; i < fields.size(); i++) {
+            Object value = fields.valueAt(i);
+            if (isReference(fields.fieldAt(i)) || !all && (value == null ? storedValues[i] == null : value.equals(storedValues[i]))) {
+                continue;
+            }
+            byte[] key = plainFields.key(StoreCodec.ENTRY, i);
+            if (value == null) {
+                store.remove(key);
+            } else {
+                store.put(key, StoreCodec.encode(value));
+            }
+            storedValues[i] = value;
+        }
+    }
+
+    /**
+     * @return true if `field` references a storage of the contract, kept by the walk order and not stored
+     */
+    private static boolean isReference(Field field) {
+        return StateContainers.isContractType(field.getType());
+    }
+
+    /**
+     * Refuse a container field whose declared type holds values the codec can not encode
+     */
+    private static void requireStorable(Field field) {
+        if (field.getGenericType() instanceof ParameterizedType) {
+            ParameterizedType type = (ParameterizedType) field.getGenericType();
+            Type[] arguments = type.getActualTypeArguments();
+            boolean map = Map.class.isAssignableFrom((Class<?>) type.getRawType());
+            for (int i = 0; i < arguments.length; i++) {
+                requireStorable(field, arguments[i], map && i == 1);
+            }
+        }
+    }
+
+    /**
+     * @param mapValue true if `type` is the value type of a map, which may be a list
+     */
+    private static void requireStorable(Field field, Type type, boolean mapValue) {
+        if (type instanceof ParameterizedType && mapValue && ((ParameterizedType) type).getRawType() == ArrayList.class) {
+            requireStorable(field, ((ParameterizedType) type).getActualTypeArguments()[0], false);
+        } else if (type instanceof ParameterizedType || type instanceof Class && !STORABLE.contains(type)) {
+            throw new IllegalArgumentException("can not persist " + field + " holding " + type);
+        }
+    }
+
+    private StoreNamespace namespace() {
+        return new StoreNamespace(store, nextNamespace++);
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.store;
+
+import io.icw.token.storage.TokenIdIntMap;
+
+import java.math.BigInteger;
+
+/**
+ * {@link TokenIdIntMap} kept in a {@link LogStore}.
+ */
+class PersistentTokenIdIntMap extends TokenIdIntMap {
+
+    private final StoreNamespace namespace;
+
+    PersistentTokenIdIntMap(StoreNamespace namespace) {
+        this.namespace = namespace;
+    }
+
+    @Override
+    public int get(BigInteger tokenId) {
+        return StoreCodec.decodeInt(namespace.store.get(namespace.key(StoreCodec.ENTRY, tokenId)), NO_VALUE);
+    }
+
+    @Override
+    public void put(BigInteger tokenId, int value) {
+        namespace.store.put(namespace.key(StoreCodec.ENTRY, tokenId), StoreCodec.encode(value));
+    }
+
+    @Override
+    public void remove(BigInteger tokenId) {
+        namespace.store.remove(namespace.key(StoreCodec.ENTRY, tokenId));
+    }
+}
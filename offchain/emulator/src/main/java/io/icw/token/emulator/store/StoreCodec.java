@@ -0,0 +1,155 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.store;
+
+import io.icw.contract.sdk.Address;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary form of the keys and values kept in a {@link LogStore}.
+ * <p>A key is the namespace of its container, a kind byte and the encoded parts. A part or value is a tag, a
+ * length and the bytes, so that keys made of several parts stay unambiguous. Only the immutable types of
+ * the contract state are supported: `Address`, `String`, `BigInteger`, `Integer` and `Boolean`.</p>
+ */
+final class StoreCodec {
+
+    static final byte ENTRY = 0;
+    static final byte LIST_SIZE = 1;
+    static final byte LIST_ELEMENT = 2;
+    static final byte COUNT = 3;
+    static final byte INITIALIZED = 4;
+
+    private static final byte ADDRESS = 'A';
+    private static final byte STRING = 'S';
+    private static final byte BIG_INTEGER = 'B';
+    private static final byte INTEGER = 'I';
+    private static final byte BOOLEAN = 'Z';
+    /**
+     * Value of a map entry whose list is kept under LIST_SIZE and LIST_ELEMENT keys
+     */
+    private static final byte LIST = 'L';
+
+    static final byte[] LIST_MARKER = {LIST, 0, 0, 0, 0};
+
+    private StoreCodec() {
+    }
+
+    static byte[] key(int namespace, byte kind, Object... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        writeInt(out, namespace);
+        out.write(kind);
+        for (Object part : parts) {
+            byte[] encoded = encode(part);
+            out.write(encoded, 0, encoded.length);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] encode(Object value) {
+        byte tag;
+        byte[] bytes;
+        if (value instanceof Address) {
+            tag = ADDRESS;
+            bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        } else if (value instanceof String) {
+            tag = STRING;
+            bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+        } else if (value instanceof BigInteger) {
+            tag = BIG_INTEGER;
+            bytes = ((BigInteger) value).toByteArray();
+        } else if (value instanceof Integer) {
+            tag = INTEGER;
+            int i = (Integer) value;
+            bytes = new byte[]{(byte) (i >>> 24), (byte) (i >>> 16), (byte) (i >>> 8), (byte) i};
+        } else if (value instanceof Boolean) {
+            tag = BOOLEAN;
+            bytes = new byte[]{(byte) ((Boolean) value ? 1 : 0)};
+        } else {
+            throw new IllegalArgumentException("can not persist " + (value == null ? "null" : value.getClass().getName()));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(5 + bytes.length);
+        out.write(tag);
+        writeInt(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+        return out.toByteArray();
+    }
+
+    static boolean isList(byte[] value) {
+        return value != null && value.length > 0 && value[0] == LIST;
+    }
+
+    static Object decode(byte[] value) {
+        return value == null ? null : decode(value, 0);
+    }
+
+    /**
+     * Decode the part starting at `offset`
+     */
+    static Object decode(byte[] bytes, int offset) {
+        int length = readInt(bytes, offset + 1);
+        int start = offset + 5;
+        switch (bytes[offset]) {
+            case ADDRESS:
+                return new Address(new String(bytes, start, length, StandardCharsets.UTF_8));
+            case STRING:
+                return new String(bytes, start, length, StandardCharsets.UTF_8);
+            case BIG_INTEGER:
+                byte[] magnitude = new byte[length];
+                System.arraycopy(bytes, start, magnitude, 0, length);
+                return new BigInteger(magnitude);
+            case INTEGER:
+                return readInt(bytes, start);
+            case BOOLEAN:
+                return bytes[start] != 0;
+            default:
+                throw new IllegalArgumentException("unknown tag " + bytes[offset]);
+        }
+    }
+
+    /**
+     * @return The offset following the part starting at `offset`
+     */
+    static int skip(byte[] bytes, int offset) {
+        return offset + 5 + readInt(bytes, offset + 1);
+    }
+
+    static int decodeInt(byte[] value, int absent) {
+        return value == null ? absent : (Integer) decode(value, 0);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16 | (bytes[offset + 2] & 0xff) << 8 | bytes[offset + 3] & 0xff;
+    }
+}
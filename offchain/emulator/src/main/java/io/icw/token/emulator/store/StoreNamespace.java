@@ -0,0 +1,79 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.store;
+
+/**
+ * The keys of one state container in a {@link LogStore}, and its entry count.
+ */
+final class StoreNamespace {
+
+    /**
+     * Offset of the first part in a key, after the namespace and the kind
+     */
+    static final int PART_OFFSET = 5;
+
+    final LogStore store;
+    private final int id;
+    private final byte[] countKey;
+    private int count;
+
+    StoreNamespace(LogStore store, int id) {
+        this.store = store;
+        this.id = id;
+        this.countKey = key(StoreCodec.COUNT);
+        this.count = StoreCodec.decodeInt(store.get(countKey), 0);
+    }
+
+    byte[] key(byte kind, Object... parts) {
+        return StoreCodec.key(id, kind, parts);
+    }
+
+    int count() {
+        return count;
+    }
+
+    void addCount(int delta) {
+        count += delta;
+        store.put(countKey, StoreCodec.encode(count));
+    }
+
+    /**
+     * @return true if the container was stored by an earlier run, its contents are then the stored ones
+     */
+    boolean isInitialized() {
+        return store.get(key(StoreCodec.INITIALIZED)) != null;
+    }
+
+    void markInitialized() {
+        store.put(key(StoreCodec.INITIALIZED), new byte[0]);
+    }
+
+    /**
+     * Visit the entries, their keys are decoded from {@link #PART_OFFSET}
+     */
+    void forEachEntry(LogStore.Visitor visitor) {
+        store.forEach(key(StoreCodec.ENTRY), visitor);
+    }
+}
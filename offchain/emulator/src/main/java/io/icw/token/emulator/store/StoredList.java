@@ -0,0 +1,191 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.emulator.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * List kept in a {@link LogStore}, one key per element and one for the size: a list field, or the list
+ * value of a {@link PersistentMap} entry.
+ * <p>Appends, tail removals and in-place sets write one element, inserting or removing elsewhere shifts
+ * the following ones.</p>
+ */
+final class StoredList<E> extends ArrayList<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final StoreNamespace namespace;
+    /**
+     * Key of the map entry holding the list, null for a list field
+     */
+    private final Object owner;
+    private final byte[] sizeKey;
+
+    StoredList(StoreNamespace namespace, Object owner) {
+        super(0);
+        this.namespace = namespace;
+        this.owner = owner;
+        this.sizeKey = owner == null ? namespace.key(StoreCodec.LIST_SIZE) : namespace.key(StoreCodec.LIST_SIZE, owner);
+    }
+
+    boolean isViewOf(StoreNamespace namespace, Object owner) {
+        return this.namespace == namespace && this.owner != null && this.owner.equals(owner);
+    }
+
+    @Override
+    public int size() {
+        return StoreCodec.decodeInt(namespace.store.get(sizeKey), 0);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkIndex(index, size());
+        return (E) StoreCodec.decode(namespace.store.get(elementKey(index)));
+    }
+
+    @Override
+    public E set(int index, E element) {
+        E previous = get(index);
+        namespace.store.put(elementKey(index), StoreCodec.encode(element));
+        return previous;
+    }
+
+    @Override
+    public boolean add(E element) {
+        int size = size();
+        namespace.store.put(elementKey(size), StoreCodec.encode(element));
+        resize(size + 1);
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        int size = size();
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        for (int i = size; i > index; i--) {
+            namespace.store.put(elementKey(i), namespace.store.get(elementKey(i - 1)));
+        }
+        namespace.store.put(elementKey(index), StoreCodec.encode(element));
+        resize(size + 1);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> elements) {
+        for (E element : elements) {
+            add(element);
+        }
+        return !elements.isEmpty();
+    }
+
+    @Override
+    public E remove(int index) {
+        E previous = get(index);
+        int size = size();
+        for (int i = index; i < size - 1; i++) {
+            namespace.store.put(elementKey(i), namespace.store.get(elementKey(i + 1)));
+        }
+        namespace.store.remove(elementKey(size - 1));
+        resize(size - 1);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            namespace.store.remove(elementKey(i));
+        }
+        resize(0);
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity) {
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private final int size = size();
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public E next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(next++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        int size = size();
+        Object[] elements = new Object[size];
+        for (int i = 0; i < size; i++) {
+            elements[i] = get(i);
+        }
+        return elements;
+    }
+
+    private void resize(int size) {
+        if (size == 0) {
+            namespace.store.remove(sizeKey);
+        } else {
+            namespace.store.put(sizeKey, StoreCodec.encode(size));
+        }
+    }
+
+    private byte[] elementKey(int index) {
+        return owner == null ? namespace.key(StoreCodec.LIST_ELEMENT, index) : namespace.key(StoreCodec.LIST_ELEMENT, owner, index);
+    }
+
+    private static void checkIndex(int index, int size) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+}
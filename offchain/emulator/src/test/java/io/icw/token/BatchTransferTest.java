@@ -0,0 +1,160 @@
+package io.icw.token;
+
+import io.icw.contract.sdk.Address;
+import io.icw.contract.sdk.Event;
+import io.icw.token.emulator.ContractHandler;
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.EventListener;
+import io.icw.token.emulator.RevertException;
+import io.icw.token.interfaces.IIRC721;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class BatchTransferTest {
+
+    private static final Address MINTER = new Address("minter");
+    private static final Address ALICE = new Address("alice");
+    private static final Address BOB = new Address("bob");
+    private static final Address CAROL = new Address("carol");
+    private static final Address RECEIVER = new Address("receiver");
+
+    private final List<String> transfers = new ArrayList<String>();
+    private final List<String> calls = new ArrayList<String>();
+    private String accepts = "true";
+    private IRC721Full token;
+
+    @Before
+    public void setUp() {
+        Emulator.setContractAddress(new Address("token"));
+        Emulator.setSender(MINTER);
+        Emulator.setEventListener(new EventListener() {
+            @Override
+            public void onEvent(Address contractAddress, Event event) {
+                if (event instanceof IIRC721.Transfer) {
+                    IIRC721.Transfer transfer = (IIRC721.Transfer) event;
+                    transfers.add(transfer.getFrom() + ">" + transfer.getTo() + ":" + transfer.getTokenId());
+                }
+            }
+        });
+        Emulator.deploy(RECEIVER, new ContractHandler() {
+            @Override
+            public String invoke(String methodName, String[][] args) {
+                calls.add(methodName + Arrays.deepToString(args));
+                return accepts;
+            }
+        });
+        token = new IRC721Full("Name", "SYM");
+        token.mintRange(ALICE, BigInteger.ONE, 6);
+        token.mint(BOB, BigInteger.valueOf(7));
+        transfers.clear();
+    }
+
+    @After
+    public void tearDown() {
+        Emulator.setEventListener(null);
+        Emulator.undeploy(RECEIVER);
+    }
+
+    @Test
+    public void movesTheTokensAndAdjustsBothBalancesOnce() {
+        Emulator.setSender(ALICE);
+        token.approve(CAROL, BigInteger.valueOf(2));
+        token.batchTransferFrom(ALICE, CAROL, ids(2, 4, 6));
+
+        assertEquals(Arrays.asList("alice>carol:2", "alice>carol:4", "alice>carol:6"), transfers);
+        assertEquals(3, token.balanceOf(ALICE));
+        assertEquals(3, token.balanceOf(CAROL));
+        assertNull(token.getApproved(BigInteger.valueOf(2)));
+        for (long id : new long[]{2, 4, 6}) {
+            assertEquals(CAROL, token.ownerOf(BigInteger.valueOf(id)));
+        }
+        assertEquals(Arrays.asList(ids(2, 4, 6)), token.tokensOfOwner(CAROL));
+        assertEquals(3, token.tokensOfOwner(ALICE).size());
+        for (int i = 0; i < 3; i++) {
+            BigInteger tokenId = token.tokenOfOwnerByIndex(ALICE, i);
+            assertEquals(ALICE, token.ownerOf(tokenId));
+        }
+        assertEquals(7, token.totalSupply());
+    }
+
+    @Test
+    public void operatorSkipsThePerTokenApprovals() {
+        Emulator.setSender(ALICE);
+        token.setApprovalForAll(CAROL, true);
+        Emulator.setSender(CAROL);
+        token.batchTransferFrom(ALICE, BOB, ids(1, 2, 3));
+        assertEquals(4, token.balanceOf(BOB));
+        assertEquals(3, token.balanceOf(ALICE));
+    }
+
+    @Test
+    public void checksEveryTokenOfACallerApprovedPerToken() {
+        Emulator.setSender(ALICE);
+        token.approve(CAROL, BigInteger.ONE);
+        token.approve(CAROL, BigInteger.valueOf(2));
+        Emulator.setSender(CAROL);
+        assertReverts("IRC721: transfer caller is not owner nor approved", ALICE, BOB, ids(1, 2, 3));
+        assertEquals(6, token.balanceOf(ALICE));
+
+        token.batchTransferFrom(ALICE, BOB, ids(1, 2));
+        assertEquals(BOB, token.ownerOf(BigInteger.ONE));
+        assertEquals(BOB, token.ownerOf(BigInteger.valueOf(2)));
+        assertEquals(3, token.balanceOf(BOB));
+    }
+
+    @Test
+    public void refusesMixedOwnersDuplicatesAndEmptyBatches() {
+        Emulator.setSender(ALICE);
+        assertReverts("IRC721: transfer of token that is not own", ALICE, CAROL, ids(1, 7));
+        assertEquals(BOB, token.ownerOf(BigInteger.valueOf(7)));
+        // the second copy of an id is no longer owned by `from`
+        assertReverts("IRC721: transfer of token that is not own", ALICE, CAROL, ids(3, 3));
+        assertReverts("IRC721: transfer of empty token list", ALICE, CAROL, ids());
+        Emulator.setSender(BOB);
+        assertReverts("IRC721: transfer caller is not owner nor approved", ALICE, BOB, ids(5));
+    }
+
+    @Test
+    public void asksAContractReceiverOncePerBatch() {
+        Emulator.setSender(ALICE);
+        token.batchSafeTransferFrom(ALICE, RECEIVER, ids(1, 2, 3), "memo");
+        token.batchSafeTransferFrom(ALICE, BOB, ids(4, 5));
+        assertEquals(Arrays.asList("onIRC721BatchReceived[[alice], [alice], [1, 2, 3], [memo]]"), calls);
+        assertEquals(3, token.balanceOf(RECEIVER));
+
+        accepts = "false";
+        try {
+            token.batchSafeTransferFrom(ALICE, RECEIVER, ids(6));
+            fail();
+        } catch (RevertException e) {
+            assertEquals("IRC721: transfer to non IRC721BatchReceiver implementer", e.getMessage());
+        }
+    }
+
+    private void assertReverts(String message, Address from, Address to, BigInteger[] tokenIds) {
+        try {
+            token.batchTransferFrom(from, to, tokenIds);
+            fail();
+        } catch (RevertException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static BigInteger[] ids(long... values) {
+        BigInteger[] ids = new BigInteger[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ids[i] = BigInteger.valueOf(values[i]);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,156 @@
+package io.icw.token;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.RevertException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExportHoldersTest {
+
+    private static final Address MINTER = new Address("minter");
+
+    private IRC721Full token;
+
+    @Before
+    public void setUp() {
+        Emulator.setContractAddress(new Address("token"));
+        Emulator.setSender(MINTER);
+        Emulator.setEventListener(null);
+        token = new IRC721Full("Name", "SYM");
+    }
+
+    @Test
+    public void exportsEveryTokenOnceAcrossChunks() {
+        Random random = new Random(5);
+        token.mintRange(holder(0), BigInteger.ONE, 2500);
+        for (int i = 2501; i <= 5000; i++) {
+            token.mint(holder(1 + random.nextInt(300)), BigInteger.valueOf(i));
+        }
+        for (int limit : new int[]{1, 7, 1000}) {
+            Map<String, Integer> balances = new HashMap<String, Integer>();
+            Map<String, Integer> exported = new HashMap<String, Integer>();
+            int tokens = 0;
+            long cursor = 0;
+            while (cursor != -1) {
+                String chunk = token.exportHolders(cursor, limit);
+                int chunkTokens = 0;
+                for (String[] record : records(chunk)) {
+                    balances.put(record[0], Integer.parseInt(record[1]));
+                    for (String tokenId : record[2].split(" ")) {
+                        assertEquals(record[0], token.ownerOf(new BigInteger(tokenId)).toString());
+                        Integer count = exported.get(record[0]);
+                        exported.put(record[0], count == null ? 1 : count + 1);
+                        chunkTokens++;
+                    }
+                }
+                assertTrue(chunkTokens <= limit);
+                tokens += chunkTokens;
+                cursor = next(chunk);
+            }
+            assertEquals(5000, tokens);
+            assertEquals(token.exportHolders(0, 1).split("\"holders\":")[1].split(",")[0], String.valueOf(balances.size()));
+            for (Map.Entry<String, Integer> balance : balances.entrySet()) {
+                assertEquals(token.balanceOf(new Address(balance.getKey())), (int) balance.getValue());
+                assertEquals(balance.getValue(), exported.get(balance.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void dropsTheOffsetOfAHolderThatLeft() {
+        token.mintRange(holder(1), BigInteger.ONE, 4);
+        token.mintRange(holder(2), BigInteger.valueOf(5), 3);
+        String first = token.exportHolders(0, 2);
+        long cursor = next(first);
+        assertEquals(2, (int) cursor);
+
+        // holder 1 leaves: its slot empties, the offset 2 must not skip tokens of holder 2
+        Emulator.setSender(holder(1));
+        token.batchTransferFrom(holder(1), holder(3), ids(1, 2, 3, 4));
+        String chunk = token.exportHolders(cursor, 10);
+        List<String[]> records = records(chunk);
+        assertEquals(holder(2).toString(), records.get(0)[0]);
+        assertEquals("5 6 7", records.get(0)[2]);
+    }
+
+    @Test
+    public void clampsAnOffsetPastTheTokensOfAHolder() {
+        token.mintRange(holder(1), BigInteger.ONE, 6);
+        token.mintRange(holder(2), BigInteger.valueOf(7), 2);
+        long cursor = next(token.exportHolders(0, 5));
+        assertEquals(5, (int) cursor);
+
+        // holder 1 keeps 2 tokens, the stale offset 5 is past them
+        Emulator.setSender(holder(1));
+        token.batchTransferFrom(holder(1), holder(2), ids(1, 2, 3, 4));
+        String chunk = token.exportHolders(cursor, 3);
+        int exported = 0;
+        for (String[] record : records(chunk)) {
+            exported += record[2].split(" ").length;
+        }
+        assertEquals(3, exported);
+    }
+
+    @Test
+    public void refusesOutOfBoundsArguments() {
+        token.mint(holder(1), BigInteger.ONE);
+        assertReverts(-1, 10, "IRC721Enumerable: export cursor out of bounds");
+        assertReverts(1L << 40, 10, "IRC721Enumerable: export cursor out of bounds");
+        assertReverts(0, 0, "IRC721Enumerable: export limit out of bounds");
+        assertReverts(0, IRC721Full.MAX_EXPORT_SIZE + 1, "IRC721Enumerable: export limit out of bounds");
+        assertEquals("{\"holders\":0,\"next\":-1,\"records\":[]}", new IRC721Full("Name", "SYM").exportHolders(0, 10));
+    }
+
+    private void assertReverts(long cursor, int limit, String message) {
+        try {
+            token.exportHolders(cursor, limit);
+            fail();
+        } catch (RevertException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static long next(String chunk) {
+        int start = chunk.indexOf("\"next\":") + 7;
+        return Long.parseLong(chunk.substring(start, chunk.indexOf(',', start)));
+    }
+
+    /**
+     * @return owner, balance and the space separated token ids of each record
+     */
+    private static List<String[]> records(String chunk) {
+        List<String[]> records = new ArrayList<String[]>();
+        String body = chunk.substring(chunk.indexOf('[') + 1, chunk.lastIndexOf(']'));
+        if (body.isEmpty()) {
+            return records;
+        }
+        for (String record : body.substring(1, body.length() - 1).split("\",\"")) {
+            records.add(record.split(",", 3));
+        }
+        return records;
+    }
+
+    private static BigInteger[] ids(long... values) {
+        BigInteger[] ids = new BigInteger[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ids[i] = BigInteger.valueOf(values[i]);
+        }
+        return ids;
+    }
+
+    private static Address holder(int index) {
+        return new Address("holder" + index);
+    }
+}
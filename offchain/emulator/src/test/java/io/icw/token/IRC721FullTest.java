@@ -0,0 +1,180 @@
+package io.icw.token;
+
+import io.icw.contract.sdk.Address;
+import io.icw.contract.sdk.Event;
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.EventListener;
+import io.icw.token.emulator.RevertException;
+import io.icw.token.interfaces.IIRC721;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class IRC721FullTest {
+
+    private static final Address MINTER = new Address("minter");
+    private static final Address ALICE = new Address("alice");
+    private static final Address BOB = new Address("bob");
+
+    private final List<String> transfers = new ArrayList<String>();
+
+    @Before
+    public void setUp() {
+        Emulator.setContractAddress(new Address("token"));
+        Emulator.setSender(MINTER);
+        Emulator.setEventListener(new EventListener() {
+            @Override
+            public void onEvent(Address contractAddress, Event event) {
+                if (event instanceof IIRC721.Transfer) {
+                    IIRC721.Transfer transfer = (IIRC721.Transfer) event;
+                    transfers.add(transfer.getFrom() + ">" + transfer.getTo() + ":" + transfer.getTokenId());
+                }
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        Emulator.setEventListener(null);
+    }
+
+    @Test
+    public void storageChoiceSelectsTheLayout() {
+        for (String storage : new String[]{null, "mapped", "packed", "sequential"}) {
+            IRC721Full token = new IRC721Full("Name", "SYM", storage, BigInteger.ONE);
+            token.mintRange(ALICE, BigInteger.ONE, 3);
+            Emulator.setSender(ALICE);
+            token.transferFrom(ALICE, BOB, BigInteger.valueOf(2));
+            assertEquals(ALICE, token.ownerOf(BigInteger.ONE));
+            assertEquals(BOB, token.ownerOf(BigInteger.valueOf(2)));
+            assertEquals(ALICE, token.ownerOf(BigInteger.valueOf(3)));
+            assertEquals(3, token.totalSupply());
+            Emulator.setSender(MINTER);
+        }
+    }
+
+    @Test(expected = RevertException.class)
+    public void unknownStorageIsRejected() {
+        new IRC721Full("Name", "SYM", "columnar", null);
+    }
+
+    @Test
+    public void sequentialStorageRejectsOutOfOrderIds() {
+        IRC721Full token = new IRC721Full("Name", "SYM", "sequential", BigInteger.TEN);
+        token.mint(ALICE, BigInteger.TEN);
+        try {
+            token.mint(ALICE, BigInteger.valueOf(12));
+            fail();
+        } catch (RevertException e) {
+            assertEquals("IRC721: token ids must be minted sequentially", e.getMessage());
+        }
+        assertEquals(1, token.totalSupply());
+    }
+
+    @Test
+    public void consecutiveBatchMintMatchesSingleMints() {
+        BigInteger[] ids = ids(5, 6, 7, 8);
+        IRC721Full batched = new IRC721Full("Name", "SYM", "sequential", BigInteger.valueOf(5));
+        batched.batchMint(ALICE, ids);
+        List<String> batchedTransfers = new ArrayList<String>(transfers);
+        transfers.clear();
+
+        IRC721Full single = new IRC721Full("Name", "SYM", "sequential", BigInteger.valueOf(5));
+        for (BigInteger id : ids) {
+            single.mint(ALICE, id);
+        }
+        assertEquals(transfers, batchedTransfers);
+        assertEquals(single.tokensOfOwner(ALICE), batched.tokensOfOwner(ALICE));
+        assertEquals(4, batched.balanceOf(ALICE));
+        for (BigInteger id : ids) {
+            assertEquals(ALICE, batched.ownerOf(id));
+        }
+    }
+
+    @Test
+    public void nonConsecutiveBatchMintMintsEachId() {
+        IRC721Full token = new IRC721Full("Name", "SYM");
+        token.batchMint(ALICE, ids(9, 3, 4));
+        assertEquals(3, token.balanceOf(ALICE));
+        assertEquals(BigInteger.valueOf(9), token.tokenByIndex(0));
+        try {
+            token.batchMint(BOB, ids(4, 5));
+            fail();
+        } catch (RevertException e) {
+            assertEquals("IRC721: token already minted", e.getMessage());
+        }
+    }
+
+    @Test
+    public void burnKeepsTheEnumerationDense() {
+        for (String storage : new String[]{"mapped", "packed", "sequential"}) {
+            IRC721Full token = new IRC721Full("Name", "SYM", storage, BigInteger.ONE);
+            token.mintRange(ALICE, BigInteger.ONE, 5);
+            token.mint(BOB, BigInteger.valueOf(6));
+            Emulator.setSender(ALICE);
+            // the first, a middle and the last token of both lists
+            token.burn(ALICE, BigInteger.ONE);
+            token.burn(ALICE, BigInteger.valueOf(3));
+            token.burn(ALICE, BigInteger.valueOf(5));
+            Emulator.setSender(BOB);
+            token.burn(BOB, BigInteger.valueOf(6));
+            Emulator.setSender(MINTER);
+
+            assertEquals(2, token.totalSupply());
+            assertEquals(2, token.balanceOf(ALICE));
+            assertEquals(0, token.balanceOf(BOB));
+            List<BigInteger> all = new ArrayList<BigInteger>();
+            List<BigInteger> owned = new ArrayList<BigInteger>();
+            for (int i = 0; i < 2; i++) {
+                all.add(token.tokenByIndex(i));
+                owned.add(token.tokenOfOwnerByIndex(ALICE, i));
+            }
+            Collections.sort(all);
+            Collections.sort(owned);
+            assertEquals(Arrays.asList(ids(2, 4)), all);
+            assertEquals(Arrays.asList(ids(2, 4)), owned);
+            assertReverts("IRC721Enumerable: global index out of bounds", token, 2, null);
+            assertReverts("IRC721Enumerable: owner index out of bounds", token, 2, ALICE);
+            assertReverts("IRC721Enumerable: owner index out of bounds", token, 0, BOB);
+
+            // the indexes of the moved tokens are kept: burning them again leaves empty lists
+            Emulator.setSender(ALICE);
+            token.burn(ALICE, BigInteger.valueOf(4));
+            token.burn(ALICE, BigInteger.valueOf(2));
+            Emulator.setSender(MINTER);
+            assertEquals(0, token.totalSupply());
+            assertEquals(0, token.balanceOf(ALICE));
+            assertReverts("IRC721Enumerable: owner index out of bounds", token, 0, ALICE);
+        }
+    }
+
+    private static void assertReverts(String message, IRC721Full token, int index, Address owner) {
+        try {
+            if (owner == null) {
+                token.tokenByIndex(index);
+            } else {
+                token.tokenOfOwnerByIndex(owner, index);
+            }
+            fail();
+        } catch (RevertException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static BigInteger[] ids(long... values) {
+        BigInteger[] ids = new BigInteger[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ids[i] = BigInteger.valueOf(values[i]);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,135 @@
+package io.icw.token;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.RevertException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class OwnershipHistoryTest {
+
+    private static final Address MINTER = new Address("minter");
+    private static final int TOKENS = 200;
+    private static final int HOLDERS = 8;
+
+    @Before
+    public void setUp() {
+        Emulator.setContractAddress(new Address("token"));
+        Emulator.setSender(MINTER);
+        Emulator.setEventListener(null);
+        Emulator.setBlock(0, 0);
+    }
+
+    @Test
+    public void answersEveryPastBlockLikeAReplay() {
+        IRC721Full token = historyToken();
+        Random random = new Random(3);
+        List<Map<BigInteger, Address>> blocks = new ArrayList<Map<BigInteger, Address>>();
+        Map<BigInteger, Address> owners = new HashMap<BigInteger, Address>();
+        token.mintRange(holder(0), BigInteger.valueOf(TOKENS), 20);
+        for (int i = 0; i < 20; i++) {
+            owners.put(BigInteger.valueOf(TOKENS + i), holder(0));
+        }
+        long block = 0;
+        for (int n = 0; n < 5000; n++) {
+            if (random.nextInt(5) == 0) {
+                blocks.add(new HashMap<BigInteger, Address>(owners));
+                Emulator.setBlock(++block, 0);
+            }
+            BigInteger tokenId = BigInteger.valueOf(random.nextInt(TOKENS));
+            Address owner = owners.get(tokenId);
+            Address to = holder(random.nextInt(HOLDERS));
+            if (owner == null) {
+                Emulator.setSender(MINTER);
+                token.mint(to, tokenId);
+                owners.put(tokenId, to);
+                continue;
+            }
+            Emulator.setSender(owner);
+            if (random.nextInt(6) == 0) {
+                token.burn(owner, tokenId);
+                owners.remove(tokenId);
+            } else {
+                token.transferFrom(owner, to, tokenId);
+                owners.put(tokenId, to);
+            }
+        }
+        blocks.add(new HashMap<BigInteger, Address>(owners));
+
+        for (int b = 0; b <= block; b++) {
+            Map<BigInteger, Address> expected = blocks.get(b);
+            int[] balances = new int[HOLDERS];
+            for (int i = 0; i < TOKENS + 20; i++) {
+                BigInteger tokenId = BigInteger.valueOf(i);
+                assertEquals("token " + i + " at " + b, expected.get(tokenId), token.ownerOfAt(tokenId, b));
+            }
+            for (Address owner : expected.values()) {
+                balances[Integer.parseInt(owner.toString().substring(6))]++;
+            }
+            for (int h = 0; h < HOLDERS; h++) {
+                assertEquals(balances[h], token.balanceOfAt(holder(h), b));
+            }
+        }
+    }
+
+    @Test
+    public void keepsTheLastChangeOfABlock() {
+        IRC721Full token = historyToken();
+        Emulator.setBlock(5, 0);
+        token.mint(holder(1), BigInteger.ONE);
+        Emulator.setSender(holder(1));
+        token.transferFrom(holder(1), holder(2), BigInteger.ONE);
+        Emulator.setBlock(6, 0);
+        Emulator.setSender(holder(2));
+        token.burn(holder(2), BigInteger.ONE);
+
+        assertNull(token.ownerOfAt(BigInteger.ONE, 4));
+        assertEquals(holder(2), token.ownerOfAt(BigInteger.ONE, 5));
+        assertNull(token.ownerOfAt(BigInteger.ONE, 6));
+        assertEquals(0, token.balanceOfAt(holder(1), 5));
+        assertEquals(1, token.balanceOfAt(holder(2), 5));
+        assertEquals(0, token.balanceOfAt(holder(2), 6));
+    }
+
+    @Test
+    public void refusesFutureBlocksAndDisabledHistory() {
+        IRC721Full token = historyToken();
+        Emulator.setBlock(3, 0);
+        token.mint(holder(1), BigInteger.ONE);
+        try {
+            token.ownerOfAt(BigInteger.ONE, 4);
+            fail();
+        } catch (RevertException e) {
+            assertEquals("IRC721: block height out of range", e.getMessage());
+        }
+        try {
+            new IRC721Full("Name", "SYM").balanceOfAt(holder(1), 0);
+            fail();
+        } catch (RevertException e) {
+            assertEquals("IRC721: ownership history is not enabled", e.getMessage());
+        }
+    }
+
+    private static IRC721Full historyToken() {
+        return new IRC721Full("Name", "SYM") {
+            {
+                enableOwnershipHistory();
+            }
+        };
+    }
+
+    private static Address holder(int index) {
+        return new Address("holder" + index);
+    }
+}
@@ -0,0 +1,86 @@
+package io.icw.token;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.emulator.ContractHandler;
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.RevertException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ReceiverCallbackTest {
+
+    private static final Address MINTER = new Address("minter");
+    private static final Address ALICE = new Address("alice");
+    private static final Address RECEIVER = new Address("receiver");
+
+    private final List<String> calls = new ArrayList<String>();
+    private boolean unconditional = true;
+    private IRC721Full token;
+
+    @Before
+    public void setUp() {
+        Emulator.setContractAddress(new Address("token"));
+        Emulator.setSender(MINTER);
+        Emulator.setEventListener(null);
+        Emulator.deploy(RECEIVER, new ContractHandler() {
+            @Override
+            public String invoke(String methodName, String[][] args) {
+                calls.add(methodName + Arrays.deepToString(args));
+                if ("supportsInterface".equals(methodName)) {
+                    return String.valueOf(unconditional);
+                }
+                return "true";
+            }
+        });
+        token = new IRC721Full("Name", "SYM");
+        token.mintRange(ALICE, BigInteger.ONE, 4);
+    }
+
+    @After
+    public void tearDown() {
+        Emulator.undeploy(RECEIVER);
+    }
+
+    @Test
+    public void callsAnUnregisteredReceiver() {
+        Emulator.setSender(ALICE);
+        token.safeTransferFrom(ALICE, RECEIVER, BigInteger.ONE, "memo");
+        token.batchSafeTransferFrom(ALICE, RECEIVER, new BigInteger[]{BigInteger.valueOf(2), BigInteger.valueOf(3)});
+        assertEquals(Arrays.asList(
+                "onIRC721Received[[alice], [alice], [1], [memo]]",
+                "onIRC721BatchReceived[[alice], [alice], [2, 3], []]"), calls);
+    }
+
+    @Test
+    public void skipsTheCallbackOfARegisteredReceiver() {
+        token.registerUnconditionalReceiver(RECEIVER);
+        assertEquals(Arrays.asList("supportsInterface[[IIRC721UnconditionalReceiver]]"), calls);
+        calls.clear();
+
+        Emulator.setSender(ALICE);
+        token.safeTransferFrom(ALICE, RECEIVER, BigInteger.ONE);
+        token.batchSafeTransferFrom(ALICE, RECEIVER, new BigInteger[]{BigInteger.valueOf(2), BigInteger.valueOf(3)});
+        assertEquals(0, calls.size());
+        assertEquals(3, token.balanceOf(RECEIVER));
+    }
+
+    @Test
+    public void refusesAReceiverWithoutTheDeclaration() {
+        unconditional = false;
+        try {
+            token.registerUnconditionalReceiver(RECEIVER);
+            fail();
+        } catch (RevertException e) {
+            assertEquals("IRC721: receiver does not support IIRC721UnconditionalReceiver", e.getMessage());
+        }
+    }
+}
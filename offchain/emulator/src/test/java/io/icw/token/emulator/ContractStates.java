@@ -0,0 +1,42 @@
+package io.icw.token.emulator;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.base.IRC721FullBase;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Renders the state visible through the views of a contract, to compare two instances.
+ */
+public final class ContractStates {
+
+    private ContractStates() {
+    }
+
+    public static String describe(IRC721FullBase token, int maxTokenId, Address... holders) {
+        BigInteger[] ids = new BigInteger[maxTokenId + 1];
+        for (int i = 0; i <= maxTokenId; i++) {
+            ids[i] = BigInteger.valueOf(i);
+        }
+        StringBuilder state = new StringBuilder();
+        state.append("supply=").append(token.totalSupply());
+        state.append("\nowners=").append(Arrays.toString(token.ownersOf(ids)));
+        state.append("\napprovals=").append(Arrays.toString(token.approvalsOf(ids)));
+        state.append("\nuris=").append(Arrays.toString(token.tokenURIs(ids)));
+        state.append("\nbalances=").append(Arrays.toString(token.balancesOf(holders)));
+        state.append("\nall=");
+        for (int i = 0; i < token.totalSupply(); i++) {
+            state.append(token.tokenByIndex(i)).append(' ');
+        }
+        for (Address holder : holders) {
+            state.append('\n').append(holder).append('=').append(token.tokensOfOwner(holder));
+            for (Address operator : holders) {
+                if (token.isApprovedForAll(holder, operator)) {
+                    state.append(" operator:").append(operator);
+                }
+            }
+        }
+        return state.toString();
+    }
+}
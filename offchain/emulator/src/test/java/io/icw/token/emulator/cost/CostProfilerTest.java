@@ -0,0 +1,84 @@
+package io.icw.token.emulator.cost;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.IRC721Full;
+import io.icw.token.emulator.Emulator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class CostProfilerTest {
+
+    private static final Address MINTER = new Address("minter");
+    private static final Address ALICE = new Address("alice");
+    private static final Address BOB = new Address("bob");
+
+    private final CostProfiler profiler = new CostProfiler();
+    private IRC721Full token;
+
+    @Before
+    public void setUp() {
+        Emulator.setContractAddress(new Address("token"));
+        Emulator.setSender(MINTER);
+        Emulator.setEventListener(null);
+        token = new IRC721Full("Name", "SYM");
+        token.mintRange(ALICE, BigInteger.ONE, 5);
+        Instrumentation.instrument(token);
+    }
+
+    @Test
+    public void countsTheOwnerListSwapOfATransfer() {
+        Emulator.setSender(ALICE);
+        profiler.measure("transferFrom", new Runnable() {
+            @Override
+            public void run() {
+                token.transferFrom(ALICE, BOB, BigInteger.ONE);
+            }
+        });
+        // alice's last token moves into the freed slot, bob's new list is created by this call
+        assertEquals(1, total("transferFrom", CostMetric.LIST_READ));
+        assertEquals(2, total("transferFrom", CostMetric.LIST_WRITE));
+
+        profiler.measure("transferFrom", new Runnable() {
+            @Override
+            public void run() {
+                token.transferFrom(ALICE, BOB, BigInteger.valueOf(2));
+            }
+        });
+        // a swap in alice's list and an append to the list bob got in the previous call
+        assertEquals(2, total("transferFrom", CostMetric.LIST_READ));
+        assertEquals(5, total("transferFrom", CostMetric.LIST_WRITE));
+    }
+
+    @Test
+    public void countsTheListsOfAnInstrumentedBurn() {
+        Emulator.setSender(ALICE);
+        profiler.measure("burn", new Runnable() {
+            @Override
+            public void run() {
+                token.burn(ALICE, BigInteger.valueOf(2));
+            }
+        });
+        // a swap and a pop in the owner list and in the global list
+        assertEquals(2, total("burn", CostMetric.LIST_READ));
+        assertEquals(4, total("burn", CostMetric.LIST_WRITE));
+        assertEquals(1, total("burn", CostMetric.EVENT));
+    }
+
+    private long total(String entryPoint, CostMetric metric) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        profiler.report(new PrintStream(out));
+        for (String line : out.toString().split("\n")) {
+            String[] columns = line.trim().split(",");
+            if (columns[0].equals(entryPoint) && columns[1].equals(metric.name())) {
+                return Long.parseLong(columns[3]);
+            }
+        }
+        throw new AssertionError(entryPoint + " " + metric + " not reported");
+    }
+}
@@ -0,0 +1,184 @@
+package io.icw.token.emulator.parallel;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.IRC721Full;
+import io.icw.token.emulator.Emulator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.icw.contract.sdk.Utils.require;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentContractTest {
+
+    private static final Address CONTRACT = new Address("token");
+    private static final Address MINTER = new Address("minter");
+    private static final int THREADS = 4;
+    private static final int HOLDERS = 5;
+
+    public static class Token extends IRC721Full {
+
+        public Token(String storage) {
+            super("Name", "SYM", storage, BigInteger.ZERO);
+        }
+
+        public void changeBaseURIAndRevert(String baseURI) {
+            changeBaseURI(baseURI, "");
+            require(false, "reverted");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Emulator.setContractAddress(CONTRACT);
+        Emulator.setSender(MINTER);
+        Emulator.setEventListener(null);
+    }
+
+    @Test
+    public void mintsSequentialIdsOnceFromConcurrentCalls() throws InterruptedException {
+        Token contract = new Token("sequential");
+        contract.mint(MINTER, BigInteger.ZERO);
+        final ConcurrentContract<Token> token = new ConcurrentContract<Token>(contract, CONTRACT, null);
+        final Map<BigInteger, Address> minted = new ConcurrentHashMap<BigInteger, Address>();
+        minted.put(BigInteger.ZERO, MINTER);
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < THREADS; t++) {
+            final Random random = new Random(t);
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 200; i++) {
+                            step(token, random, minted);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(new ArrayList<Throwable>(), failures);
+
+        int supply = (Integer) token.view(MINTER, new ContractCall.Operation<Token>() {
+            @Override
+            public Object apply(Token contract) {
+                return contract.totalSupply();
+            }
+        });
+        assertEquals(minted.size(), supply);
+        for (int i = 0; i < supply; i++) {
+            final BigInteger tokenId = BigInteger.valueOf(i);
+            Object owner = token.view(MINTER, new ContractCall.Operation<Token>() {
+                @Override
+                public Object apply(Token contract) {
+                    return contract.ownerOf(tokenId);
+                }
+            });
+            assertEquals(minted.get(tokenId), owner);
+        }
+        assertTrue(token.getCommitted() > minted.size());
+    }
+
+    /**
+     * Mint the next id or change the base URI, checking the token URIs seen by the calls and the views
+     */
+    private static void step(ConcurrentContract<Token> token, Random random, Map<BigInteger, Address> minted) {
+        final Address holder = holder(random.nextInt(HOLDERS));
+        switch (random.nextInt(3)) {
+            case 0:
+                final int next = (Integer) token.view(MINTER, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        return contract.totalSupply();
+                    }
+                });
+                CallResult mint = token.call(ContractCall.of(MINTER, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        return contract.mint(holder, BigInteger.valueOf(next));
+                    }
+                }));
+                if (mint.isSucceeded()) {
+                    assertTrue(minted.put(BigInteger.valueOf(next), holder) == null);
+                }
+                break;
+            case 1:
+                final String baseURI = "ipfs://" + random.nextInt(1000) + "/";
+                CallResult change = token.call(ContractCall.of(MINTER, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        contract.changeBaseURI(baseURI, ".json");
+                        return contract.tokenURI(BigInteger.ZERO);
+                    }
+                }));
+                assertTrue(!change.isSucceeded() || String.valueOf(change.getValue()).startsWith(baseURI));
+                break;
+            default:
+                Object uri = token.view(MINTER, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        return contract.tokenURI(BigInteger.ZERO);
+                    }
+                });
+                assertTrue(uri == null || String.valueOf(uri).endsWith("/0.json"));
+        }
+    }
+
+    @Test
+    public void restoresThePlainFieldsOfARevertedCall() {
+        Token contract = new Token("mapped");
+        contract.mint(holder(1), BigInteger.ONE);
+        contract.changeBaseURI("ipfs://base/", "");
+        ConcurrentContract<Token> token = new ConcurrentContract<Token>(contract, CONTRACT, null);
+        ContractCall.Operation<Token> revert = new ContractCall.Operation<Token>() {
+            @Override
+            public Object apply(Token contract) {
+                contract.changeBaseURIAndRevert("ipfs://other/");
+                return null;
+            }
+        };
+        assertFalse(token.call(ContractCall.of(MINTER, revert)).isSucceeded());
+        assertFalse(token.call(ContractCall.barrier(MINTER, revert)).isSucceeded());
+        assertEquals("ipfs://base/1", contract.tokenURI(BigInteger.ONE));
+
+        assertTrue(token.call(ContractCall.of(MINTER, new ContractCall.Operation<Token>() {
+            @Override
+            public Object apply(Token contract) {
+                contract.changeBaseURI("ipfs://next/", "");
+                return null;
+            }
+        })).isSucceeded());
+        assertEquals("ipfs://next/1", contract.tokenURI(BigInteger.ONE));
+        // a transfer after the change runs on a fresh replica and sees it
+        assertEquals("ipfs://next/1", token.call(ContractCall.of(holder(1), new ContractCall.Operation<Token>() {
+            @Override
+            public Object apply(Token contract) {
+                contract.transferFrom(holder(1), holder(2), BigInteger.ONE);
+                return contract.tokenURI(BigInteger.ONE);
+            }
+        })).getValue());
+    }
+
+    private static Address holder(int index) {
+        return new Address("holder" + index);
+    }
+}
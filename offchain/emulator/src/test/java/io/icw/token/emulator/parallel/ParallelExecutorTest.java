@@ -0,0 +1,383 @@
+package io.icw.token.emulator.parallel;
+
+import io.icw.contract.sdk.Address;
+import io.icw.contract.sdk.Event;
+import io.icw.token.IRC721Full;
+import io.icw.token.emulator.ContractHandler;
+import io.icw.token.emulator.ContractStates;
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.EventListener;
+import io.icw.token.emulator.state.DurableStateBackend;
+import io.icw.token.emulator.state.HeapStateBackend;
+import io.icw.token.interfaces.IIRC721;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static io.icw.contract.sdk.Utils.require;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelExecutorTest {
+
+    private static final Address CONTRACT = new Address("token");
+    private static final Address MINTER = new Address("minter");
+    private static final Address RECEIVER = new Address("receiver");
+    private static final int HOLDERS = 6;
+    private static final int MAX_ID = 40;
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    private final List<String> expectedEvents = new ArrayList<String>();
+    private final List<String> events = new ArrayList<String>();
+    private boolean accepts = true;
+
+    /**
+     * A token with a call assigning a plain field and reverting after it
+     */
+    public static class Token extends IRC721Full {
+
+        public Token(String storage) {
+            super("Name", "SYM", storage, BigInteger.ZERO);
+        }
+
+        public void changeBaseURIAndRevert(String baseURI) {
+            changeBaseURI(baseURI, ".json");
+            require(false, "reverted");
+        }
+    }
+
+    public static class HistoryToken extends Token {
+
+        public HistoryToken(String storage) {
+            super(storage);
+            enableOwnershipHistory();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Emulator.setContractAddress(CONTRACT);
+        Emulator.setSender(MINTER);
+        Emulator.setEventListener(null);
+        Emulator.setBlock(1, 0);
+        Emulator.deploy(RECEIVER, new ContractHandler() {
+            @Override
+            public String invoke(String methodName, String[][] args) {
+                return String.valueOf(accepts);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        Emulator.setEventListener(null);
+        Emulator.undeploy(RECEIVER);
+    }
+
+    @AfterClass
+    public static void shutDown() {
+        POOL.shutdown();
+    }
+
+    @Test
+    public void matchesASerialRunOfConflictingCalls() {
+        matchesASerialRun(new Token("mapped"), new Token("mapped"));
+        matchesASerialRun(new Token("packed"), new Token("packed"));
+        matchesASerialRun(new HistoryToken("mapped"), new HistoryToken("mapped"));
+    }
+
+    private void matchesASerialRun(Token reference, Token token) {
+        expectedEvents.clear();
+        events.clear();
+        ParallelExecutor<Token> executor = new ParallelExecutor<Token>(token, CONTRACT, POOL, recorder(events));
+        Random random = new Random(11);
+        for (int block = 2; block < 40; block++) {
+            Emulator.setBlock(block, 0);
+            List<ContractCall<Token>> batch = new ArrayList<ContractCall<Token>>();
+            List<String> expected = new ArrayList<String>();
+            Emulator.setEventListener(recorder(expectedEvents));
+            for (int n = 0; n < 60; n++) {
+                ContractCall<Token> call = randomCall(reference, random);
+                Emulator.setSender(call.getSender());
+                expected.add(outcome(call, reference));
+                batch.add(call);
+            }
+            Emulator.setEventListener(null);
+            List<CallResult> results = executor.execute(batch);
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(expected.get(i), outcome(results.get(i)));
+            }
+        }
+        String kind = token.getClass().getSimpleName();
+        assertEquals(kind, describe(reference), describe(token));
+        assertEquals(kind, expectedEvents, events);
+        if (reference instanceof HistoryToken) {
+            for (int i = 0; i <= MAX_ID; i++) {
+                for (int block = 1; block < 40; block += 7) {
+                    assertEquals(reference.ownerOfAt(BigInteger.valueOf(i), block), token.ownerOfAt(BigInteger.valueOf(i), block));
+                }
+            }
+        }
+        assertTrue(kind, executor.getReexecuted() > 0);
+        assertTrue(kind, executor.getReexecuted() < executor.getSpeculated());
+    }
+
+    @Test
+    public void leavesNoTraceOfARevertedCall() {
+        for (String storage : new String[]{"mapped", "packed"}) {
+            Token token = new HistoryToken(storage);
+            token.mintRange(holder(1), BigInteger.ONE, 4);
+            CountingBackend backend = new CountingBackend();
+            events.clear();
+            ParallelExecutor<Token> executor = new ParallelExecutor<Token>(token, CONTRACT, POOL, recorder(events), backend);
+            String before = describe(token);
+            accepts = false;
+
+            // the receiver check reverts after the transfer updated the token record and the history
+            List<CallResult> results = executor.execute(calls(
+                    ContractCall.of(holder(1), new ContractCall.Operation<Token>() {
+                        @Override
+                        public Object apply(Token contract) {
+                            contract.safeTransferFrom(holder(1), RECEIVER, BigInteger.ONE);
+                            return null;
+                        }
+                    }),
+                    ContractCall.of(holder(2), new ContractCall.Operation<Token>() {
+                        @Override
+                        public Object apply(Token contract) {
+                            contract.transferFrom(holder(1), holder(2), BigInteger.valueOf(2));
+                            return null;
+                        }
+                    }),
+                    ContractCall.barrier(MINTER, new ContractCall.Operation<Token>() {
+                        @Override
+                        public Object apply(Token contract) {
+                            contract.mint(holder(2), BigInteger.ONE);
+                            return null;
+                        }
+                    })));
+            accepts = true;
+            for (CallResult result : results) {
+                assertFalse(storage, result.isSucceeded());
+            }
+            assertEquals(storage, before, describe(token));
+            assertEquals(holder(1), token.ownerOfAt(BigInteger.ONE, 1));
+            assertEquals(4, token.balanceOfAt(holder(1), 1));
+            assertEquals(0, events.size());
+            // only the commit of the construction
+            assertEquals(1, backend.commits);
+        }
+    }
+
+    @Test
+    public void runsCallsAssigningPlainFieldsInOrder() {
+        Token reference = new Token("sequential");
+        Token token = new Token("sequential");
+        ParallelExecutor<Token> executor = new ParallelExecutor<Token>(token, CONTRACT, POOL, null);
+        List<ContractCall<Token>> batch = new ArrayList<ContractCall<Token>>();
+        for (int i = 0; i < 20; i++) {
+            final Address to = holder(i % HOLDERS);
+            final BigInteger tokenId = BigInteger.valueOf(i);
+            batch.add(ContractCall.of(MINTER, new ContractCall.Operation<Token>() {
+                @Override
+                public Object apply(Token contract) {
+                    return contract.mint(to, tokenId);
+                }
+            }));
+            if (i % 5 == 0) {
+                final String baseURI = "ipfs://" + i + "/";
+                batch.add(ContractCall.of(MINTER, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        contract.changeBaseURI(baseURI, "");
+                        return contract.tokenURI(tokenId);
+                    }
+                }));
+            }
+        }
+        List<String> expected = new ArrayList<String>();
+        for (ContractCall<Token> call : batch) {
+            expected.add(outcome(call, reference));
+        }
+        List<CallResult> results = executor.execute(batch);
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(expected.get(i), outcome(results.get(i)));
+        }
+        assertEquals(describe(reference), describe(token));
+        assertEquals(batch.size(), executor.getReexecuted());
+
+        // a transfer batch after it speculates again
+        executor.execute(calls(ContractCall.of(holder(1), new ContractCall.Operation<Token>() {
+            @Override
+            public Object apply(Token contract) {
+                contract.transferFrom(holder(1), holder(2), BigInteger.ONE);
+                return null;
+            }
+        })));
+        assertEquals(batch.size(), executor.getReexecuted());
+        assertEquals(holder(2), token.ownerOf(BigInteger.ONE));
+    }
+
+    @Test
+    public void restoresThePlainFieldsOfARevertedCall() {
+        Token token = new Token("mapped");
+        token.mint(holder(1), BigInteger.ONE);
+        token.changeBaseURI("ipfs://base/", ".json");
+        ParallelExecutor<Token> executor = new ParallelExecutor<Token>(token, CONTRACT, POOL, null);
+        List<CallResult> results = executor.execute(calls(
+                ContractCall.of(MINTER, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        contract.changeBaseURIAndRevert("ipfs://other/");
+                        return null;
+                    }
+                }),
+                ContractCall.of(MINTER, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        return contract.tokenURI(BigInteger.ONE);
+                    }
+                })));
+        assertFalse(results.get(0).isSucceeded());
+        assertEquals("ipfs://base/1.json", results.get(1).getValue());
+        assertEquals("ipfs://base/1.json", token.tokenURI(BigInteger.ONE));
+    }
+
+    private ContractCall<Token> randomCall(Token reference, Random random) {
+        final BigInteger tokenId = BigInteger.valueOf(random.nextInt(MAX_ID));
+        final Address owner = reference.ownersOf(new BigInteger[]{tokenId})[0];
+        final Address to = holder(random.nextInt(HOLDERS));
+        // one call in ten is sent by someone else than the owner and may revert
+        Address sender = owner == null || random.nextInt(10) == 0 ? holder(random.nextInt(HOLDERS)) : owner;
+        switch (random.nextInt(7)) {
+            case 0:
+                return ContractCall.of(MINTER, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        return contract.mint(to, tokenId);
+                    }
+                });
+            case 1:
+                return ContractCall.of(sender, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        contract.transferFrom(owner, to, tokenId);
+                        return null;
+                    }
+                });
+            case 2:
+                return ContractCall.of(sender, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        contract.burn(owner, tokenId);
+                        return null;
+                    }
+                });
+            case 3:
+                return ContractCall.of(sender, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        contract.approve(to, tokenId);
+                        return null;
+                    }
+                });
+            case 4:
+                final boolean approved = random.nextBoolean();
+                return ContractCall.of(sender, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        contract.setApprovalForAll(to, approved);
+                        return null;
+                    }
+                });
+            case 5:
+                return ContractCall.of(sender, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        contract.safeTransferFrom(owner, RECEIVER, tokenId);
+                        return null;
+                    }
+                });
+            default:
+                return ContractCall.of(sender, new ContractCall.Operation<Token>() {
+                    @Override
+                    public Object apply(Token contract) {
+                        return contract.ownerOf(tokenId) + "/" + contract.balanceOf(to) + "/" + contract.totalSupply();
+                    }
+                });
+        }
+    }
+
+    private static String outcome(ContractCall<Token> call, Token reference) {
+        Emulator.setSender(call.getSender());
+        try {
+            return "ok:" + call.getOperation().apply(reference);
+        } catch (RuntimeException e) {
+            return "error:" + e.getMessage();
+        } finally {
+            Emulator.setSender(MINTER);
+        }
+    }
+
+    private static String outcome(CallResult result) {
+        return result.isSucceeded() ? "ok:" + result.getValue() : "error:" + result.getError().getMessage();
+    }
+
+    private static String describe(Token token) {
+        Address[] holders = new Address[HOLDERS + 1];
+        for (int i = 0; i < HOLDERS; i++) {
+            holders[i] = holder(i);
+        }
+        holders[HOLDERS] = RECEIVER;
+        return ContractStates.describe(token, MAX_ID, holders);
+    }
+
+    private static EventListener recorder(final List<String> events) {
+        return new EventListener() {
+            @Override
+            public void onEvent(Address contractAddress, Event event) {
+                if (event instanceof IIRC721.Transfer) {
+                    IIRC721.Transfer transfer = (IIRC721.Transfer) event;
+                    events.add(transfer.getFrom() + ">" + transfer.getTo() + ":" + transfer.getTokenId());
+                } else {
+                    events.add(event.getClass().getSimpleName());
+                }
+            }
+        };
+    }
+
+    @SafeVarargs
+    private static List<ContractCall<Token>> calls(ContractCall<Token>... calls) {
+        List<ContractCall<Token>> list = new ArrayList<ContractCall<Token>>();
+        for (ContractCall<Token> call : calls) {
+            list.add(call);
+        }
+        return list;
+    }
+
+    private static Address holder(int index) {
+        return new Address("holder" + index);
+    }
+
+    private static final class CountingBackend extends HeapStateBackend implements DurableStateBackend {
+
+        private int commits;
+
+        @Override
+        public void attach(Object contract) {
+        }
+
+        @Override
+        public void commit() {
+            commits++;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package io.icw.token.emulator.snapshot;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.IRC721Full;
+import io.icw.token.emulator.ContractStates;
+import io.icw.token.emulator.Emulator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SnapshotFileTest {
+
+    private static final Address MINTER = new Address("minter");
+    private static final Address ALICE = new Address("alice");
+    private static final Address BOB = new Address("bob");
+    private static final Address[] HOLDERS = {MINTER, ALICE, BOB};
+    private static final int MAX_ID = 12;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        Emulator.setContractAddress(new Address("token"));
+        Emulator.setSender(MINTER);
+        Emulator.setEventListener(null);
+        file = folder.newFile("token.snapshot");
+    }
+
+    @Test
+    public void restoresEveryStorageFromBaseAndDeltas() throws IOException {
+        for (String storage : new String[]{"mapped", "packed", "sequential"}) {
+            assertTrue(file.delete());
+            IRC721Full token = token(storage);
+            SnapshotFile snapshots = new SnapshotFile(file);
+            token.mintRange(ALICE, BigInteger.ONE, 6);
+            token.changeBaseURI("ipfs://base/", ".json");
+            snapshots.append(token);
+
+            Emulator.setSender(ALICE);
+            token.transferFrom(ALICE, BOB, BigInteger.valueOf(3));
+            token.approve(MINTER, BigInteger.valueOf(4));
+            token.setApprovalForAll(BOB, true);
+            token.burn(ALICE, BigInteger.valueOf(5));
+            Emulator.setSender(MINTER);
+            token.mintRange(BOB, BigInteger.valueOf(7), 3);
+            snapshots.append(token);
+
+            Emulator.setSender(BOB);
+            token.burn(BOB, BigInteger.valueOf(8));
+            token.transferFrom(BOB, ALICE, BigInteger.valueOf(9));
+            Emulator.setSender(MINTER);
+            snapshots.append(token);
+            assertEquals(3, snapshots.frames());
+
+            IRC721Full restored = token(storage);
+            SnapshotFile.restore(file, restored);
+            assertEquals(storage, ContractStates.describe(token, MAX_ID, HOLDERS), ContractStates.describe(restored, MAX_ID, HOLDERS));
+
+            // the restored contract keeps working, a sequential storage continues after the last minted id
+            restored.mint(ALICE, BigInteger.TEN);
+            Emulator.setSender(ALICE);
+            restored.transferFrom(ALICE, BOB, BigInteger.valueOf(4));
+            Emulator.setSender(MINTER);
+            assertEquals(BOB, restored.ownerOf(BigInteger.valueOf(4)));
+            assertEquals(ALICE, restored.ownerOf(BigInteger.valueOf(6)));
+        }
+    }
+
+    @Test
+    public void reopensAndRebases() throws IOException {
+        IRC721Full token = token("mapped");
+        SnapshotFile snapshots = new SnapshotFile(file);
+        token.mintRange(ALICE, BigInteger.ONE, 4);
+        snapshots.append(token);
+        token.mint(BOB, BigInteger.TEN);
+        snapshots.append(token);
+
+        snapshots = new SnapshotFile(file);
+        assertEquals(2, snapshots.frames());
+        token.mint(BOB, BigInteger.valueOf(11));
+        snapshots.rebase(token);
+        assertEquals(1, snapshots.frames());
+        token.mint(BOB, BigInteger.valueOf(12));
+        snapshots.append(token);
+
+        IRC721Full restored = token("mapped");
+        SnapshotFile.restore(file, restored);
+        assertEquals(ContractStates.describe(token, MAX_ID, HOLDERS), ContractStates.describe(restored, MAX_ID, HOLDERS));
+    }
+
+    @Test
+    public void ignoresATornLastFrame() throws IOException {
+        IRC721Full token = token("mapped");
+        SnapshotFile snapshots = new SnapshotFile(file);
+        token.mintRange(ALICE, BigInteger.ONE, 2);
+        snapshots.append(token);
+        String expected = ContractStates.describe(token, MAX_ID, HOLDERS);
+        long length = file.length();
+        token.mint(BOB, BigInteger.valueOf(3));
+        snapshots.append(token);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(file.length() - 3);
+        raf.close();
+        snapshots = new SnapshotFile(file);
+        assertEquals(1, snapshots.frames());
+        IRC721Full restored = token("mapped");
+        SnapshotFile.restore(file, restored);
+        assertEquals(expected, ContractStates.describe(restored, MAX_ID, HOLDERS));
+
+        // the next frame overwrites the torn one
+        snapshots.append(token);
+        assertTrue(file.length() > length);
+        assertEquals(2, new SnapshotFile(file).frames());
+    }
+
+    @Test
+    public void refusesAFileOfAnotherVersion() throws IOException {
+        writeHeader(SnapshotCodec.MAGIC, SnapshotCodec.VERSION + 1);
+        try {
+            new SnapshotFile(file);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("unsupported snapshot version"));
+        }
+        writeHeader(0x12345678, SnapshotCodec.VERSION);
+        try {
+            new SnapshotFile(file);
+            fail();
+        } catch (IOException e) {
+            assertEquals("not a snapshot file", e.getMessage());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesToRestoreAMappedImageIntoASequentialStorage() throws IOException {
+        IRC721Full token = token("mapped");
+        token.mint(ALICE, BigInteger.ONE);
+        new SnapshotFile(file).append(token);
+        SnapshotFile.restore(file, token("sequential"));
+    }
+
+    @Test
+    public void refusesContractsWithAnOwnershipHistory() throws IOException {
+        IRC721Full history = new IRC721Full("Name", "SYM") {
+            {
+                enableOwnershipHistory();
+            }
+        };
+        history.mint(ALICE, BigInteger.ONE);
+        try {
+            new SnapshotFile(file).append(history);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertEquals(0, file.length());
+        }
+
+        IRC721Full token = token("mapped");
+        token.mint(ALICE, BigInteger.ONE);
+        new SnapshotFile(file).append(token);
+        IRC721Full target = new IRC721Full("Name", "SYM") {
+            {
+                enableOwnershipHistory();
+            }
+        };
+        try {
+            SnapshotFile.restore(file, target);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertEquals(0, target.totalSupply());
+        }
+    }
+
+    private static IRC721Full token(String storage) {
+        return new IRC721Full("Name", "SYM", storage, BigInteger.ONE);
+    }
+
+    private void writeHeader(int magic, int version) throws IOException {
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.writeInt(magic);
+            out.writeInt(version);
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package io.icw.token.emulator.store;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogStoreTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recoversTheCommittedGroupsOnly() throws IOException {
+        File directory = folder.newFolder();
+        LogStore store = new LogStore(directory, SEGMENT_SIZE, false);
+        store.put(bytes("a"), bytes("1"));
+        store.put(bytes("b"), bytes("2"));
+        store.commit();
+        store.remove(bytes("a"));
+        store.put(bytes("b"), bytes("3"));
+        store.put(bytes("c"), bytes("4"));
+        assertEquals("3", string(store.get(bytes("b"))));
+
+        // the process dies before the commit, the store is not closed
+        LogStore recovered = new LogStore(directory, SEGMENT_SIZE, false);
+        assertEquals("1", string(recovered.get(bytes("a"))));
+        assertEquals("2", string(recovered.get(bytes("b"))));
+        assertNull(recovered.get(bytes("c")));
+
+        recovered.put(bytes("c"), bytes("5"));
+        recovered.close();
+        recovered = new LogStore(directory, SEGMENT_SIZE, false);
+        assertEquals("5", string(recovered.get(bytes("c"))));
+        recovered.close();
+    }
+
+    @Test
+    public void dropsATornGroup() throws IOException {
+        File directory = folder.newFolder();
+        LogStore store = new LogStore(directory, SEGMENT_SIZE, true);
+        store.put(bytes("a"), bytes("1"));
+        store.commit();
+        File segment = segments(directory)[0];
+        byte[] before = Files.readAllBytes(segment.toPath());
+        store.put(bytes("a"), bytes("2"));
+        store.put(bytes("b"), bytes("2"));
+        store.commit();
+        byte[] after = Files.readAllBytes(segment.toPath());
+
+        // the second group reached the disk up to its middle
+        int start = 0;
+        while (before[start] == after[start]) {
+            start++;
+        }
+        int end = start + 1;
+        for (int i = start; i < after.length; i++) {
+            if (before[i] != after[i]) {
+                end = i + 1;
+            }
+        }
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.seek((start + end) / 2);
+        file.write(new byte[end - (start + end) / 2]);
+        file.close();
+
+        LogStore recovered = new LogStore(directory, SEGMENT_SIZE, false);
+        assertEquals("1", string(recovered.get(bytes("a"))));
+        assertNull(recovered.get(bytes("b")));
+        // the next group overwrites the torn one
+        recovered.put(bytes("b"), bytes("3"));
+        recovered.close();
+        recovered = new LogStore(directory, SEGMENT_SIZE, false);
+        assertEquals("1", string(recovered.get(bytes("a"))));
+        assertEquals("3", string(recovered.get(bytes("b"))));
+        recovered.close();
+    }
+
+    @Test
+    public void compactsTheSealedSegments() throws IOException {
+        File directory = folder.newFolder();
+        LogStore store = new LogStore(directory, SEGMENT_SIZE, false);
+        for (int round = 0; round < 40; round++) {
+            for (int key = 0; key < 20; key++) {
+                store.put(bytes("key" + key), bytes("value" + key + "-" + round));
+            }
+            store.remove(bytes("key" + (round % 20)));
+            store.put(bytes("key" + (round % 20)), bytes("value" + (round % 20) + "-" + round));
+            store.commit();
+        }
+        int sealed = segments(directory).length;
+        store.compact();
+        assertTrue(segments(directory).length < sealed);
+        store.close();
+
+        LogStore reopened = new LogStore(directory, SEGMENT_SIZE, false);
+        for (int key = 0; key < 20; key++) {
+            assertEquals("value" + key + "-39", string(reopened.get(bytes("key" + key))));
+        }
+        reopened.close();
+    }
+
+    private static File[] segments(File directory) {
+        return directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith("segment-");
+            }
+        });
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+}
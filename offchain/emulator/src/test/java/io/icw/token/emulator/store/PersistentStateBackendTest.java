@@ -0,0 +1,233 @@
+package io.icw.token.emulator.store;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.IRC721Full;
+import io.icw.token.emulator.ContractStates;
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.parallel.CallResult;
+import io.icw.token.emulator.parallel.ContractCall;
+import io.icw.token.emulator.parallel.ParallelExecutor;
+import io.icw.token.emulator.state.StateContainers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PersistentStateBackendTest {
+
+    private static final Address MINTER = new Address("minter");
+    private static final Address ALICE = new Address("alice");
+    private static final Address BOB = new Address("bob");
+    private static final Address[] HOLDERS = {MINTER, ALICE, BOB};
+    private static final int MAX_ID = 12;
+    private static final int SEGMENT_SIZE = 1 << 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+    private ForkJoinPool pool;
+
+    @Before
+    public void setUp() throws IOException {
+        Emulator.setContractAddress(new Address("token"));
+        Emulator.setSender(MINTER);
+        Emulator.setEventListener(null);
+        directory = folder.newFolder();
+        pool = new ForkJoinPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void reopensTheContainersAndThePlainFields() throws IOException {
+        for (String storage : new String[]{"mapped", "sequential"}) {
+            File directory = folder.newFolder(storage);
+            PersistentStateBackend backend = new PersistentStateBackend(directory, SEGMENT_SIZE, false);
+            IRC721Full token = token(storage);
+            ParallelExecutor<IRC721Full> executor = executor(token, backend);
+            assertSucceeded(executor.execute(Arrays.asList(
+                    ContractCall.of(MINTER, new ContractCall.Operation<IRC721Full>() {
+                        @Override
+                        public Object apply(IRC721Full contract) {
+                            contract.mintRange(ALICE, BigInteger.ONE, 6);
+                            contract.changeBaseURI("ipfs://base/", ".json");
+                            return contract.mintWithTokenURI(BOB, BigInteger.valueOf(7), "ipfs://seven");
+                        }
+                    }),
+                    ContractCall.of(ALICE, new ContractCall.Operation<IRC721Full>() {
+                        @Override
+                        public Object apply(IRC721Full contract) {
+                            contract.transferFrom(ALICE, BOB, BigInteger.valueOf(3));
+                            contract.approve(MINTER, BigInteger.valueOf(4));
+                            contract.setApprovalForAll(BOB, true);
+                            contract.burn(ALICE, BigInteger.valueOf(5));
+                            return null;
+                        }
+                    }))));
+            String expected = ContractStates.describe(token, MAX_ID, HOLDERS);
+            backend.close();
+
+            backend = new PersistentStateBackend(directory, SEGMENT_SIZE, false);
+            IRC721Full reopened = token(storage);
+            executor = executor(reopened, backend);
+            assertEquals(storage, expected, ContractStates.describe(reopened, MAX_ID, HOLDERS));
+            // the sequential storage goes on after the last minted id
+            assertSucceeded(executor.execute(Collections.singletonList(mint(BOB, 8))));
+            assertEquals(BOB, reopened.ownerOf(BigInteger.valueOf(8)));
+            assertEquals("ipfs://base/8.json", reopened.tokenURI(BigInteger.valueOf(8)));
+            backend.close();
+        }
+    }
+
+    @Test
+    public void dropsTheWritesAfterTheLastCommit() throws IOException {
+        PersistentStateBackend backend = new PersistentStateBackend(directory, SEGMENT_SIZE, false);
+        IRC721Full token = token("sequential");
+        assertSucceeded(executor(token, backend).execute(Arrays.asList(
+                ContractCall.of(MINTER, new ContractCall.Operation<IRC721Full>() {
+                    @Override
+                    public Object apply(IRC721Full contract) {
+                        contract.changeBaseURI("ipfs://base/", "");
+                        return contract.mintRange(ALICE, BigInteger.ONE, 4);
+                    }
+                }),
+                mint(BOB, 5))));
+        String committed = ContractStates.describe(token, MAX_ID, HOLDERS);
+
+        // outside of a transaction the containers write through to the store, nothing commits them
+        Emulator.setSender(ALICE);
+        token.transferFrom(ALICE, BOB, BigInteger.ONE);
+        token.approve(MINTER, BigInteger.valueOf(2));
+        token.burn(ALICE, BigInteger.valueOf(3));
+        Emulator.setSender(MINTER);
+        assertFalse(committed.equals(ContractStates.describe(token, MAX_ID, HOLDERS)));
+
+        // the process dies before the next commit
+        IRC721Full recovered = token("sequential");
+        ParallelExecutor<IRC721Full> executor = executor(recovered, new PersistentStateBackend(directory, SEGMENT_SIZE, false));
+        assertEquals(committed, ContractStates.describe(recovered, MAX_ID, HOLDERS));
+        assertSucceeded(executor.execute(Collections.singletonList(mint(BOB, 6))));
+        assertEquals("ipfs://base/", recovered.baseURI());
+    }
+
+    @Test
+    public void keepsOnlyTheCallsThatSucceeded() throws IOException {
+        PersistentStateBackend backend = new PersistentStateBackend(directory, SEGMENT_SIZE, false);
+        IRC721Full token = token("sequential");
+        List<ContractCall<IRC721Full>> calls = new ArrayList<ContractCall<IRC721Full>>();
+        calls.add(ContractCall.of(MINTER, new ContractCall.Operation<IRC721Full>() {
+            @Override
+            public Object apply(IRC721Full contract) {
+                return contract.mintRange(ALICE, BigInteger.ONE, 4);
+            }
+        }));
+        calls.add(ContractCall.of(ALICE, new ContractCall.Operation<IRC721Full>() {
+            @Override
+            public Object apply(IRC721Full contract) {
+                contract.transferFrom(ALICE, BOB, BigInteger.valueOf(2));
+                return null;
+            }
+        }));
+        // reverted after changing the base URI and minting
+        calls.add(ContractCall.of(MINTER, new ContractCall.Operation<IRC721Full>() {
+            @Override
+            public Object apply(IRC721Full contract) {
+                contract.changeBaseURI("ipfs://reverted/", "");
+                contract.mint(BOB, BigInteger.valueOf(5));
+                contract.mint(BOB, BigInteger.ONE);
+                return null;
+            }
+        }));
+        calls.add(ContractCall.of(BOB, new ContractCall.Operation<IRC721Full>() {
+            @Override
+            public Object apply(IRC721Full contract) {
+                contract.transferFrom(ALICE, BOB, BigInteger.valueOf(3));
+                return null;
+            }
+        }));
+        List<CallResult> results = executor(token, backend).execute(calls);
+        assertTrue(results.get(0).isSucceeded());
+        assertTrue(results.get(1).isSucceeded());
+        assertFalse(results.get(2).isSucceeded());
+        assertFalse(results.get(3).isSucceeded());
+
+        // the process dies, every call that succeeded is durable
+        IRC721Full recovered = token("sequential");
+        ParallelExecutor<IRC721Full> executor = executor(recovered, new PersistentStateBackend(directory, SEGMENT_SIZE, false));
+        assertEquals(ContractStates.describe(token, MAX_ID, HOLDERS), ContractStates.describe(recovered, MAX_ID, HOLDERS));
+        assertNull(recovered.baseURI());
+        assertEquals(3, recovered.balanceOf(ALICE));
+        assertSucceeded(executor.execute(Collections.singletonList(mint(BOB, 5))));
+        backend.close();
+    }
+
+    @Test
+    public void refusesStateItCanNotKeep() throws IOException {
+        assertRefused(new IRC721Full("Name", "SYM", "packed", BigInteger.ONE), IllegalArgumentException.class);
+        assertRefused(new IRC721Full("Name", "SYM") {
+            {
+                enableOwnershipHistory();
+            }
+        }, IllegalArgumentException.class);
+
+        PersistentStateBackend backend = new PersistentStateBackend(directory, SEGMENT_SIZE, false);
+        assertSucceeded(executor(token("mapped"), backend).execute(Collections.singletonList(mint(ALICE, 1))));
+        backend.close();
+        assertRefused(token("sequential"), IllegalStateException.class);
+    }
+
+    private void assertRefused(IRC721Full token, Class<? extends RuntimeException> expected) throws IOException {
+        PersistentStateBackend backend = new PersistentStateBackend(directory, SEGMENT_SIZE, false);
+        try {
+            StateContainers.install(token, backend);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals(expected, e.getClass());
+        } finally {
+            backend.close();
+        }
+    }
+
+    private static void assertSucceeded(List<CallResult> results) {
+        for (CallResult result : results) {
+            assertTrue(String.valueOf(result.getError()), result.isSucceeded());
+        }
+    }
+
+    private static ContractCall<IRC721Full> mint(final Address to, final long tokenId) {
+        return ContractCall.of(MINTER, new ContractCall.Operation<IRC721Full>() {
+            @Override
+            public Object apply(IRC721Full contract) {
+                return contract.mint(to, BigInteger.valueOf(tokenId));
+            }
+        });
+    }
+
+    private ParallelExecutor<IRC721Full> executor(IRC721Full token, PersistentStateBackend backend) {
+        return new ParallelExecutor<IRC721Full>(token, new Address("token"), pool, null, backend);
+    }
+
+    private static IRC721Full token(String storage) {
+        return new IRC721Full("Name", "SYM", storage, BigInteger.ONE);
+    }
+}
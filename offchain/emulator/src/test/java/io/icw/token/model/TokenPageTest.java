@@ -0,0 +1,53 @@
+package io.icw.token.model;
+
+import io.icw.token.emulator.RevertException;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TokenPageTest {
+
+    private static final List<BigInteger> TOKENS = Arrays.asList(BigInteger.ONE, BigInteger.valueOf(2), BigInteger.TEN);
+
+    @Test
+    public void pagesThroughTheList() {
+        assertEquals("{\"total\":3,\"next\":2,\"tokenIds\":[1,2]}", TokenPage.toJson(TOKENS, 0, 2, "Scope"));
+        assertEquals("{\"total\":3,\"next\":-1,\"tokenIds\":[10]}", TokenPage.toJson(TOKENS, 2, 2, "Scope"));
+        assertEquals("{\"total\":3,\"next\":-1,\"tokenIds\":[1,2,10]}", TokenPage.toJson(TOKENS, 0, 3, "Scope"));
+    }
+
+    @Test
+    public void rendersAnEmptyPagePastTheEnd() {
+        assertEquals("{\"total\":3,\"next\":-1,\"tokenIds\":[]}", TokenPage.toJson(TOKENS, 3, 1, "Scope"));
+        assertEquals("{\"total\":3,\"next\":-1,\"tokenIds\":[]}", TokenPage.toJson(TOKENS, Integer.MAX_VALUE, TokenPage.MAX_PAGE_SIZE, "Scope"));
+        assertEquals("{\"total\":0,\"next\":-1,\"tokenIds\":[]}", TokenPage.toJson(null, 0, 1, "Scope"));
+    }
+
+    @Test
+    public void quotesNamedItems() {
+        List<String> members = new ArrayList<String>(Arrays.asList("a", "b"));
+        assertEquals("{\"total\":2,\"next\":1,\"members\":[\"a\"]}", TokenPage.toJson(members, 0, 1, "Scope", "members", true));
+    }
+
+    @Test
+    public void refusesOutOfBoundsArguments() {
+        assertReverts(-1, 1, "Scope: page offset out of bounds");
+        assertReverts(0, 0, "Scope: page limit out of bounds");
+        assertReverts(0, TokenPage.MAX_PAGE_SIZE + 1, "Scope: page limit out of bounds");
+    }
+
+    private static void assertReverts(int offset, int limit, String message) {
+        try {
+            TokenPage.toJson(TOKENS, offset, limit, "Scope");
+            fail();
+        } catch (RevertException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package io.icw.token.role;
+
+import io.icw.contract.sdk.Address;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RoleMembersTest {
+
+    @Test
+    public void swapsTheLastMemberIntoARemovedSlot() {
+        RoleMembers members = new RoleMembers();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(members.add(new Address("m" + i)));
+        }
+        assertFalse(members.add(new Address("m2")));
+        assertTrue(members.remove(new Address("m1")));
+        assertFalse(members.remove(new Address("m1")));
+        assertEquals(3, members.size());
+        assertEquals(new Address("m3"), members.get(1));
+        assertFalse(members.has(new Address("m1")));
+        assertTrue(members.has(new Address("m3")));
+
+        // the moved member can still be removed from its new position
+        assertTrue(members.remove(new Address("m3")));
+        assertTrue(members.remove(new Address("m0")));
+        assertEquals(new Address("m2"), members.get(0));
+        assertEquals(1, members.size());
+    }
+
+    @Test
+    public void pagesTheMembers() {
+        RoleMembers members = new RoleMembers();
+        members.add(new Address("m0"));
+        members.add(new Address("m1"));
+        members.add(new Address("m2"));
+        assertEquals("{\"total\":3,\"next\":2,\"members\":[\"m0\",\"m1\"]}", members.toJson(0, 2, "MinterRole"));
+        assertEquals("{\"total\":3,\"next\":-1,\"members\":[\"m2\"]}", members.toJson(2, 2, "MinterRole"));
+        assertEquals("{\"total\":3,\"next\":-1,\"members\":[]}", members.toJson(5, 2, "MinterRole"));
+    }
+}
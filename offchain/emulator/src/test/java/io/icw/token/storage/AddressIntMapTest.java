@@ -0,0 +1,98 @@
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class AddressIntMapTest {
+
+    /**
+     * Mask of an empty map
+     */
+    private static final int MASK = 15;
+
+    @Test
+    public void findsEveryKeyOfAProbeChainAfterADeletion() {
+        Address[] keys = collidingAddresses(5);
+        AddressIntMap map = new AddressIntMap();
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(i + 1, map.add(keys[i], i + 1));
+        }
+        // dropping the head and then a middle count to zero shifts the rest of the chain back
+        assertEquals(0, map.add(keys[0], -1));
+        assertEquals(0, map.add(keys[2], -3));
+        assertEquals(3, map.size());
+        assertEquals(0, map.get(keys[0]));
+        assertEquals(0, map.get(keys[2]));
+        for (int i : new int[]{1, 3, 4}) {
+            assertEquals(i + 1, map.get(keys[i]));
+        }
+        assertEquals(9, map.add(keys[0], 9));
+        assertEquals(4, map.size());
+    }
+
+    @Test
+    public void zeroDeltaOfAnAbsentKeyAddsNothing() {
+        AddressIntMap map = new AddressIntMap();
+        Address key = new Address("alice");
+        assertEquals(0, map.add(key, 0));
+        assertEquals(0, map.size());
+        assertEquals(2, map.add(key, 2));
+        assertEquals(2, map.add(key, 0));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void matchesAHashMapAcrossResizes() {
+        Random random = new Random(11);
+        AddressIntMap map = new AddressIntMap();
+        Map<Address, Integer> expected = new HashMap<Address, Integer>();
+        for (int n = 0; n < 100000; n++) {
+            Address key = new Address("holder-" + random.nextInt(3000));
+            Integer count = expected.get(key);
+            int delta = count != null && random.nextInt(3) == 0 ? -count : random.nextInt(5) + 1;
+            int value = (count == null ? 0 : count) + delta;
+            if (value == 0) {
+                expected.remove(key);
+            } else {
+                expected.put(key, value);
+            }
+            assertEquals(value, map.add(key, delta));
+        }
+        assertEquals(expected.size(), map.size());
+        int walked = 0;
+        for (int slot = 0; slot < map.slots(); slot++) {
+            if (map.keyAt(slot) != null) {
+                assertEquals(expected.get(map.keyAt(slot)).intValue(), map.valueAt(slot));
+                walked++;
+            }
+        }
+        assertEquals(expected.size(), walked);
+        for (int i = 0; i < 3000; i++) {
+            Address key = new Address("holder-" + i);
+            Integer count = expected.get(key);
+            assertEquals(count == null ? 0 : count.intValue(), map.get(key));
+        }
+    }
+
+    /**
+     * @return `count` addresses with the same home slot in an empty map
+     */
+    static Address[] collidingAddresses(int count) {
+        Address[] addresses = new Address[count];
+        int home = LongHashing.slot(new Address("a0").hashCode(), MASK);
+        int found = 0;
+        for (int i = 0; found < count; i++) {
+            Address address = new Address("a" + i);
+            if (LongHashing.slot(address.hashCode(), MASK) == home) {
+                addresses[found++] = address;
+            }
+        }
+        return addresses;
+    }
+}
@@ -0,0 +1,108 @@
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AddressPairSetTest {
+
+    /**
+     * Mask of an empty set
+     */
+    private static final int MASK = 15;
+    private static final Address OWNER = new Address("owner");
+
+    @Test
+    public void findsEveryPairOfAProbeChainAfterARemoval() {
+        Address[] operators = collidingOperators(5);
+        AddressPairSet set = new AddressPairSet();
+        for (Address operator : operators) {
+            assertTrue(set.add(OWNER, operator));
+        }
+        assertFalse(set.add(OWNER, operators[3]));
+        // removing the head and then a middle pair shifts the rest of the chain back
+        assertTrue(set.remove(OWNER, operators[0]));
+        assertTrue(set.remove(OWNER, operators[2]));
+        assertFalse(set.remove(OWNER, operators[2]));
+        assertEquals(3, set.size());
+        assertFalse(set.contains(OWNER, operators[0]));
+        for (int i : new int[]{1, 3, 4}) {
+            assertTrue(set.contains(OWNER, operators[i]));
+        }
+        assertTrue(set.add(OWNER, operators[0]));
+        assertEquals(4, set.size());
+    }
+
+    @Test
+    public void keepsThePairOrdered() {
+        AddressPairSet set = new AddressPairSet();
+        Address alice = new Address("alice");
+        Address bob = new Address("bob");
+        set.add(alice, bob);
+        assertTrue(set.contains(alice, bob));
+        assertFalse(set.contains(bob, alice));
+        assertFalse(set.remove(bob, alice));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    public void matchesAHashSetAcrossResizes() {
+        Random random = new Random(13);
+        AddressPairSet set = new AddressPairSet();
+        Set<String> expected = new HashSet<String>();
+        for (int n = 0; n < 100000; n++) {
+            int first = random.nextInt(60);
+            int second = random.nextInt(60);
+            Address owner = new Address("owner-" + first);
+            Address operator = new Address("operator-" + second);
+            String pair = first + ":" + second;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(pair), set.remove(owner, operator));
+            } else {
+                assertEquals(expected.add(pair), set.add(owner, operator));
+            }
+        }
+        assertEquals(expected.size(), set.size());
+        int walked = 0;
+        for (int slot = 0; slot < set.slots(); slot++) {
+            if (set.firstAt(slot) != null) {
+                assertTrue(set.contains(set.firstAt(slot), set.secondAt(slot)));
+                walked++;
+            }
+        }
+        assertEquals(expected.size(), walked);
+        for (int first = 0; first < 60; first++) {
+            for (int second = 0; second < 60; second++) {
+                assertEquals(expected.contains(first + ":" + second),
+                        set.contains(new Address("owner-" + first), new Address("operator-" + second)));
+            }
+        }
+    }
+
+    /**
+     * @return `count` operators whose pairs with OWNER have the same home slot in an empty set
+     */
+    private static Address[] collidingOperators(int count) {
+        Address[] operators = new Address[count];
+        int home = slot(new Address("o0"));
+        int found = 0;
+        for (int i = 0; found < count; i++) {
+            Address operator = new Address("o" + i);
+            if (slot(operator) == home) {
+                operators[found++] = operator;
+            }
+        }
+        return operators;
+    }
+
+    private static int slot(Address operator) {
+        return LongHashing.slot(((long) OWNER.hashCode() << 32) ^ (operator.hashCode() & 0xFFFFFFFFL), MASK);
+    }
+}
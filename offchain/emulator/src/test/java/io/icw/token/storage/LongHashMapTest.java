@@ -0,0 +1,95 @@
+package io.icw.token.storage;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LongHashMapTest {
+
+    /**
+     * Mask of an empty map
+     */
+    private static final int MASK = 15;
+
+    @Test
+    public void findsEveryKeyOfAProbeChainAfterADeletion() {
+        long[] keys = collidingKeys(5);
+        LongHashMap<String> map = new LongHashMap<String>();
+        for (long key : keys) {
+            map.put(key, "v" + key);
+        }
+        // removing the head and then a middle entry shifts the rest of the chain back
+        assertEquals("v" + keys[0], map.remove(keys[0]));
+        assertEquals("v" + keys[2], map.remove(keys[2]));
+        assertEquals(3, map.size());
+        assertNull(map.get(keys[0]));
+        assertFalse(map.containsKey(keys[2]));
+        for (int i : new int[]{1, 3, 4}) {
+            assertEquals("v" + keys[i], map.get(keys[i]));
+        }
+        map.put(keys[0], "again");
+        assertEquals("again", map.get(keys[0]));
+        assertEquals(4, map.size());
+    }
+
+    @Test
+    public void keepsTheZeroKeyAside() {
+        LongHashMap<String> map = new LongHashMap<String>();
+        assertFalse(map.containsKey(0));
+        map.put(0, "zero");
+        map.put(collidingKeys(1)[0], "other");
+        assertEquals("zero", map.get(0));
+        assertEquals(2, map.size());
+        assertEquals("zero", map.remove(0));
+        assertFalse(map.containsKey(0));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void matchesAHashMapAcrossResizes() {
+        Random random = new Random(7);
+        LongHashMap<Long> map = new LongHashMap<Long>();
+        Map<Long, Long> expected = new HashMap<Long, Long>();
+        for (int n = 0; n < 200000; n++) {
+            // a narrow key range keeps the chains long and removals frequent
+            long key = random.nextInt(5000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, (long) n), map.put(key, (long) n));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = -100; key < 4900; key++) {
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.containsKey(key), map.containsKey(key));
+        }
+        for (int i = 0; i < 1 << 16; i++) {
+            map.put(Long.MAX_VALUE - i, (long) i);
+        }
+        assertEquals(expected.size() + (1 << 16), map.size());
+        assertEquals(Long.valueOf(7), map.get(Long.MAX_VALUE - 7));
+        assertTrue(map.containsKey(Long.MAX_VALUE));
+    }
+
+    /**
+     * @return `count` keys with the same home slot in an empty map
+     */
+    static long[] collidingKeys(int count) {
+        long[] keys = new long[count];
+        int found = 0;
+        for (long key = 1; found < count; key++) {
+            if (LongHashing.slot(key, MASK) == LongHashing.slot(1, MASK)) {
+                keys[found++] = key;
+            }
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,54 @@
+package io.icw.token.storage;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongIntHashMapTest {
+
+    @Test
+    public void findsEveryKeyOfAProbeChainAfterADeletion() {
+        long[] keys = LongHashMapTest.collidingKeys(4);
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], i);
+        }
+        assertTrue(map.remove(keys[1]));
+        assertFalse(map.remove(keys[1]));
+        assertEquals(-1, map.get(keys[1], -1));
+        assertEquals(0, map.get(keys[0], -1));
+        assertEquals(2, map.get(keys[2], -1));
+        assertEquals(3, map.get(keys[3], -1));
+        assertEquals(3, map.size());
+        map.put(0, 9);
+        assertEquals(9, map.get(0, -1));
+        assertEquals(4, map.size());
+    }
+
+    @Test
+    public void matchesAHashMapAcrossResizes() {
+        Random random = new Random(11);
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<Long, Integer>();
+        for (int n = 0; n < 200000; n++) {
+            long key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                expected.put(key, n);
+                map.put(key, n);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 5000; key++) {
+            Integer value = expected.get(key);
+            assertEquals(value == null ? -1 : value, map.get(key, -1));
+        }
+    }
+}
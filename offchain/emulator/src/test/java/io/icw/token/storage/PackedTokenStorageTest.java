@@ -0,0 +1,121 @@
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.base.IRC721FullBase;
+import io.icw.token.emulator.Emulator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PackedTokenStorageTest {
+
+    private static final Address ALICE = new Address("alice");
+    private static final Address BOB = new Address("bob");
+    private static final Address CAROL = new Address("carol");
+
+    private CountingStorage storage;
+    private Token token;
+
+    @Before
+    public void setUp() {
+        Emulator.setContractAddress(new Address("token"));
+        Emulator.setSender(ALICE);
+        storage = new CountingStorage();
+        token = new Token(storage);
+        token.mintRange(ALICE, BigInteger.ONE, 5);
+        token.mint(BOB, BigInteger.valueOf(6));
+    }
+
+    @Test
+    public void approveAndTransferShareTheRecord() {
+        token.approve(CAROL, BigInteger.valueOf(2));
+        token.approve(CAROL, BigInteger.valueOf(3));
+        assertEquals(CAROL, storage.approvedOf(BigInteger.valueOf(2)));
+        assertEquals(CAROL, token.getApproved(BigInteger.valueOf(3)));
+
+        Emulator.setSender(CAROL);
+        token.transferFrom(ALICE, BOB, BigInteger.valueOf(2));
+        Emulator.setSender(ALICE);
+        token.transferFrom(ALICE, BOB, BigInteger.valueOf(3));
+        assertEquals(BOB, token.ownerOf(BigInteger.valueOf(2)));
+        assertEquals(BOB, storage.ownerOf(BigInteger.valueOf(3)));
+        assertNull(token.getApproved(BigInteger.valueOf(2)));
+        assertNull(storage.approvedOf(BigInteger.valueOf(3)));
+        assertEquals(3, token.balanceOf(ALICE));
+        assertEquals(3, token.balanceOf(BOB));
+        // the transfer of the record dropped the approvals, no second lookup
+        assertEquals(0, storage.clearApprovals);
+    }
+
+    @Test
+    public void burnDropsTheWholeRecord() {
+        token.approve(CAROL, BigInteger.valueOf(4));
+        token.burn(ALICE, BigInteger.valueOf(4));
+        assertNull(storage.ownerOf(BigInteger.valueOf(4)));
+        assertNull(storage.approvedOf(BigInteger.valueOf(4)));
+        assertEquals(0, storage.clearApprovals);
+        assertEquals(4, token.balanceOf(ALICE));
+        assertEquals(5, token.totalSupply());
+
+        token.mint(BOB, BigInteger.valueOf(4));
+        assertEquals(BOB, token.ownerOf(BigInteger.valueOf(4)));
+        assertNull(token.getApproved(BigInteger.valueOf(4)));
+    }
+
+    @Test
+    public void indexesFollowTheEnumeration() {
+        token.transferFrom(ALICE, BOB, BigInteger.ONE);
+        token.burn(ALICE, BigInteger.valueOf(3));
+        token.burn(ALICE, BigInteger.valueOf(5));
+        token.transferFrom(ALICE, CAROL, BigInteger.valueOf(2));
+        Emulator.setSender(BOB);
+        token.burn(BOB, BigInteger.valueOf(6));
+
+        assertEquals(3, token.totalSupply());
+        for (long id = 1; id <= 6; id++) {
+            BigInteger tokenId = BigInteger.valueOf(id);
+            Address owner = storage.ownerOf(tokenId);
+            if (owner == null) {
+                continue;
+            }
+            assertEquals(tokenId, token.tokenByIndex(storage.globalIndexOf(tokenId)));
+            assertEquals(tokenId, token.tokenOfOwnerByIndex(owner, storage.ownerIndexOf(tokenId)));
+        }
+        assertEquals(BigInteger.valueOf(4), token.tokenOfOwnerByIndex(ALICE, 0));
+        assertEquals(BigInteger.ONE, token.tokenOfOwnerByIndex(BOB, 0));
+        assertEquals(BigInteger.valueOf(2), token.tokenOfOwnerByIndex(CAROL, 0));
+    }
+
+    private static final class CountingStorage extends PackedTokenStorage {
+        private int clearApprovals;
+
+        @Override
+        public void clearApproval(BigInteger tokenId) {
+            clearApprovals++;
+            super.clearApproval(tokenId);
+        }
+    }
+
+    private static final class Token extends IRC721FullBase {
+
+        private Token(PackedTokenStorage storage) {
+            super("Name", "SYM", storage);
+        }
+
+        private void mint(Address to, BigInteger tokenId) {
+            mintBase(to, tokenId);
+        }
+
+        private void mintRange(Address to, BigInteger startId, int count) {
+            mintRangeBase(to, startId, count);
+        }
+
+        private void burn(Address owner, BigInteger tokenId) {
+            burnBase(owner, tokenId);
+        }
+    }
+}
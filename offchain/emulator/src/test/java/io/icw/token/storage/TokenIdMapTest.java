@@ -0,0 +1,61 @@
+package io.icw.token.storage;
+
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TokenIdMapTest {
+
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    @Test
+    public void keepsIdsAboveLongMaxValueApart() {
+        TokenIdMap<String> map = new TokenIdMap<String>();
+        BigInteger big = LONG_MAX.add(BigInteger.ONE);
+        // the low 64 bits of 2^64 + 5 are 5
+        BigInteger wrapped = BigInteger.ONE.shiftLeft(64).add(BigInteger.valueOf(5));
+        map.put(LONG_MAX, "max");
+        map.put(big, "big");
+        map.put(wrapped, "wrapped");
+        map.put(BigInteger.valueOf(5), "five");
+        assertEquals(4, map.size());
+        assertEquals("max", map.get(LONG_MAX));
+        assertEquals("big", map.get(big));
+        assertEquals("wrapped", map.get(wrapped));
+        assertEquals("five", map.get(BigInteger.valueOf(5)));
+
+        assertEquals("wrapped", map.remove(wrapped));
+        assertFalse(map.containsKey(wrapped));
+        assertTrue(map.containsKey(BigInteger.valueOf(5)));
+        assertNull(map.remove(wrapped));
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    public void intMapKeepsIdsAboveLongMaxValueApart() {
+        TokenIdIntMap map = new TokenIdIntMap();
+        BigInteger big = LONG_MAX.add(BigInteger.ONE);
+        BigInteger wrapped = BigInteger.ONE.shiftLeft(64);
+        assertEquals(TokenIdIntMap.NO_VALUE, map.get(big));
+        map.put(big, 1);
+        map.put(wrapped, 2);
+        map.put(BigInteger.ZERO, 3);
+        map.put(LONG_MAX, 4);
+        assertEquals(1, map.get(big));
+        assertEquals(2, map.get(wrapped));
+        assertEquals(3, map.get(BigInteger.ZERO));
+        assertEquals(4, map.get(LONG_MAX));
+
+        map.remove(big);
+        assertEquals(TokenIdIntMap.NO_VALUE, map.get(big));
+        assertEquals(2, map.get(wrapped));
+        map.remove(BigInteger.ZERO);
+        assertEquals(TokenIdIntMap.NO_VALUE, map.get(BigInteger.ZERO));
+        assertEquals(4, map.get(LONG_MAX));
+    }
+}
@@ -0,0 +1,411 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.indexer;
+
+import io.icw.contract.sdk.Address;
+import io.icw.contract.sdk.Event;
+import io.icw.token.emulator.EventListener;
+import io.icw.token.interfaces.IIRC721;
+import io.icw.token.interfaces.IIRC721Enumerable;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-through cache in front of the views of one IRC721 contract.
+ * <p>Entries are evicted least recently used first once `maxEntries` is reached, and expire after `ttlMillis`.
+ * The events of the contract, fed through {@link #onEvent(Address, Event)} or {@link #onEvent(EventRecord)},
+ * invalidate exactly the entries they change, and a view answered while an event was being applied is not
+ * cached, so no answer is older than the last applied event. Writes go straight to the contract.</p>
+ * <pre>
+ *     CachedIRC721Client client = new CachedIRC721Client(contract, contractAddress, 10000, 60000);
+ *     Emulator.setEventListener(client);
+ *     client.ownerOf(tokenId);
+ * </pre>
+ */
+public class CachedIRC721Client<T extends IIRC721 & IIRC721Enumerable> implements IIRC721, IIRC721Enumerable, EventListener {
+
+    private static final Object NULL = new Object();
+
+    private final T contract;
+    private final String contractAddress;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<Key, Entry> entries;
+    /**
+     * Bumped by every applied event, a view result loaded across a bump is not cached
+     */
+    private long version;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    public CachedIRC721Client(T contract, Address contractAddress, int maxEntries, long ttlMillis) {
+        this.contract = contract;
+        this.contractAddress = contractAddress.toString();
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > CachedIRC721Client.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public int balanceOf(Address owner) {
+        Key key = new Key(Kind.BALANCE, owner, null);
+        Object cached = lookup(key);
+        if (cached != null) {
+            return (Integer) cached;
+        }
+        long loadVersion = version();
+        int balance = contract.balanceOf(owner);
+        store(key, balance, loadVersion);
+        return balance;
+    }
+
+    @Override
+    public Address ownerOf(BigInteger tokenId) {
+        Key key = new Key(Kind.OWNER, tokenId, null);
+        Object cached = lookup(key);
+        if (cached != null) {
+            return cached == NULL ? null : (Address) cached;
+        }
+        long loadVersion = version();
+        Address owner = contract.ownerOf(tokenId);
+        store(key, owner, loadVersion);
+        return owner;
+    }
+
+    @Override
+    public Address getApproved(BigInteger tokenId) {
+        Key key = new Key(Kind.APPROVED, tokenId, null);
+        Object cached = lookup(key);
+        if (cached != null) {
+            return cached == NULL ? null : (Address) cached;
+        }
+        long loadVersion = version();
+        Address approved = contract.getApproved(tokenId);
+        store(key, approved, loadVersion);
+        return approved;
+    }
+
+    @Override
+    public boolean isApprovedForAll(Address owner, Address operator) {
+        Key key = new Key(Kind.OPERATOR, owner, operator);
+        Object cached = lookup(key);
+        if (cached != null) {
+            return (Boolean) cached;
+        }
+        long loadVersion = version();
+        boolean approved = contract.isApprovedForAll(owner, operator);
+        store(key, approved, loadVersion);
+        return approved;
+    }
+
+    @Override
+    public int totalSupply() {
+        Key key = new Key(Kind.TOTAL_SUPPLY, null, null);
+        Object cached = lookup(key);
+        if (cached != null) {
+            return (Integer) cached;
+        }
+        long loadVersion = version();
+        int totalSupply = contract.totalSupply();
+        store(key, totalSupply, loadVersion);
+        return totalSupply;
+    }
+
+    @Override
+    public BigInteger tokenByIndex(int index) {
+        Key key = new Key(Kind.TOKEN_BY_INDEX, index, null);
+        Object cached = lookup(key);
+        if (cached != null) {
+            return cached == NULL ? null : (BigInteger) cached;
+        }
+        long loadVersion = version();
+        BigInteger tokenId = contract.tokenByIndex(index);
+        store(key, tokenId, loadVersion);
+        return tokenId;
+    }
+
+    /**
+     * Cached as one entry per owner, a transfer of any of the owner's tokens can reorder them
+     */
+    @Override
+    public BigInteger tokenOfOwnerByIndex(Address owner, int index) {
+        Key key = new Key(Kind.TOKEN_OF_OWNER, owner, null);
+        synchronized (this) {
+            Entry entry = liveEntry(key);
+            Object cached = entry == null ? null : ((Map<?, ?>) entry.value).get(index);
+            if (cached != null) {
+                hits++;
+                return cached == NULL ? null : (BigInteger) cached;
+            }
+            misses++;
+        }
+        long loadVersion = version();
+        BigInteger tokenId = contract.tokenOfOwnerByIndex(owner, index);
+        synchronized (this) {
+            if (loadVersion != version || maxEntries <= 0) {
+                return tokenId;
+            }
+            Entry entry = liveEntry(key);
+            if (entry == null) {
+                entry = new Entry(new HashMap<Integer, Object>(), System.currentTimeMillis() + ttlMillis);
+                entries.put(key, entry);
+            }
+            @SuppressWarnings("unchecked")
+            Map<Integer, Object> tokens = (Map<Integer, Object>) entry.value;
+            tokens.put(index, tokenId == null ? NULL : tokenId);
+        }
+        return tokenId;
+    }
+
+    @Override
+    public void safeTransferFrom(Address from, Address to, BigInteger tokenId, String data) {
+        contract.safeTransferFrom(from, to, tokenId, data);
+    }
+
+    @Override
+    public void safeTransferFrom(Address from, Address to, BigInteger tokenId) {
+        contract.safeTransferFrom(from, to, tokenId);
+    }
+
+    @Override
+    public void transferFrom(Address from, Address to, BigInteger tokenId) {
+        contract.transferFrom(from, to, tokenId);
+    }
+
+    @Override
+    public void approve(Address to, BigInteger tokenId) {
+        contract.approve(to, tokenId);
+    }
+
+    @Override
+    public void setApprovalForAll(Address operator, boolean approved) {
+        contract.setApprovalForAll(operator, approved);
+    }
+
+    @Override
+    public void onEvent(Address contractAddress, Event event) {
+        if (!this.contractAddress.equals(contractAddress.toString())) {
+            return;
+        }
+        if (event instanceof IIRC721.Transfer) {
+            IIRC721.Transfer transfer = (IIRC721.Transfer) event;
+            onTransfer(transfer.getFrom(), transfer.getTo(), transfer.getTokenId());
+        } else if (event instanceof IIRC721.Approval) {
+            invalidate(new Key(Kind.APPROVED, ((IIRC721.Approval) event).getTokenId(), null));
+        } else if (event instanceof IIRC721.ApprovalForAll) {
+            IIRC721.ApprovalForAll approval = (IIRC721.ApprovalForAll) event;
+            invalidate(new Key(Kind.OPERATOR, approval.getOwner(), approval.getOperator()));
+        }
+    }
+
+    /**
+     * Apply an event read from the node event log
+     */
+    public void onEvent(EventRecord event) {
+        if (!contractAddress.equals(event.getContract())) {
+            return;
+        }
+        switch (event.getType()) {
+            case Transfer:
+                onTransfer(address(event.getFirst()), address(event.getSecond()), new BigInteger(event.getThird()));
+                break;
+            case Approval:
+                invalidate(new Key(Kind.APPROVED, new BigInteger(event.getThird()), null));
+                break;
+            case ApprovalForAll:
+                invalidate(new Key(Kind.OPERATOR, address(event.getFirst()), address(event.getSecond())));
+                break;
+            default:
+                break;
+        }
+    }
+
+    public synchronized void clear() {
+        version++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return Entries dropped to stay within `maxEntries`
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return Entries dropped because they outlived `ttlMillis`
+     */
+    public synchronized long expirations() {
+        return expirations;
+    }
+
+    /**
+     * @return Cached entries dropped by events
+     */
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+
+    private synchronized void onTransfer(Address from, Address to, BigInteger tokenId) {
+        version++;
+        // a transfer also clears the approval of the token
+        invalidate(new Key(Kind.OWNER, tokenId, null));
+        invalidate(new Key(Kind.APPROVED, tokenId, null));
+        if (from != null) {
+            invalidate(new Key(Kind.BALANCE, from, null));
+            invalidate(new Key(Kind.TOKEN_OF_OWNER, from, null));
+        }
+        if (to != null) {
+            invalidate(new Key(Kind.BALANCE, to, null));
+            invalidate(new Key(Kind.TOKEN_OF_OWNER, to, null));
+        }
+        if (from == null || to == null) {
+            // mint and burn change the supply, burn reorders the global enumeration
+            invalidate(new Key(Kind.TOTAL_SUPPLY, null, null));
+            Iterator<Key> keys = entries.keySet().iterator();
+            while (keys.hasNext()) {
+                if (keys.next().kind == Kind.TOKEN_BY_INDEX) {
+                    keys.remove();
+                    invalidations++;
+                }
+            }
+        }
+    }
+
+    private synchronized void invalidate(Key key) {
+        version++;
+        if (entries.remove(key) != null) {
+            invalidations++;
+        }
+    }
+
+    private synchronized long version() {
+        return version;
+    }
+
+    private synchronized Object lookup(Key key) {
+        Entry entry = liveEntry(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value;
+    }
+
+    private Entry liveEntry(Key key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            expirations++;
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void store(Key key, Object value, long loadVersion) {
+        if (loadVersion == version && maxEntries > 0) {
+            entries.put(key, new Entry(value == null ? NULL : value, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    private static Address address(String value) {
+        return value == null ? null : new Address(value);
+    }
+
+    private enum Kind {
+        OWNER, APPROVED, BALANCE, OPERATOR, TOTAL_SUPPLY, TOKEN_BY_INDEX, TOKEN_OF_OWNER
+    }
+
+    private static final class Key {
+        private final Kind kind;
+        private final Object first;
+        private final Object second;
+
+        private Key(Kind kind, Object first, Object second) {
+            this.kind = kind;
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return kind == key.kind
+                    && (first == null ? key.first == null : first.equals(key.first))
+                    && (second == null ? key.second == null : second.equals(key.second));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = kind.hashCode();
+            result = 31 * result + (first == null ? 0 : first.hashCode());
+            result = 31 * result + (second == null ? 0 : second.hashCode());
+            return result;
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expiresAt;
+
+        private Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.indexer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the node event log from a byte offset. A trailing line without its newline is still
+ * being written by the node and is left for the next read.
+ */
+final class EventLogReader implements Closeable {
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+    private long position;
+    private long lineStart;
+
+    EventLogReader(File eventLog, long offset) throws IOException {
+        this.channel = new RandomAccessFile(eventLog, "r").getChannel();
+        this.position = offset;
+        this.lineStart = offset;
+        buffer.limit(0);
+    }
+
+    /**
+     * @return The next complete event, null at the end of the log
+     */
+    EventRecord next() throws IOException {
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                buffer.flip();
+                if (read <= 0) {
+                    return null;
+                }
+            }
+            while (buffer.hasRemaining()) {
+                byte b = buffer.get();
+                position++;
+                if (b == '\n') {
+                    String text = new String(line.toByteArray(), StandardCharsets.UTF_8);
+                    line.reset();
+                    long offset = lineStart;
+                    lineStart = position;
+                    if (!text.isEmpty()) {
+                        return EventRecord.parse(offset, text);
+                    }
+                } else {
+                    line.write(b);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Offset just after the last complete event returned
+     */
+    long committedOffset() {
+        return lineStart;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
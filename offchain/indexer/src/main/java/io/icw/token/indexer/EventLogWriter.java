@@ -0,0 +1,85 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.indexer;
+
+import io.icw.contract.sdk.Address;
+import io.icw.contract.sdk.Event;
+import io.icw.token.emulator.Emulator;
+import io.icw.token.emulator.EventListener;
+import io.icw.token.interfaces.IIRC721;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Local stand-in for the node side: appends the IRC721 events emitted in the emulator to an event log file.
+ */
+public class EventLogWriter implements EventListener, Closeable {
+
+    private final Writer writer;
+
+    public EventLogWriter(File eventLog) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(eventLog, true), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public synchronized void onEvent(Address contractAddress, Event event) {
+        String line;
+        long block = Emulator.blockNumber();
+        if (event instanceof IIRC721.Transfer) {
+            IIRC721.Transfer transfer = (IIRC721.Transfer) event;
+            line = EventRecord.format(block, contractAddress.toString(), EventType.Transfer, transfer.getFrom(), transfer.getTo(), transfer.getTokenId());
+        } else if (event instanceof IIRC721.Approval) {
+            IIRC721.Approval approval = (IIRC721.Approval) event;
+            line = EventRecord.format(block, contractAddress.toString(), EventType.Approval, approval.getOwner(), approval.getApproved(), approval.getTokenId());
+        } else if (event instanceof IIRC721.ApprovalForAll) {
+            IIRC721.ApprovalForAll approval = (IIRC721.ApprovalForAll) event;
+            line = EventRecord.format(block, contractAddress.toString(), EventType.ApprovalForAll, approval.getOwner(), approval.getOperator(), approval.getApproved());
+        } else {
+            return;
+        }
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new IndexException("can not append event", e);
+        }
+    }
+
+    public synchronized void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.indexer;
+
+/**
+ * One line of the node event log: `block, contract, type, first, second, third` separated by tabs,
+ * `-` standing for a null field.
+ */
+public final class EventRecord {
+
+    static final String NULL = "-";
+
+    private final long offset;
+    private final long block;
+    private final String contract;
+    private final EventType type;
+    private final String first;
+    private final String second;
+    private final String third;
+
+    EventRecord(long offset, long block, String contract, EventType type, String first, String second, String third) {
+        this.offset = offset;
+        this.block = block;
+        this.contract = contract;
+        this.type = type;
+        this.first = first;
+        this.second = second;
+        this.third = third;
+    }
+
+    static EventRecord parse(long offset, String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 6) {
+            throw new IndexException("malformed event at offset " + offset + ": " + line);
+        }
+        return new EventRecord(offset, Long.parseLong(fields[0]), fields[1], EventType.valueOf(fields[2]),
+                nullable(fields[3]), nullable(fields[4]), nullable(fields[5]));
+    }
+
+    static String format(long block, String contract, EventType type, Object first, Object second, Object third) {
+        return block + "\t" + contract + "\t" + type + "\t" + text(first) + "\t" + text(second) + "\t" + text(third);
+    }
+
+    /**
+     * @return Position of the event in the log, events are ordered by it
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getBlock() {
+        return block;
+    }
+
+    public String getContract() {
+        return contract;
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public String getFirst() {
+        return first;
+    }
+
+    public String getSecond() {
+        return second;
+    }
+
+    public String getThird() {
+        return third;
+    }
+
+    private static String nullable(String field) {
+        return NULL.equals(field) ? null : field;
+    }
+
+    private static String text(Object value) {
+        return value == null ? NULL : value.toString();
+    }
+}
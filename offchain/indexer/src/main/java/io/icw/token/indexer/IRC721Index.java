@@ -0,0 +1,527 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.indexer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queryable IRC721 state rebuilt from events, kept in memory-mapped segment files:
+ * <ul>
+ *     <li>owner -> tokens: a doubly linked list per owner threaded through the token records</li>
+ *     <li>token -> ownership history and address -> transfers: transfer records chained per token and per address</li>
+ *     <li>token approvals and operator approvals, the operator records of an owner are chained from the owner record</li>
+ * </ul>
+ * Reopening the directory restores the index and the offset of the last applied event without any replay.
+ * <p>The record writes of a batch of events stay on the heap until {@link #commit}, which writes them to a
+ * journal, forces it, and only then writes them into the segments. A crash in the middle of a batch leaves
+ * the segments as of the last commit, and a crash after the journal was forced is completed from it on the
+ * next open. The dictionaries append in place and are cut back to their committed sizes.</p>
+ */
+public class IRC721Index implements Closeable {
+
+    private static final int MAGIC = 0x49524337;
+    private static final int VERSION = 2;
+    private static final int NONE = -1;
+    private static final int SEGMENT_SHIFT = 24;
+
+    private static final long META_EVENT_OFFSET = 8;
+    private static final long META_TRANSFER_COUNT = 16;
+    private static final long META_APPROVAL_COUNT = 24;
+    private static final long META_TOKEN_IDS = 28;
+    private static final long META_ADDRESS_IDS = 32;
+
+    /**
+     * 1 once the journal holds a complete batch that may not be in the segments yet
+     */
+    private static final long JOURNAL_COMPLETE = 0;
+    private static final long JOURNAL_ENTRIES = 8;
+    private static final int JOURNAL_HEADER = 16;
+    /**
+     * file(int), pad(int), key(long), value(long)
+     */
+    private static final int JOURNAL_ENTRY_SIZE = 24;
+
+    private static final int TOKEN_SIZE = 32;
+    private static final int TOKEN_OWNER = 0;
+    private static final int TOKEN_PREV_OF_OWNER = 4;
+    private static final int TOKEN_NEXT_OF_OWNER = 8;
+    private static final int TOKEN_APPROVED = 12;
+    private static final int TOKEN_LAST_TRANSFER = 16;
+
+    private static final int ADDRESS_SIZE = 24;
+    private static final int ADDRESS_FIRST_TOKEN = 0;
+    private static final int ADDRESS_BALANCE = 4;
+    private static final int ADDRESS_LAST_TRANSFER = 8;
+    private static final int ADDRESS_FIRST_APPROVAL = 16;
+    private static final int ADDRESS_LAST_APPROVAL = 20;
+
+    private static final int TRANSFER_SIZE = 64;
+    private static final int TRANSFER_TOKEN = 0;
+    private static final int TRANSFER_FROM = 4;
+    private static final int TRANSFER_TO = 8;
+    private static final int TRANSFER_BLOCK = 16;
+    private static final int TRANSFER_PREV_OF_TOKEN = 24;
+    private static final int TRANSFER_PREV_OF_FROM = 32;
+    private static final int TRANSFER_PREV_OF_TO = 40;
+
+    private static final int APPROVAL_SIZE = 16;
+    private static final int APPROVAL_OWNER = 0;
+    private static final int APPROVAL_OPERATOR = 4;
+    private static final int APPROVAL_APPROVED = 8;
+    private static final int APPROVAL_NEXT_OF_OWNER = 12;
+
+    private final SegmentedFile meta;
+    private final SegmentedFile tokens;
+    private final SegmentedFile addresses;
+    private final SegmentedFile transfers;
+    private final SegmentedFile approvals;
+    /**
+     * The files written through the journal, a journal entry names its file by the index in this array
+     */
+    private final SegmentedFile[] journaled;
+    private final SegmentedFile journal;
+    private final MappedDictionary tokenIds;
+    private final MappedDictionary addressIds;
+    private long transferCount;
+    private int approvalCount;
+
+    public IRC721Index(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("can not create " + dir);
+        }
+        meta = new SegmentedFile(dir, "meta", 12);
+        if (meta.getInt(0) == 0) {
+            meta.putInt(0, MAGIC);
+            meta.putInt(4, VERSION);
+        } else if (meta.getInt(0) != MAGIC || meta.getInt(4) != VERSION) {
+            throw new IndexException("unsupported index in " + dir);
+        }
+        tokens = new SegmentedFile(dir, "tokens", SEGMENT_SHIFT);
+        addresses = new SegmentedFile(dir, "addresses", SEGMENT_SHIFT);
+        transfers = new SegmentedFile(dir, "transfers", SEGMENT_SHIFT);
+        approvals = new SegmentedFile(dir, "approvals", SEGMENT_SHIFT);
+        tokenIds = new MappedDictionary(dir, "tokenIds");
+        addressIds = new MappedDictionary(dir, "addressIds");
+        journaled = new SegmentedFile[]{meta, tokens, addresses, transfers, approvals};
+        journal = new SegmentedFile(dir, "journal", SEGMENT_SHIFT);
+        if (journal.getInt(JOURNAL_COMPLETE) == 1) {
+            writeJournal();
+        }
+        tokenIds.truncate(meta.getInt(META_TOKEN_IDS));
+        addressIds.truncate(meta.getInt(META_ADDRESS_IDS));
+        transferCount = meta.getLong(META_TRANSFER_COUNT);
+        approvalCount = meta.getInt(META_APPROVAL_COUNT);
+    }
+
+    /**
+     * @return Offset in the event log of the next event to apply
+     */
+    public long eventOffset() {
+        return meta.getLong(META_EVENT_OFFSET);
+    }
+
+    // ---------------------------------------------------------------- queries
+
+    public String ownerOf(BigInteger tokenId) {
+        int token = tokenIds.idOf(tokenId.toString());
+        if (token == NONE) {
+            return null;
+        }
+        return addressOrNull(tokens.getInt(tokenPosition(token) + TOKEN_OWNER));
+    }
+
+    public String getApproved(BigInteger tokenId) {
+        int token = tokenIds.idOf(tokenId.toString());
+        if (token == NONE) {
+            return null;
+        }
+        return addressOrNull(tokens.getInt(tokenPosition(token) + TOKEN_APPROVED));
+    }
+
+    public int balanceOf(String owner) {
+        int address = addressIds.idOf(owner);
+        if (address == NONE) {
+            return 0;
+        }
+        return addresses.getInt(addressPosition(address) + ADDRESS_BALANCE);
+    }
+
+    public List<BigInteger> tokensOfOwner(String owner) {
+        int address = addressIds.idOf(owner);
+        if (address == NONE) {
+            return Collections.emptyList();
+        }
+        long position = addressPosition(address);
+        List<BigInteger> result = new ArrayList<BigInteger>(addresses.getInt(position + ADDRESS_BALANCE));
+        for (int token = addresses.getInt(position + ADDRESS_FIRST_TOKEN); token != NONE;
+             token = tokens.getInt(tokenPosition(token) + TOKEN_NEXT_OF_OWNER)) {
+            result.add(new BigInteger(tokenIds.valueOf(token)));
+        }
+        return result;
+    }
+
+    /**
+     * @return The owner of `tokenId` once every event up to `block` was applied, null if it did not exist then
+     */
+    public String ownerAt(BigInteger tokenId, long block) {
+        int token = tokenIds.idOf(tokenId.toString());
+        if (token == NONE) {
+            return null;
+        }
+        for (long record = tokens.getLong(tokenPosition(token) + TOKEN_LAST_TRANSFER); record != NONE;
+             record = transfers.getLong(transferPosition(record) + TRANSFER_PREV_OF_TOKEN)) {
+            if (transfers.getLong(transferPosition(record) + TRANSFER_BLOCK) <= block) {
+                return addressOrNull(transfers.getInt(transferPosition(record) + TRANSFER_TO));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The transfers of `tokenId`, most recent first
+     */
+    public List<TransferRecord> historyOf(BigInteger tokenId, int limit) {
+        int token = tokenIds.idOf(tokenId.toString());
+        List<TransferRecord> result = new ArrayList<TransferRecord>();
+        if (token == NONE) {
+            return result;
+        }
+        for (long record = tokens.getLong(tokenPosition(token) + TOKEN_LAST_TRANSFER); record != NONE && result.size() < limit;
+             record = transfers.getLong(transferPosition(record) + TRANSFER_PREV_OF_TOKEN)) {
+            result.add(transferRecord(record));
+        }
+        return result;
+    }
+
+    /**
+     * @return The transfers from or to `address`, most recent first
+     */
+    public List<TransferRecord> transfersOf(String address, int limit) {
+        int id = addressIds.idOf(address);
+        List<TransferRecord> result = new ArrayList<TransferRecord>();
+        if (id == NONE) {
+            return result;
+        }
+        long record = addresses.getLong(addressPosition(id) + ADDRESS_LAST_TRANSFER);
+        while (record != NONE && result.size() < limit) {
+            long position = transferPosition(record);
+            result.add(transferRecord(record));
+            record = transfers.getInt(position + TRANSFER_FROM) == id
+                    ? transfers.getLong(position + TRANSFER_PREV_OF_FROM)
+                    : transfers.getLong(position + TRANSFER_PREV_OF_TO);
+        }
+        return result;
+    }
+
+    public boolean isApprovedForAll(String owner, String operator) {
+        int ownerId = addressIds.idOf(owner);
+        int operatorId = addressIds.idOf(operator);
+        if (ownerId == NONE || operatorId == NONE) {
+            return false;
+        }
+        int record = approvalRecord(ownerId, operatorId);
+        return record != NONE && approvals.getInt(approvalPosition(record) + APPROVAL_APPROVED) == 1;
+    }
+
+    public List<String> operatorsOf(String owner) {
+        int ownerId = addressIds.idOf(owner);
+        if (ownerId == NONE) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<String>();
+        for (int record = addresses.getInt(addressPosition(ownerId) + ADDRESS_FIRST_APPROVAL); record != NONE;
+             record = approvals.getInt(approvalPosition(record) + APPROVAL_NEXT_OF_OWNER)) {
+            long position = approvalPosition(record);
+            if (approvals.getInt(position + APPROVAL_APPROVED) == 1) {
+                result.add(addressIds.valueOf(approvals.getInt(position + APPROVAL_OPERATOR)));
+            }
+        }
+        return result;
+    }
+
+    // ---------------------------------------------------------------- updates
+
+    void beginBatch() {
+        for (SegmentedFile file : journaled) {
+            file.beginBatch();
+        }
+    }
+
+    void apply(EventRecord event) {
+        switch (event.getType()) {
+            case Transfer:
+                applyTransfer(event.getFirst(), event.getSecond(), event.getThird(), event.getBlock());
+                break;
+            case Approval:
+                applyApproval(event.getSecond(), event.getThird());
+                break;
+            case ApprovalForAll:
+                applyApprovalForAll(event.getFirst(), event.getSecond(), Boolean.parseBoolean(event.getThird()));
+                break;
+            default:
+                throw new IndexException("unknown event " + event.getType());
+        }
+    }
+
+    /**
+     * Make the batch durable, the index then restarts from `eventOffset`
+     */
+    void commit(long eventOffset) {
+        meta.putLong(META_TRANSFER_COUNT, transferCount);
+        meta.putInt(META_APPROVAL_COUNT, approvalCount);
+        meta.putInt(META_TOKEN_IDS, tokenIds.size());
+        meta.putInt(META_ADDRESS_IDS, addressIds.size());
+        meta.putLong(META_EVENT_OFFSET, eventOffset);
+        tokenIds.force();
+        addressIds.force();
+        long entries = 0;
+        for (int file = 0; file < journaled.length; file++) {
+            for (Map.Entry<Long, Long> write : journaled[file].pending().entrySet()) {
+                long position = JOURNAL_HEADER + entries++ * JOURNAL_ENTRY_SIZE;
+                journal.putInt(position, file);
+                journal.putLong(position + 8, write.getKey());
+                journal.putLong(position + 16, write.getValue());
+            }
+        }
+        journal.putLong(JOURNAL_ENTRIES, entries);
+        journal.force();
+        journal.putInt(JOURNAL_COMPLETE, 1);
+        journal.force();
+        writeJournal();
+        for (SegmentedFile file : journaled) {
+            file.endBatch();
+        }
+    }
+
+    /**
+     * Write the complete batch of the journal into the segments, again if a crash interrupted it
+     */
+    private void writeJournal() {
+        long entries = journal.getLong(JOURNAL_ENTRIES);
+        for (long entry = 0; entry < entries; entry++) {
+            long position = JOURNAL_HEADER + entry * JOURNAL_ENTRY_SIZE;
+            journaled[journal.getInt(position)].write(journal.getLong(position + 8), journal.getLong(position + 16));
+        }
+        for (SegmentedFile file : journaled) {
+            file.force();
+        }
+        journal.putInt(JOURNAL_COMPLETE, 0);
+        journal.force();
+    }
+
+    private void applyTransfer(String from, String to, String tokenId, long block) {
+        int token = tokenId(tokenId);
+        int fromId = from == null ? NONE : addressId(from);
+        int toId = to == null ? NONE : addressId(to);
+        long tokenPosition = tokenPosition(token);
+
+        long record = transferCount++;
+        long position = transferPosition(record);
+        transfers.putInt(position + TRANSFER_TOKEN, token);
+        transfers.putInt(position + TRANSFER_FROM, fromId);
+        transfers.putInt(position + TRANSFER_TO, toId);
+        transfers.putLong(position + TRANSFER_BLOCK, block);
+        transfers.putLong(position + TRANSFER_PREV_OF_TOKEN, tokens.getLong(tokenPosition + TOKEN_LAST_TRANSFER));
+        tokens.putLong(tokenPosition + TOKEN_LAST_TRANSFER, record);
+        transfers.putLong(position + TRANSFER_PREV_OF_FROM, fromId == NONE ? NONE : chainTransfer(fromId, record));
+        transfers.putLong(position + TRANSFER_PREV_OF_TO, toId == NONE ? NONE : (toId == fromId
+                ? transfers.getLong(position + TRANSFER_PREV_OF_FROM) : chainTransfer(toId, record)));
+
+        int owner = tokens.getInt(tokenPosition + TOKEN_OWNER);
+        if (owner != NONE) {
+            unlinkToken(owner, token);
+        }
+        if (toId != NONE) {
+            linkToken(toId, token);
+        }
+        tokens.putInt(tokenPosition + TOKEN_OWNER, toId);
+        tokens.putInt(tokenPosition + TOKEN_APPROVED, NONE);
+    }
+
+    private void applyApproval(String approved, String tokenId) {
+        int token = tokenId(tokenId);
+        tokens.putInt(tokenPosition(token) + TOKEN_APPROVED, approved == null ? NONE : addressId(approved));
+    }
+
+    private void applyApprovalForAll(String owner, String operator, boolean approved) {
+        int ownerId = addressId(owner);
+        int operatorId = addressId(operator);
+        int record = approvalRecord(ownerId, operatorId);
+        if (record == NONE) {
+            if (!approved) {
+                return;
+            }
+            record = approvalCount++;
+            long position = approvalPosition(record);
+            approvals.putInt(position + APPROVAL_OWNER, ownerId);
+            approvals.putInt(position + APPROVAL_OPERATOR, operatorId);
+            approvals.putInt(position + APPROVAL_NEXT_OF_OWNER, NONE);
+            chainApproval(ownerId, record);
+        }
+        approvals.putInt(approvalPosition(record) + APPROVAL_APPROVED, approved ? 1 : 0);
+    }
+
+    /**
+     * @return The approval record of (owner, operator), NONE if there is none. An owner grants few operators,
+     *         so its chain is short.
+     */
+    private int approvalRecord(int owner, int operator) {
+        for (int record = addresses.getInt(addressPosition(owner) + ADDRESS_FIRST_APPROVAL); record != NONE;
+             record = approvals.getInt(approvalPosition(record) + APPROVAL_NEXT_OF_OWNER)) {
+            if (approvals.getInt(approvalPosition(record) + APPROVAL_OPERATOR) == operator) {
+                return record;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Append `record` to the approval chain of `owner`, operators are listed in grant order
+     */
+    private void chainApproval(int owner, int record) {
+        long ownerPosition = addressPosition(owner);
+        int last = addresses.getInt(ownerPosition + ADDRESS_LAST_APPROVAL);
+        if (last == NONE) {
+            addresses.putInt(ownerPosition + ADDRESS_FIRST_APPROVAL, record);
+        } else {
+            approvals.putInt(approvalPosition(last) + APPROVAL_NEXT_OF_OWNER, record);
+        }
+        addresses.putInt(ownerPosition + ADDRESS_LAST_APPROVAL, record);
+    }
+
+    /**
+     * @return The previous last transfer of `address`
+     */
+    private long chainTransfer(int address, long record) {
+        long position = addressPosition(address) + ADDRESS_LAST_TRANSFER;
+        long previous = addresses.getLong(position);
+        addresses.putLong(position, record);
+        return previous;
+    }
+
+    private void linkToken(int owner, int token) {
+        long ownerPosition = addressPosition(owner);
+        long tokenPosition = tokenPosition(token);
+        int first = addresses.getInt(ownerPosition + ADDRESS_FIRST_TOKEN);
+        tokens.putInt(tokenPosition + TOKEN_PREV_OF_OWNER, NONE);
+        tokens.putInt(tokenPosition + TOKEN_NEXT_OF_OWNER, first);
+        if (first != NONE) {
+            tokens.putInt(tokenPosition(first) + TOKEN_PREV_OF_OWNER, token);
+        }
+        addresses.putInt(ownerPosition + ADDRESS_FIRST_TOKEN, token);
+        addresses.putInt(ownerPosition + ADDRESS_BALANCE, addresses.getInt(ownerPosition + ADDRESS_BALANCE) + 1);
+    }
+
+    private void unlinkToken(int owner, int token) {
+        long ownerPosition = addressPosition(owner);
+        long tokenPosition = tokenPosition(token);
+        int prev = tokens.getInt(tokenPosition + TOKEN_PREV_OF_OWNER);
+        int next = tokens.getInt(tokenPosition + TOKEN_NEXT_OF_OWNER);
+        if (prev == NONE) {
+            addresses.putInt(ownerPosition + ADDRESS_FIRST_TOKEN, next);
+        } else {
+            tokens.putInt(tokenPosition(prev) + TOKEN_NEXT_OF_OWNER, next);
+        }
+        if (next != NONE) {
+            tokens.putInt(tokenPosition(next) + TOKEN_PREV_OF_OWNER, prev);
+        }
+        addresses.putInt(ownerPosition + ADDRESS_BALANCE, addresses.getInt(ownerPosition + ADDRESS_BALANCE) - 1);
+    }
+
+    private int tokenId(String tokenId) {
+        int size = tokenIds.size();
+        int token = tokenIds.idOrAdd(tokenId);
+        if (token == size) {
+            long position = tokenPosition(token);
+            tokens.putInt(position + TOKEN_OWNER, NONE);
+            tokens.putInt(position + TOKEN_PREV_OF_OWNER, NONE);
+            tokens.putInt(position + TOKEN_NEXT_OF_OWNER, NONE);
+            tokens.putInt(position + TOKEN_APPROVED, NONE);
+            tokens.putLong(position + TOKEN_LAST_TRANSFER, NONE);
+        }
+        return token;
+    }
+
+    private int addressId(String address) {
+        int size = addressIds.size();
+        int id = addressIds.idOrAdd(address);
+        if (id == size) {
+            long position = addressPosition(id);
+            addresses.putInt(position + ADDRESS_FIRST_TOKEN, NONE);
+            addresses.putInt(position + ADDRESS_BALANCE, 0);
+            addresses.putLong(position + ADDRESS_LAST_TRANSFER, NONE);
+            addresses.putInt(position + ADDRESS_FIRST_APPROVAL, NONE);
+            addresses.putInt(position + ADDRESS_LAST_APPROVAL, NONE);
+        }
+        return id;
+    }
+
+    private TransferRecord transferRecord(long record) {
+        long position = transferPosition(record);
+        return new TransferRecord(new BigInteger(tokenIds.valueOf(transfers.getInt(position + TRANSFER_TOKEN))),
+                addressOrNull(transfers.getInt(position + TRANSFER_FROM)),
+                addressOrNull(transfers.getInt(position + TRANSFER_TO)),
+                transfers.getLong(position + TRANSFER_BLOCK));
+    }
+
+    private String addressOrNull(int id) {
+        return id == NONE ? null : addressIds.valueOf(id);
+    }
+
+    private static long approvalPosition(int record) {
+        return (long) record * APPROVAL_SIZE;
+    }
+
+    private static long tokenPosition(int token) {
+        return (long) token * TOKEN_SIZE;
+    }
+
+    private static long addressPosition(int address) {
+        return (long) address * ADDRESS_SIZE;
+    }
+
+    private static long transferPosition(long record) {
+        return record * TRANSFER_SIZE;
+    }
+
+    @Override
+    public void close() throws IOException {
+        tokens.close();
+        addresses.close();
+        transfers.close();
+        approvals.close();
+        journal.close();
+        tokenIds.close();
+        addressIds.close();
+        meta.close();
+    }
+}
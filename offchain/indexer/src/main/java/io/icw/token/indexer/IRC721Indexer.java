@@ -0,0 +1,101 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.indexer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Consumes the node event log of one IRC721 contract into an {@link IRC721Index}.
+ * <pre>
+ *     IRC721Indexer indexer = new IRC721Indexer(new File("index"), new File("events.log"), contractAddress);
+ *     indexer.catchUp();
+ *     indexer.index().tokensOfOwner(owner);
+ * </pre>
+ */
+public class IRC721Indexer implements Closeable {
+
+    private static final int COMMIT_INTERVAL = 10000;
+
+    private final File eventLog;
+    private final String contract;
+    private final IRC721Index index;
+
+    /**
+     * Opens the index as of its last commit, the events of a batch interrupted by a crash are applied again by
+     * the next {@link #catchUp()}
+     */
+    public IRC721Indexer(File indexDir, File eventLog, String contract) throws IOException {
+        this.eventLog = eventLog;
+        this.contract = contract;
+        this.index = new IRC721Index(indexDir);
+    }
+
+    public IRC721Index index() {
+        return index;
+    }
+
+    /**
+     * Apply every complete event appended to the log since the last call
+     * @return The count of applied events of the indexed contract
+     */
+    public int catchUp() throws IOException {
+        if (!eventLog.exists()) {
+            return 0;
+        }
+        int applied = 0;
+        int uncommitted = 0;
+        EventLogReader reader = new EventLogReader(eventLog, index.eventOffset());
+        try {
+            EventRecord event;
+            while ((event = reader.next()) != null) {
+                if (!contract.equals(event.getContract())) {
+                    continue;
+                }
+                if (uncommitted == 0) {
+                    index.beginBatch();
+                }
+                index.apply(event);
+                applied++;
+                if (++uncommitted == COMMIT_INTERVAL) {
+                    index.commit(reader.committedOffset());
+                    uncommitted = 0;
+                }
+            }
+            if (uncommitted > 0 || reader.committedOffset() != index.eventOffset()) {
+                index.commit(reader.committedOffset());
+            }
+        } finally {
+            reader.close();
+        }
+        return applied;
+    }
+
+    @Override
+    public void close() throws IOException {
+        index.close();
+    }
+}
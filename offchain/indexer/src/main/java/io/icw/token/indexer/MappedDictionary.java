@@ -0,0 +1,224 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.indexer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Assigns dense int ids to strings (token ids, addresses). The strings are appended to memory-mapped
+ * segments and only read back from there. The heap keeps the offset of every entry and an open addressing
+ * table of ids, both rebuilt from the segments when the dictionary is opened.
+ */
+final class MappedDictionary implements Closeable {
+
+    /**
+     * count(int), pad(int), end of the last entry(long)
+     */
+    private static final int HEADER = 16;
+    private static final int EMPTY = -1;
+
+    private final SegmentedFile entries;
+    /**
+     * id -- position of the entry `[length(int)][UTF-8 bytes]`
+     */
+    private long[] offsets = new long[16];
+    /**
+     * Open addressing on the hash of the UTF-8 bytes, slots hold ids
+     */
+    private int[] table = emptyTable(32);
+    private int size;
+    private long end;
+
+    MappedDictionary(File dir, String name) throws IOException {
+        entries = new SegmentedFile(dir, name, 24);
+        int count = entries.getInt(0);
+        end = count == 0 ? HEADER : entries.getLong(8);
+        long position = HEADER;
+        for (int id = 0; id < count; id++) {
+            int length = entries.getInt(position);
+            append(position, hashAt(position + 4, length));
+            position = align(position + 4 + length);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return The id of `value`, -1 if it has none
+     */
+    int idOf(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return table[slotOf(bytes, hash(bytes))];
+    }
+
+    int idOrAdd(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes);
+        int id = table[slotOf(bytes, hash)];
+        if (id != EMPTY) {
+            return id;
+        }
+        long position = end;
+        entries.putInt(position, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            entries.put(position + 4 + i, bytes[i]);
+        }
+        end = align(position + 4 + bytes.length);
+        // the count is written last, an entry interrupted by a crash is simply overwritten on the next start
+        entries.putLong(8, end);
+        entries.putInt(0, size + 1);
+        return append(position, hash);
+    }
+
+    /**
+     * Drop the entries from id `size` on, the ones added by a batch that was not committed
+     */
+    void truncate(int size) {
+        if (size >= this.size) {
+            return;
+        }
+        end = offsets[size];
+        entries.putLong(8, end);
+        entries.putInt(0, size);
+        this.size = size;
+        rehash(table.length);
+    }
+
+    String valueOf(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("no entry " + id);
+        }
+        long position = offsets[id];
+        byte[] bytes = new byte[entries.getInt(position)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = entries.get(position + 4 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    void force() {
+        entries.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        entries.close();
+    }
+
+    private int append(long position, int hash) {
+        int id = size++;
+        if (id == offsets.length) {
+            offsets = Arrays.copyOf(offsets, id * 2);
+        }
+        offsets[id] = position;
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            insert(table, id, hash);
+        }
+        return id;
+    }
+
+    /**
+     * @return The slot holding the id of `bytes`, or the empty slot ending its probe sequence
+     */
+    private int slotOf(byte[] bytes, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != EMPTY && !entryEquals(offsets[table[slot]], bytes)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean entryEquals(long position, byte[] bytes) {
+        if (entries.getInt(position) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (entries.get(position + 4 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash(int capacity) {
+        int[] rehashed = emptyTable(capacity);
+        for (int id = 0; id < size; id++) {
+            long position = offsets[id];
+            insert(rehashed, id, hashAt(position + 4, entries.getInt(position)));
+        }
+        table = rehashed;
+    }
+
+    private static void insert(int[] table, int id, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id;
+    }
+
+    private int hashAt(long position, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ entries.get(position + i)) * 0x01000193;
+        }
+        return spread(hash);
+    }
+
+    /**
+     * FNV-1a, the same as {@link #hashAt} over the mapped bytes
+     */
+    private static int hash(byte[] bytes) {
+        int hash = 0x811C9DC5;
+        for (byte b : bytes) {
+            hash = (hash ^ b) * 0x01000193;
+        }
+        return spread(hash);
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int[] emptyTable(int capacity) {
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+
+    private static long align(long position) {
+        return (position + 3) & ~3L;
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.indexer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A growable byte space made of fixed-size memory-mapped segment files `name.0`, `name.1`, ...
+ * <p>Segments are never remapped, a write past the last segment maps a new one. Callers keep
+ * ints and longs aligned so that they never straddle two segments.</p>
+ * <p>Between {@link #beginBatch()} and {@link #endBatch()} the int and long writes are kept on the heap and
+ * read back from there, the segments only change once the batch is written out with {@link #write}.</p>
+ */
+final class SegmentedFile implements Closeable {
+
+    private final File dir;
+    private final String name;
+    private final int segmentShift;
+    private final int segmentMask;
+    private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+    private final List<FileChannel> channels = new ArrayList<FileChannel>();
+    /**
+     * Writes of the open batch, keyed by {@link #key}
+     */
+    private final Map<Long, Long> pending = new HashMap<Long, Long>();
+    private boolean batch;
+
+    SegmentedFile(File dir, String name, int segmentShift) throws IOException {
+        this.dir = dir;
+        this.name = name;
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1 << segmentShift) - 1;
+        while (new File(dir, name + "." + segments.size()).exists()) {
+            mapSegment(segments.size());
+        }
+    }
+
+    int getInt(long position) {
+        if (!pending.isEmpty()) {
+            Long value = pending.get(key(position, false));
+            if (value != null) {
+                return (int) (long) value;
+            }
+        }
+        return segment(position).getInt((int) (position & segmentMask));
+    }
+
+    void putInt(long position, int value) {
+        if (batch) {
+            pending.put(key(position, false), (long) value);
+        } else {
+            segment(position).putInt((int) (position & segmentMask), value);
+        }
+    }
+
+    long getLong(long position) {
+        if (!pending.isEmpty()) {
+            Long value = pending.get(key(position, true));
+            if (value != null) {
+                return value;
+            }
+        }
+        return segment(position).getLong((int) (position & segmentMask));
+    }
+
+    void putLong(long position, long value) {
+        if (batch) {
+            pending.put(key(position, true), value);
+        } else {
+            segment(position).putLong((int) (position & segmentMask), value);
+        }
+    }
+
+    byte get(long position) {
+        return segment(position).get((int) (position & segmentMask));
+    }
+
+    void put(long position, byte value) {
+        segment(position).put((int) (position & segmentMask), value);
+    }
+
+    void beginBatch() {
+        batch = true;
+    }
+
+    /**
+     * Drop the writes of the open batch that were not written out
+     */
+    void endBatch() {
+        batch = false;
+        pending.clear();
+    }
+
+    /**
+     * @return The writes of the open batch as `{key, value}` pairs for {@link #write}
+     */
+    Map<Long, Long> pending() {
+        return pending;
+    }
+
+    /**
+     * Write one int or long of a batch to its segment
+     * @param key Its position and width, see {@link #key}
+     */
+    void write(long key, long value) {
+        long position = key >>> 1;
+        if ((key & 1) == 0) {
+            segment(position).putInt((int) (position & segmentMask), (int) value);
+        } else {
+            segment(position).putLong((int) (position & segmentMask), value);
+        }
+    }
+
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        for (FileChannel channel : channels) {
+            channel.close();
+        }
+        segments.clear();
+        channels.clear();
+    }
+
+    private static long key(long position, boolean isLong) {
+        return position << 1 | (isLong ? 1 : 0);
+    }
+
+    private MappedByteBuffer segment(long position) {
+        int index = (int) (position >>> segmentShift);
+        while (segments.size() <= index) {
+            try {
+                mapSegment(segments.size());
+            } catch (IOException e) {
+                throw new IndexException("can not map segment " + segments.size() + " of " + name, e);
+            }
+        }
+        return segments.get(index);
+    }
+
+    private void mapSegment(int index) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(new File(dir, name + "." + index), "rw");
+        long size = 1L << segmentShift;
+        if (file.length() < size) {
+            file.setLength(size);
+        }
+        FileChannel channel = file.getChannel();
+        channels.add(channel);
+        segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+}
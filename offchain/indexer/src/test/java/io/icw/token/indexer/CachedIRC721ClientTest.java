@@ -0,0 +1,192 @@
+package io.icw.token.indexer;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.IRC721Full;
+import io.icw.token.emulator.Emulator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CachedIRC721ClientTest {
+
+    private static final Address CONTRACT = new Address("token");
+    private static final Address MINTER = new Address("minter");
+    private static final Address ALICE = new Address("alice");
+    private static final Address BOB = new Address("bob");
+    private static final Address CAROL = new Address("carol");
+    private static final long HOUR = 3600000;
+
+    private RacingToken token;
+
+    @Before
+    public void setUp() {
+        Emulator.setContractAddress(CONTRACT);
+        Emulator.setSender(MINTER);
+        Emulator.setBlock(1, 0);
+        token = new RacingToken();
+        token.mintRange(ALICE, BigInteger.ONE, 5);
+    }
+
+    @After
+    public void tearDown() {
+        Emulator.setEventListener(null);
+    }
+
+    @Test
+    public void answersRepeatedViewsFromTheCache() {
+        CachedIRC721Client<RacingToken> client = client(100, HOUR);
+        assertEquals(ALICE, client.ownerOf(BigInteger.ONE));
+        assertEquals(5, client.balanceOf(ALICE));
+        assertNull(client.getApproved(BigInteger.ONE));
+        assertEquals(ALICE, client.ownerOf(BigInteger.ONE));
+        assertEquals(5, client.balanceOf(ALICE));
+        assertNull(client.getApproved(BigInteger.ONE));
+        assertEquals(3, client.misses());
+        assertEquals(3, client.hits());
+        assertEquals(3, client.size());
+        assertEquals(1, token.ownerLoads);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntry() {
+        CachedIRC721Client<RacingToken> client = client(2, HOUR);
+        client.ownerOf(BigInteger.ONE);
+        client.ownerOf(BigInteger.valueOf(2));
+        // touch 1 so 2 is the eldest when 3 is loaded
+        client.ownerOf(BigInteger.ONE);
+        client.ownerOf(BigInteger.valueOf(3));
+        assertEquals(2, client.size());
+        assertEquals(1, client.evictions());
+
+        long misses = client.misses();
+        client.ownerOf(BigInteger.ONE);
+        client.ownerOf(BigInteger.valueOf(3));
+        assertEquals(misses, client.misses());
+        client.ownerOf(BigInteger.valueOf(2));
+        assertEquals(misses + 1, client.misses());
+        assertEquals(2, client.evictions());
+    }
+
+    @Test
+    public void dropsExpiredEntries() {
+        CachedIRC721Client<RacingToken> client = client(100, 0);
+        assertEquals(ALICE, client.ownerOf(BigInteger.ONE));
+        assertEquals(ALICE, client.ownerOf(BigInteger.ONE));
+        assertEquals(2, client.misses());
+        assertEquals(0, client.hits());
+        assertEquals(1, client.expirations());
+        assertEquals(2, token.ownerLoads);
+    }
+
+    @Test
+    public void invalidatesTheEntriesAnEventChanges() {
+        CachedIRC721Client<RacingToken> client = client(100, HOUR);
+        Emulator.setEventListener(client);
+        client.ownerOf(BigInteger.ONE);
+        client.ownerOf(BigInteger.valueOf(2));
+        client.balanceOf(ALICE);
+        client.balanceOf(BOB);
+        client.isApprovedForAll(ALICE, CAROL);
+        client.totalSupply();
+        client.tokenOfOwnerByIndex(ALICE, 0);
+
+        Emulator.setSender(ALICE);
+        token.transferFrom(ALICE, BOB, BigInteger.ONE);
+        assertEquals(BOB, client.ownerOf(BigInteger.ONE));
+        assertEquals(4, client.balanceOf(ALICE));
+        assertEquals(1, client.balanceOf(BOB));
+        assertEquals(BigInteger.valueOf(5), client.tokenOfOwnerByIndex(ALICE, 0));
+        // untouched by the transfer
+        long misses = client.misses();
+        assertEquals(ALICE, client.ownerOf(BigInteger.valueOf(2)));
+        assertEquals(5, client.totalSupply());
+        assertEquals(misses, client.misses());
+
+        token.setApprovalForAll(CAROL, true);
+        assertTrue(client.isApprovedForAll(ALICE, CAROL));
+        Emulator.setSender(MINTER);
+        token.mint(CAROL, BigInteger.TEN);
+        assertEquals(6, client.totalSupply());
+        // owner of 1, both ALICE entries and the BOB balance, the operator, the supply
+        assertEquals(6, client.invalidations());
+    }
+
+    @Test
+    public void appliesEventsOfTheNodeLog() {
+        CachedIRC721Client<RacingToken> client = client(100, HOUR);
+        assertNull(client.getApproved(BigInteger.ONE));
+        assertFalse(client.isApprovedForAll(ALICE, CAROL));
+        Emulator.setSender(ALICE);
+        token.approve(CAROL, BigInteger.ONE);
+        token.setApprovalForAll(CAROL, true);
+        assertNull(client.getApproved(BigInteger.ONE));
+
+        client.onEvent(new EventRecord(0, 1, "other", EventType.Approval, ALICE.toString(), CAROL.toString(), "1"));
+        assertNull(client.getApproved(BigInteger.ONE));
+        client.onEvent(new EventRecord(0, 1, CONTRACT.toString(), EventType.Approval, ALICE.toString(), CAROL.toString(), "1"));
+        client.onEvent(new EventRecord(0, 1, CONTRACT.toString(), EventType.ApprovalForAll, ALICE.toString(), CAROL.toString(), "true"));
+        assertEquals(CAROL, client.getApproved(BigInteger.ONE));
+        assertTrue(client.isApprovedForAll(ALICE, CAROL));
+    }
+
+    @Test
+    public void doesNotCacheAViewLoadedAcrossAnEvent() {
+        final CachedIRC721Client<RacingToken> client = client(100, HOUR);
+        Emulator.setEventListener(client);
+        // the transfer lands after the contract answered but before the client stores the answer
+        token.duringOwnerLoad = new Runnable() {
+            @Override
+            public void run() {
+                Emulator.setSender(ALICE);
+                token.transferFrom(ALICE, BOB, BigInteger.ONE);
+            }
+        };
+        assertEquals(ALICE, client.ownerOf(BigInteger.ONE));
+        assertEquals(0, client.size());
+        assertEquals(BOB, client.ownerOf(BigInteger.ONE));
+        assertEquals(BOB, client.ownerOf(BigInteger.ONE));
+        assertEquals(2, client.misses());
+        assertEquals(1, client.hits());
+
+        client.balanceOf(BOB);
+        client.clear();
+        assertEquals(0, client.size());
+        assertEquals(1, client.balanceOf(BOB));
+        assertEquals(1, client.size());
+    }
+
+    private CachedIRC721Client<RacingToken> client(int maxEntries, long ttlMillis) {
+        return new CachedIRC721Client<RacingToken>(token, CONTRACT, maxEntries, ttlMillis);
+    }
+
+    /**
+     * Counts the `ownerOf` calls and runs `duringOwnerLoad` once after answering one
+     */
+    private static final class RacingToken extends IRC721Full {
+        private int ownerLoads;
+        private Runnable duringOwnerLoad;
+
+        private RacingToken() {
+            super("Name", "SYM");
+        }
+
+        @Override
+        public Address ownerOf(BigInteger tokenId) {
+            ownerLoads++;
+            Address owner = super.ownerOf(tokenId);
+            Runnable hook = duringOwnerLoad;
+            duringOwnerLoad = null;
+            if (hook != null) {
+                hook.run();
+            }
+            return owner;
+        }
+    }
+}
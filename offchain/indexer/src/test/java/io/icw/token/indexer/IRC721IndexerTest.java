@@ -0,0 +1,191 @@
+package io.icw.token.indexer;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.IRC721Full;
+import io.icw.token.emulator.Emulator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IRC721IndexerTest {
+
+    private static final Address CONTRACT = new Address("token");
+    private static final Address MINTER = new Address("minter");
+    private static final Address ALICE = new Address("alice");
+    private static final Address BOB = new Address("bob");
+    private static final Address CAROL = new Address("carol");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File log;
+    private File indexDir;
+    private EventLogWriter writer;
+    private IRC721Full token;
+
+    @Before
+    public void setUp() throws Exception {
+        log = new File(folder.getRoot(), "events.log");
+        indexDir = new File(folder.getRoot(), "index");
+        writer = new EventLogWriter(log);
+        Emulator.setContractAddress(CONTRACT);
+        Emulator.setSender(MINTER);
+        Emulator.setEventListener(writer);
+        Emulator.setBlock(1, 0);
+        token = new IRC721Full("Name", "SYM");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Emulator.setEventListener(null);
+        writer.close();
+    }
+
+    @Test
+    public void followsOwnershipAndHistory() throws Exception {
+        token.mintRange(ALICE, BigInteger.ONE, 3);
+        Emulator.setBlock(2, 0);
+        Emulator.setSender(ALICE);
+        token.transferFrom(ALICE, BOB, BigInteger.valueOf(2));
+        token.approve(CAROL, BigInteger.ONE);
+        writer.flush();
+
+        IRC721Indexer indexer = new IRC721Indexer(indexDir, log, CONTRACT.toString());
+        assertEquals(5, indexer.catchUp());
+        IRC721Index index = indexer.index();
+        assertEquals(BOB.toString(), index.ownerOf(BigInteger.valueOf(2)));
+        assertEquals(2, index.balanceOf(ALICE.toString()));
+        assertEquals(CAROL.toString(), index.getApproved(BigInteger.ONE));
+        assertEquals(ALICE.toString(), index.ownerAt(BigInteger.valueOf(2), 1));
+        assertEquals(2, index.historyOf(BigInteger.valueOf(2), 10).size());
+        assertNull(index.ownerOf(BigInteger.TEN));
+        indexer.close();
+
+        Emulator.setSender(BOB);
+        token.transferFrom(BOB, CAROL, BigInteger.valueOf(2));
+        writer.flush();
+        indexer = new IRC721Indexer(indexDir, log, CONTRACT.toString());
+        assertEquals(BOB.toString(), indexer.index().ownerOf(BigInteger.valueOf(2)));
+        assertEquals(1, indexer.catchUp());
+        assertEquals(CAROL.toString(), indexer.index().ownerOf(BigInteger.valueOf(2)));
+        assertEquals(Collections.singletonList(BigInteger.valueOf(2)), indexer.index().tokensOfOwner(CAROL.toString()));
+        indexer.close();
+    }
+
+    @Test
+    public void keepsOperatorsInGrantOrderAcrossReopen() throws Exception {
+        Emulator.setSender(ALICE);
+        token.setApprovalForAll(CAROL, true);
+        token.setApprovalForAll(BOB, true);
+        token.setApprovalForAll(CAROL, false);
+        token.setApprovalForAll(MINTER, true);
+        Emulator.setSender(BOB);
+        token.setApprovalForAll(ALICE, true);
+        writer.flush();
+
+        IRC721Indexer indexer = new IRC721Indexer(indexDir, log, CONTRACT.toString());
+        indexer.catchUp();
+        indexer.close();
+        indexer = new IRC721Indexer(indexDir, log, CONTRACT.toString());
+        IRC721Index index = indexer.index();
+        assertEquals(Arrays.asList(BOB.toString(), MINTER.toString()), index.operatorsOf(ALICE.toString()));
+        assertEquals(Collections.singletonList(ALICE.toString()), index.operatorsOf(BOB.toString()));
+        assertFalse(index.isApprovedForAll(ALICE.toString(), CAROL.toString()));
+        assertTrue(index.isApprovedForAll(ALICE.toString(), BOB.toString()));
+        assertTrue(index.operatorsOf(CAROL.toString()).isEmpty());
+
+        Emulator.setSender(ALICE);
+        token.setApprovalForAll(CAROL, true);
+        writer.flush();
+        indexer.catchUp();
+        assertEquals(Arrays.asList(CAROL.toString(), BOB.toString(), MINTER.toString()), index.operatorsOf(ALICE.toString()));
+        indexer.close();
+    }
+
+    @Test
+    public void rollsBackABatchInterruptedByACrash() throws Exception {
+        token.mintRange(ALICE, BigInteger.ONE, 4);
+        writer.flush();
+        IRC721Indexer indexer = new IRC721Indexer(indexDir, log, CONTRACT.toString());
+        assertEquals(4, indexer.catchUp());
+        long committed = indexer.index().eventOffset();
+
+        Emulator.setSender(ALICE);
+        token.transferFrom(ALICE, BOB, BigInteger.ONE);
+        token.approve(CAROL, BigInteger.valueOf(2));
+        token.setApprovalForAll(CAROL, true);
+        Emulator.setSender(MINTER);
+        token.mint(CAROL, BigInteger.TEN);
+        writer.flush();
+        // the process dies in the middle of the next batch
+        IRC721Index index = indexer.index();
+        index.beginBatch();
+        EventLogReader reader = new EventLogReader(log, committed);
+        EventRecord event;
+        while ((event = reader.next()) != null) {
+            index.apply(event);
+        }
+        reader.close();
+        assertEquals(BOB.toString(), index.ownerOf(BigInteger.ONE));
+        indexer.close();
+
+        indexer = new IRC721Indexer(indexDir, log, CONTRACT.toString());
+        index = indexer.index();
+        assertEquals(committed, index.eventOffset());
+        assertEquals(ALICE.toString(), index.ownerOf(BigInteger.ONE));
+        assertEquals(4, index.balanceOf(ALICE.toString()));
+        assertEquals(0, index.balanceOf(BOB.toString()));
+        assertNull(index.getApproved(BigInteger.valueOf(2)));
+        assertNull(index.ownerOf(BigInteger.TEN));
+        assertFalse(index.isApprovedForAll(ALICE.toString(), CAROL.toString()));
+        assertEquals(1, index.historyOf(BigInteger.ONE, 10).size());
+
+        // only the events after the last commit are applied again
+        assertEquals(4, indexer.catchUp());
+        assertEquals(BOB.toString(), index.ownerOf(BigInteger.ONE));
+        assertEquals(3, index.balanceOf(ALICE.toString()));
+        assertEquals(CAROL.toString(), index.getApproved(BigInteger.valueOf(2)));
+        assertEquals(CAROL.toString(), index.ownerOf(BigInteger.TEN));
+        assertTrue(index.isApprovedForAll(ALICE.toString(), CAROL.toString()));
+        assertEquals(Collections.singletonList(BigInteger.TEN), index.tokensOfOwner(CAROL.toString()));
+        assertEquals(2, index.historyOf(BigInteger.ONE, 10).size());
+        indexer.close();
+    }
+
+    @Test
+    public void completesACommitInterruptedAfterTheJournal() throws Exception {
+        token.mintRange(ALICE, BigInteger.ONE, 3);
+        Emulator.setSender(ALICE);
+        token.transferFrom(ALICE, BOB, BigInteger.valueOf(2));
+        writer.flush();
+        IRC721Indexer indexer = new IRC721Indexer(indexDir, log, CONTRACT.toString());
+        assertEquals(4, indexer.catchUp());
+        long committed = indexer.index().eventOffset();
+        indexer.close();
+
+        // the journal of the last batch is complete, its writes are applied once more
+        SegmentedFile journal = new SegmentedFile(indexDir, "journal", 24);
+        journal.putInt(0, 1);
+        journal.close();
+        indexer = new IRC721Indexer(indexDir, log, CONTRACT.toString());
+        IRC721Index index = indexer.index();
+        assertEquals(committed, index.eventOffset());
+        assertEquals(BOB.toString(), index.ownerOf(BigInteger.valueOf(2)));
+        assertEquals(2, index.balanceOf(ALICE.toString()));
+        assertEquals(Arrays.asList(BigInteger.valueOf(3), BigInteger.ONE), index.tokensOfOwner(ALICE.toString()));
+        assertEquals(0, indexer.catchUp());
+        indexer.close();
+    }
+}
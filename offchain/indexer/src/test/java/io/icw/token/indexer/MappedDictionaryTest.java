@@ -0,0 +1,63 @@
+package io.icw.token.indexer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+
+public class MappedDictionaryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void assignsDenseIdsAndSurvivesReopen() throws Exception {
+        File dir = folder.getRoot();
+        MappedDictionary dictionary = new MappedDictionary(dir, "values");
+        int count = 50000;
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, dictionary.idOrAdd("value-" + i));
+        }
+        assertEquals(0, dictionary.idOrAdd("value-0"));
+        assertEquals(count, dictionary.size());
+        dictionary.close();
+
+        dictionary = new MappedDictionary(dir, "values");
+        assertEquals(count, dictionary.size());
+        for (int i = 0; i < count; i += 997) {
+            assertEquals(i, dictionary.idOf("value-" + i));
+            assertEquals("value-" + i, dictionary.valueOf(i));
+        }
+        assertEquals(-1, dictionary.idOf("value-" + count));
+        assertEquals(count, dictionary.idOrAdd("value-" + count));
+        dictionary.close();
+    }
+
+    @Test
+    public void distinguishesEntriesByTheirBytes() throws Exception {
+        MappedDictionary dictionary = new MappedDictionary(folder.getRoot(), "values");
+        String[] values = {"", "a", "ab", "ba", "é", "é", "tNULSeBaMkrt4z9FYEkkR9D6choPVvQr94oCP5"};
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(i, dictionary.idOrAdd(values[i]));
+        }
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(i, dictionary.idOf(values[i]));
+            assertEquals(values[i], dictionary.valueOf(i));
+        }
+        dictionary.close();
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsUnknownIds() throws Exception {
+        MappedDictionary dictionary = new MappedDictionary(folder.getRoot(), "values");
+        try {
+            dictionary.idOrAdd("only");
+            dictionary.valueOf(1);
+        } finally {
+            dictionary.close();
+        }
+    }
+}
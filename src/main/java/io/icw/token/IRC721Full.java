@@ -28,6 +28,10 @@ import io.icw.contract.sdk.Contract;
 import io.icw.contract.sdk.Msg;
 import io.icw.contract.sdk.annotation.Required;
 import io.icw.token.base.IRC721FullBase;
+import io.icw.token.storage.MappedTokenOwnerStorage;
+import io.icw.token.storage.PackedTokenStorage;
+import io.icw.token.storage.SequentialTokenOwnerStorage;
+import io.icw.token.storage.TokenOwnerStorage;
 
 import java.math.BigInteger;
 
@@ -43,6 +47,26 @@ public class IRC721Full extends IRC721FullBase implements Contract {
         super(name, symbol);
     }
 
+    /**
+     * @param storage      "mapped" (default when null), "packed" or "sequential"
+     * @param startTokenId The first token id of a "sequential" storage, ignored by the other layouts
+     */
+    public IRC721Full(@Required String name, @Required String symbol, String storage, BigInteger startTokenId) {
+        super(name, symbol, ownerStorage(storage, startTokenId));
+    }
+
+    private static TokenOwnerStorage ownerStorage(String storage, BigInteger startTokenId) {
+        if(storage == null || "mapped".equals(storage)) {
+            return new MappedTokenOwnerStorage();
+        }
+        if("packed".equals(storage)) {
+            return new PackedTokenStorage();
+        }
+        require("sequential".equals(storage), "IRC721: unknown token storage");
+        require(startTokenId != null && startTokenId.signum() >= 0, "IRC721: invalid start token id");
+        return new SequentialTokenOwnerStorage(startTokenId);
+    }
+
     public boolean mint(@Required Address to, @Required BigInteger tokenId) {
         onlyMinter();
         super.mintBase(to, tokenId);
@@ -55,8 +79,55 @@ public class IRC721Full extends IRC721FullBase implements Contract {
         return true;
     }
 
+    public boolean batchMint(@Required Address to, @Required BigInteger[] tokenIds) {
+        onlyMinter();
+        if(isConsecutive(tokenIds)) {
+            // a sequential storage writes one slot for the whole run instead of one per token
+            super.mintRangeBase(to, tokenIds[0], tokenIds.length);
+        } else {
+            super.batchMintBase(to, tokenIds);
+        }
+        return true;
+    }
+
+    public boolean batchMintWithTokenURIs(@Required Address to, @Required BigInteger[] tokenIds, @Required String[] tokenURIs) {
+        onlyMinter();
+        super.batchMintWithTokenURIsBase(to, tokenIds, tokenURIs);
+        return true;
+    }
+
+    public boolean mintRange(@Required Address to, @Required BigInteger startId, @Required int count) {
+        onlyMinter();
+        super.mintRangeBase(to, startId, count);
+        return true;
+    }
+
+    public void changeBaseURI(@Required String baseURI, String suffix) {
+        onlyMinter();
+        super.setBaseURI(baseURI, suffix);
+    }
+
+    public void changeRangeBaseURI(@Required BigInteger fromTokenId, @Required String baseURI) {
+        onlyMinter();
+        super.setRangeBaseURI(fromTokenId, baseURI);
+    }
+
     public void burn(@Required Address owner, @Required BigInteger tokenId) {
-        require(isApprovedOrOwner(Msg.sender(), tokenId), "IRC721: transfer caller is not owner nor approved");
-        super.burnBase(owner, tokenId);
+        Address tokenOwner = resolveOwner(tokenId, "IRC721: operator query for nonexistent token");
+        require(isApprovedOrOwner(Msg.sender(), tokenId, tokenOwner), "IRC721: transfer caller is not owner nor approved");
+        require(tokenOwner.equals(owner), "IRC721: burn of token that is not own");
+        super.burnOwnedBase(owner, tokenId);
+    }
+
+    private static boolean isConsecutive(BigInteger[] tokenIds) {
+        if(tokenIds.length < 2) {
+            return false;
+        }
+        for (int i = 1; i < tokenIds.length; i++) {
+            if(tokenIds[i] == null || tokenIds[i - 1] == null || !tokenIds[i].subtract(tokenIds[i - 1]).equals(BigInteger.ONE)) {
+                return false;
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,61 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.icw.token.base;
+
+import io.icw.contract.sdk.Address;
+
+import java.math.BigInteger;
+
+/**
+ * Builds the argument tables of the token calls made by the bases: `(Address, Address, token ids[, String data])`.
+ * <p>The VM call API takes one `String[]` per parameter. The token id column is built once per call, for a batch
+ * once for all of its tokens, and a table is never kept in a field, a field is contract state.</p>
+ */
+final class CallArgs {
+
+    private CallArgs() {
+    }
+
+    static String[] tokenIds(BigInteger[] tokenIds) {
+        String[] column = new String[tokenIds.length];
+        for (int i = 0; i < tokenIds.length; i++) {
+            column[i] = tokenIds[i].toString();
+        }
+        return column;
+    }
+
+    static String[][] of(Address first, Address second, BigInteger tokenId, String data) {
+        return of(first, second, new String[]{tokenId.toString()}, data);
+    }
+
+    /**
+     * @param data The trailing `String` parameter, null for a call without it
+     */
+    static String[][] of(Address first, Address second, String[] tokenIds, String data) {
+        if(data == null) {
+            return new String[][]{new String[]{first.toString()}, new String[]{second.toString()}, tokenIds};
+        }
+        return new String[][]{new String[]{first.toString()}, new String[]{second.toString()}, tokenIds, new String[]{data}};
+    }
+}
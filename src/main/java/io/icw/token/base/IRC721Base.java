@@ -24,15 +24,22 @@
 package io.icw.token.base;
 
 import io.icw.contract.sdk.Address;
+import io.icw.contract.sdk.Block;
 import io.icw.contract.sdk.Msg;
 import io.icw.contract.sdk.annotation.Required;
 import io.icw.contract.sdk.annotation.View;
 import io.icw.token.interfaces.IIRC721;
-import io.icw.token.model.Counter;
+import io.icw.token.storage.AddressIntMap;
+import io.icw.token.storage.AddressPairSet;
+import io.icw.token.storage.MappedTokenApprovalStorage;
+import io.icw.token.storage.MappedTokenOwnerStorage;
+import io.icw.token.storage.OwnershipHistory;
+import io.icw.token.storage.TokenApprovalStorage;
+import io.icw.token.storage.TokenOwnerStorage;
 
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.Set;
 
 import static io.icw.contract.sdk.Utils.emit;
 import static io.icw.contract.sdk.Utils.require;
@@ -43,31 +50,68 @@ import static io.icw.contract.sdk.Utils.require;
  */
 public class IRC721Base extends IRC165Base implements IIRC721 {
 
-    private Map<BigInteger, Address> tokenOwner = new HashMap<BigInteger, Address>();
-    private Map<BigInteger, Address> tokenApprovals = new HashMap<BigInteger, Address>();
-    private Map<Address, Counter> ownedTokensCount = new HashMap<Address, Counter>();
-    private Map<Address, Map<Address, Boolean>> operatorApprovals = new HashMap<Address, Map<Address, Boolean>>();
+    /**
+     * Arguments of the `supportsInterface` probe of a receiver, constant so one table serves every call
+     */
+    private static final String[][] UNCONDITIONAL_RECEIVER_QUERY = new String[][]{new String[]{"IIRC721UnconditionalReceiver"}};
+
+    private TokenOwnerStorage tokenOwner;
+    private TokenApprovalStorage tokenApprovals;
+    /**
+     * Balance per holder, a holder whose balance drops to zero is removed
+     */
+    private AddressIntMap ownedTokensCount = new AddressIntMap();
+    private AddressPairSet operatorApprovals = new AddressPairSet();
+    /**
+     * Receivers that declared `IIRC721UnconditionalReceiver`, safe transfers to them skip the receive callback
+     */
+    private Set<Address> unconditionalReceivers = new HashSet<Address>();
+    /**
+     * Owner and balance checkpoints by block, null unless enabled by {@link #enableOwnershipHistory()}
+     */
+    private OwnershipHistory ownershipHistory;
 
     public IRC721Base() {
+        this(new MappedTokenOwnerStorage());
+    }
+
+    public IRC721Base(TokenOwnerStorage tokenOwner) {
         super.registerInterface("IIRC721");
+        this.tokenOwner = tokenOwner;
+        // a storage that also keeps approvals (PackedTokenStorage) holds them in the same per-token record
+        this.tokenApprovals = tokenOwner instanceof TokenApprovalStorage ? (TokenApprovalStorage) tokenOwner : new MappedTokenApprovalStorage();
     }
 
     @Override
     @View
     public int balanceOf(@Required Address owner) {
-        Counter balance = ownedTokensCount.get(owner);
-        if(balance == null) {
-            return 0;
-        }
-        return balance.current();
+        return ownedTokensCount.get(owner);
     }
 
     @Override
     @View
     public Address ownerOf(@Required BigInteger tokenId) {
-        Address address = tokenOwner.get(tokenId);
-        require(address != null, "IRC721: owner query for nonexistent token");
-        return address;
+        return resolveOwner(tokenId, "IRC721: owner query for nonexistent token");
+    }
+
+    /**
+     * Point-in-time `ownerOf`, needs the ownership history
+     * @return The owner of `tokenId` at the end of block `blockHeight`, null if the token did not exist then
+     */
+    @View
+    public Address ownerOfAt(@Required BigInteger tokenId, @Required long blockHeight) {
+        requireHistoryAt(blockHeight);
+        return ownershipHistory.ownerAt(tokenId, blockHeight);
+    }
+
+    /**
+     * Point-in-time `balanceOf`, needs the ownership history
+     * @return The balance of `owner` at the end of block `blockHeight`
+     */
+    @View
+    public int balanceOfAt(@Required Address owner, @Required long blockHeight) {
+        requireHistoryAt(blockHeight);
+        return ownershipHistory.balanceAt(owner, blockHeight);
     }
 
     @Override
@@ -85,9 +129,36 @@ public class IRC721Base extends IRC165Base implements IIRC721 {
 
     @Override
     public void transferFrom(@Required Address from, @Required Address to, @Required BigInteger tokenId) {
-        require(isApprovedOrOwner(Msg.sender(), tokenId), "IRC721: transfer caller is not owner nor approved");
+        // the owner is read once and reused by the approval and the ownership checks
+        Address owner = resolveOwner(tokenId, "IRC721: operator query for nonexistent token");
+        require(isApprovedOrOwner(Msg.sender(), tokenId, owner), "IRC721: transfer caller is not owner nor approved");
+        require(owner.equals(from), "IRC721: transfer of token that is not own");
+
+        transferOwnedBase(from, to, tokenId);
+    }
 
-        transferFromBase(from, to, tokenId);
+    public void batchSafeTransferFrom(@Required Address from, @Required Address to, @Required BigInteger[] tokenIds, @Required String data) {
+        batchTransferFrom(from, to, tokenIds);
+        // the receiver is asked once for the whole batch through `onIRC721BatchReceived`
+        require(checkOnIRC721BatchReceived(from, to, tokenIds, data), "IRC721: transfer to non IRC721BatchReceiver implementer");
+    }
+
+    public void batchSafeTransferFrom(@Required Address from, @Required Address to, @Required BigInteger[] tokenIds) {
+        batchSafeTransferFrom(from, to, tokenIds, "");
+    }
+
+    public void batchTransferFrom(@Required Address from, @Required Address to, @Required BigInteger[] tokenIds) {
+        require(tokenIds.length > 0, "IRC721: transfer of empty token list");
+        Address sender = Msg.sender();
+        // an owner or an operator of `from` may move every token of `from`, so per-token approval is only checked otherwise
+        if(!sender.equals(from) && !isApprovedForAll(from, sender)) {
+            for (BigInteger tokenId : tokenIds) {
+                Address owner = resolveOwner(tokenId, "IRC721: operator query for nonexistent token");
+                require(isApprovedOrOwner(sender, tokenId, owner), "IRC721: transfer caller is not owner nor approved");
+            }
+        }
+
+        batchTransferFromBase(from, to, tokenIds);
     }
 
     @Override
@@ -99,7 +170,7 @@ public class IRC721Base extends IRC165Base implements IIRC721 {
                 "IRC721: approve caller is not owner nor approved for all"
         );
 
-        tokenApprovals.put(tokenId, to);
+        tokenApprovals.approve(tokenId, to);
         emit(new Approval(owner, to, tokenId));
     }
 
@@ -108,109 +179,290 @@ public class IRC721Base extends IRC165Base implements IIRC721 {
         Address sender = Msg.sender();
         require(!operator.equals(sender), "IRC721: approve to caller");
 
-        Map<Address, Boolean> approvalsMap = operatorApprovals.get(sender);
-        if(approvalsMap == null) {
-            approvalsMap = new HashMap<Address, Boolean>();
-            operatorApprovals.put(sender, approvalsMap);
+        // only granted pairs are stored, a revocation deletes the pair
+        if(approved) {
+            operatorApprovals.add(sender, operator);
+        } else {
+            operatorApprovals.remove(sender, operator);
         }
-        approvalsMap.put(operator, approved);
         emit(new ApprovalForAll(sender, operator, approved));
     }
 
     @Override
     @View
     public Address getApproved(@Required BigInteger tokenId) {
-        require(exists(tokenId), "IRC721: approved query for nonexistent token");
+        resolveOwner(tokenId, "IRC721: approved query for nonexistent token");
 
-        return tokenApprovals.get(tokenId);
+        return tokenApprovals.approvedOf(tokenId);
     }
 
     @Override
     @View
     public boolean isApprovedForAll(@Required Address owner, @Required Address operator) {
-        Map<Address, Boolean> approvalsMap = operatorApprovals.get(owner);
-        if(approvalsMap == null) {
-            return false;
-        }
-        Boolean isApproved = approvalsMap.get(operator);
-        if(isApproved == null) {
-            return false;
-        }
-        return isApproved;
+        return operatorApprovals.contains(owner, operator);
+    }
+
+    /**
+     * Register a receiver contract that declares `IIRC721UnconditionalReceiver` through `supportsInterface`,
+     *  safe transfers to it no longer call `onIRC721Received`. Anyone may register a receiver, the declaration is checked.
+     * @param receiver The receiver contract
+     */
+    public void registerUnconditionalReceiver(@Required Address receiver) {
+        require(receiver.isContract(), "IRC721: receiver is not a contract");
+        require(declaresUnconditionalReceiver(receiver), "IRC721: receiver does not support IIRC721UnconditionalReceiver");
+        unconditionalReceivers.add(receiver);
+    }
+
+    /**
+     * Drop a registered receiver, by the receiver itself or by anyone once it no longer declares `IIRC721UnconditionalReceiver`
+     * @param receiver The receiver contract
+     */
+    public void unregisterUnconditionalReceiver(@Required Address receiver) {
+        require(unconditionalReceivers.contains(receiver), "IRC721: receiver is not registered");
+        require(Msg.sender().equals(receiver) || !declaresUnconditionalReceiver(receiver),
+                "IRC721: receiver still supports IIRC721UnconditionalReceiver");
+        unconditionalReceivers.remove(receiver);
+    }
+
+    @View
+    public boolean isUnconditionalReceiver(@Required Address receiver) {
+        return unconditionalReceivers.contains(receiver);
     }
 
     protected boolean checkOnIRC721Received(Address from, Address to, BigInteger tokenId, String data) {
-        if(!to.isContract()) {
+        if(!to.isContract() || unconditionalReceivers.contains(to)) {
             return true;
         }
-        String[][] args = new String[][]{
-                new String[]{Msg.sender().toString()},
-                new String[]{from.toString()},
-                new String[]{tokenId.toString()},
-                new String[]{data}};
-        String returnValue = to.callWithReturnValue("onIRC721Received", null, args, BigInteger.ZERO);
+        return receiverAccepts(to, "onIRC721Received", CallArgs.of(Msg.sender(), from, tokenId, data));
+    }
+
+    protected boolean checkOnIRC721BatchReceived(Address from, Address to, BigInteger[] tokenIds, String data) {
+        if(!to.isContract() || unconditionalReceivers.contains(to)) {
+            return true;
+        }
+        return receiverAccepts(to, "onIRC721BatchReceived", CallArgs.of(Msg.sender(), from, CallArgs.tokenIds(tokenIds), data));
+    }
+
+    private boolean receiverAccepts(Address to, String methodName, String[][] args) {
+        String returnValue = to.callWithReturnValue(methodName, null, args, BigInteger.ZERO);
         return Boolean.valueOf(returnValue);
     }
 
+    private boolean declaresUnconditionalReceiver(Address receiver) {
+        return Boolean.valueOf(receiver.callWithReturnValue("supportsInterface", null, UNCONDITIONAL_RECEIVER_QUERY, BigInteger.ZERO));
+    }
+
+    /**
+     * Keep owner and balance checkpoints for `ownerOfAt` and `balanceOfAt`, from the constructor of a subclass
+     * and before the first mint. Every mint, transfer and burn then also appends to them, current-state reads
+     * are unchanged.
+     */
+    protected void enableOwnershipHistory() {
+        require(ownedTokensCount.size() == 0, "IRC721: ownership history must be enabled before the first mint");
+        ownershipHistory = new OwnershipHistory();
+    }
+
+    private void requireHistoryAt(long blockHeight) {
+        require(ownershipHistory != null, "IRC721: ownership history is not enabled");
+        require(blockHeight >= 0 && blockHeight <= Block.number(), "IRC721: block height out of range");
+    }
+
+    /**
+     * @return The count of holders, those with a positive balance
+     */
+    protected int holderCount() {
+        return ownedTokensCount.size();
+    }
+
+    /**
+     * Walk of the holders: every slot below the returned count holds a holder or null, see {@link #holderAt(int)}
+     */
+    protected int holderSlots() {
+        return ownedTokensCount.slots();
+    }
+
+    /**
+     * @return The holder in `slot`, null for an empty slot
+     */
+    protected Address holderAt(int slot) {
+        return ownedTokensCount.keyAt(slot);
+    }
+
+    protected int holderBalanceAt(int slot) {
+        return ownedTokensCount.valueAt(slot);
+    }
+
     protected boolean exists(BigInteger tokenId) {
-        Address owner = tokenOwner.get(tokenId);
+        Address owner = tokenOwner.ownerOf(tokenId);
         return owner != null;
     }
 
+    /**
+     * @return The owner of `tokenId`, null for a nonexistent token
+     */
+    protected Address findOwner(BigInteger tokenId) {
+        return tokenOwner.ownerOf(tokenId);
+    }
+
+    /**
+     * @return The approved address of `tokenId`, null if there is none or for a nonexistent token
+     */
+    protected Address findApproved(BigInteger tokenId) {
+        return tokenApprovals.approvedOf(tokenId);
+    }
+
+    /**
+     * @return The owner of `tokenId`, reverts with `message` for a nonexistent token
+     */
+    protected Address resolveOwner(BigInteger tokenId, String message) {
+        Address owner = tokenOwner.ownerOf(tokenId);
+        require(owner != null, message);
+        return owner;
+    }
+
     protected boolean isApprovedOrOwner(Address spender, BigInteger tokenId) {
-        require(exists(tokenId), "IRC721: operator query for nonexistent token");
-        Address owner = ownerOf(tokenId);
-        return (spender.equals(owner) || spender.equals(getApproved(tokenId)) || isApprovedForAll(owner, spender));
+        return isApprovedOrOwner(spender, tokenId, resolveOwner(tokenId, "IRC721: operator query for nonexistent token"));
+    }
+
+    /**
+     * @param owner The owner of `tokenId` already resolved by the caller
+     */
+    protected boolean isApprovedOrOwner(Address spender, BigInteger tokenId, Address owner) {
+        return (spender.equals(owner) || spender.equals(tokenApprovals.approvedOf(tokenId)) || isApprovedForAll(owner, spender));
     }
 
     protected void transferFromBase(Address from, Address to, BigInteger tokenId) {
         require(ownerOf(tokenId).equals(from), "IRC721: transfer of token that is not own");
 
+        transferOwnedBase(from, to, tokenId);
+    }
+
+    /**
+     * Transfer a token whose ownership by `from` was already checked
+     */
+    protected void transferOwnedBase(Address from, Address to, BigInteger tokenId) {
         clearApproval(tokenId);
 
-        ownedTokensCount.get(from).decrement();
-        Counter counter = ownedTokensCount.get(to);
-        if(counter == null) {
-            counter = new Counter();
-            ownedTokensCount.put(to, counter);
-        }
-        counter.increment();
+        int fromBalance = ownedTokensCount.add(from, -1);
+        int toBalance = ownedTokensCount.add(to, 1);
 
-        tokenOwner.put(tokenId, to);
+        tokenOwner.transfer(tokenId, from, to);
+        if(ownershipHistory != null) {
+            long block = Block.number();
+            ownershipHistory.recordOwner(block, tokenId, to);
+            ownershipHistory.recordBalance(block, from, fromBalance);
+            ownershipHistory.recordBalance(block, to, toBalance);
+        }
 
         emit(new Transfer(from, to, tokenId));
     }
 
-    protected void mintBase(Address to, BigInteger tokenId) {
-        require(!exists(tokenId), "IRC721: token already minted");
+    protected void batchTransferFromBase(Address from, Address to, BigInteger[] tokenIds) {
+        for (BigInteger tokenId : tokenIds) {
+            require(ownerOf(tokenId).equals(from), "IRC721: transfer of token that is not own");
+
+            clearApproval(tokenId);
+            tokenOwner.transfer(tokenId, from, to);
+
+            emit(new Transfer(from, to, tokenId));
+        }
+
+        int fromBalance = ownedTokensCount.add(from, -tokenIds.length);
+        int toBalance = ownedTokensCount.add(to, tokenIds.length);
+        if(ownershipHistory != null) {
+            long block = Block.number();
+            for (BigInteger tokenId : tokenIds) {
+                ownershipHistory.recordOwner(block, tokenId, to);
+            }
+            ownershipHistory.recordBalance(block, from, fromBalance);
+            ownershipHistory.recordBalance(block, to, toBalance);
+        }
+    }
 
-        tokenOwner.put(tokenId, to);
-        Counter counter = ownedTokensCount.get(to);
-        if(counter == null) {
-            counter = new Counter();
-            ownedTokensCount.put(to, counter);
+    protected void mintBase(Address to, BigInteger tokenId) {
+        // the storage rejects a token id that already exists
+        tokenOwner.mint(tokenId, to);
+        int balance = ownedTokensCount.add(to, 1);
+        if(ownershipHistory != null) {
+            long block = Block.number();
+            ownershipHistory.recordOwner(block, tokenId, to);
+            ownershipHistory.recordBalance(block, to, balance);
         }
-        counter.increment();
 
         emit(new Transfer(null, to, tokenId));
     }
 
+    protected void batchMintBase(Address to, BigInteger[] tokenIds) {
+        require(tokenIds.length > 0, "IRC721: mint of empty token list");
+
+        for (BigInteger tokenId : tokenIds) {
+            tokenOwner.mint(tokenId, to);
+            emit(new Transfer(null, to, tokenId));
+        }
+        int balance = ownedTokensCount.add(to, tokenIds.length);
+        if(ownershipHistory != null) {
+            long block = Block.number();
+            for (BigInteger tokenId : tokenIds) {
+                ownershipHistory.recordOwner(block, tokenId, to);
+            }
+            ownershipHistory.recordBalance(block, to, balance);
+        }
+    }
+
+    protected void mintRangeBase(Address to, BigInteger startId, int count) {
+        require(count > 0, "IRC721: mint count must be positive");
+
+        // the storage writes the whole range at once, SequentialTokenOwnerStorage only stores its first slot
+        tokenOwner.mintRange(startId, count, to);
+        BigInteger tokenId = startId;
+        for (int i = 0; i < count; i++) {
+            emit(new Transfer(null, to, tokenId));
+            tokenId = tokenId.add(BigInteger.ONE);
+        }
+        int balance = ownedTokensCount.add(to, count);
+        if(ownershipHistory != null) {
+            // one checkpoint per token of the range, the history does not share the run layout of the owner storage
+            long block = Block.number();
+            tokenId = startId;
+            for (int i = 0; i < count; i++) {
+                ownershipHistory.recordOwner(block, tokenId, to);
+                tokenId = tokenId.add(BigInteger.ONE);
+            }
+            ownershipHistory.recordBalance(block, to, balance);
+        }
+    }
+
     protected void burnBase(Address owner, BigInteger tokenId) {
         require(ownerOf(tokenId).equals(owner), "IRC721: burn of token that is not own");
 
+        burnOwnedBase(owner, tokenId);
+    }
+
+    protected void burnBase(BigInteger tokenId) {
+        burnOwnedBase(ownerOf(tokenId), tokenId);
+    }
+
+    /**
+     * Burn a token whose ownership by `owner` was already checked, subclasses extend this to drop their own token state
+     */
+    protected void burnOwnedBase(Address owner, BigInteger tokenId) {
         clearApproval(tokenId);
 
-        ownedTokensCount.get(owner).decrement();
-        tokenOwner.remove(tokenId);
+        int balance = ownedTokensCount.add(owner, -1);
+        tokenOwner.burn(tokenId, owner);
+        if(ownershipHistory != null) {
+            long block = Block.number();
+            ownershipHistory.recordOwner(block, tokenId, null);
+            ownershipHistory.recordBalance(block, owner, balance);
+        }
 
         emit(new Transfer(owner, null, tokenId));
     }
 
-    protected void burnBase(BigInteger tokenId) {
-        burnBase(ownerOf(tokenId), tokenId);
-    }
-
     private void clearApproval(BigInteger tokenId) {
-        tokenApprovals.remove(tokenId);
+        // a storage keeping the approval in the owner record drops it in its own transfer and burn
+        if(tokenApprovals != tokenOwner) {
+            tokenApprovals.clearApproval(tokenId);
+        }
     }
 }
@@ -27,10 +27,14 @@ import io.icw.contract.sdk.Address;
 import io.icw.contract.sdk.annotation.Required;
 import io.icw.contract.sdk.annotation.View;
 import io.icw.token.interfaces.IIRC721Enumerable;
+import io.icw.token.model.TokenPage;
+import io.icw.token.storage.MappedTokenIndexStorage;
+import io.icw.token.storage.TokenIndexStorage;
+import io.icw.token.storage.TokenOwnerStorage;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 
 import static io.icw.contract.sdk.Utils.require;
@@ -41,13 +45,24 @@ import static io.icw.contract.sdk.Utils.require;
  */
 public class IRC721EnumerableBase extends IRC721Base implements IIRC721Enumerable {
 
-    private Map<Address, LinkedList<BigInteger>> ownedTokens = new HashMap<Address, LinkedList<BigInteger>>();
-    private Map<BigInteger, Integer> ownedTokensIndex = new HashMap<BigInteger, Integer>();
-    private LinkedList<BigInteger> allTokens = new LinkedList<BigInteger>();
-    private Map<BigInteger, Integer> allTokensIndex = new HashMap<BigInteger, Integer>();
+    public static final int MAX_EXPORT_SIZE = 1000;
+
+    private Map<Address, ArrayList<BigInteger>> ownedTokens = new HashMap<Address, ArrayList<BigInteger>>();
+    private ArrayList<BigInteger> allTokens = new ArrayList<BigInteger>();
+    /**
+     * Position of each token in `ownedTokens` and in `allTokens`
+     */
+    private TokenIndexStorage tokenIndexes;
 
     public IRC721EnumerableBase() {
         super.registerInterface("IIRC721Enumerable");
+        this.tokenIndexes = new MappedTokenIndexStorage();
+    }
+
+    public IRC721EnumerableBase(TokenOwnerStorage tokenOwner) {
+        super(tokenOwner);
+        super.registerInterface("IIRC721Enumerable");
+        this.tokenIndexes = tokenOwner instanceof TokenIndexStorage ? (TokenIndexStorage) tokenOwner : new MappedTokenIndexStorage();
     }
 
     @Override
@@ -60,7 +75,7 @@ public class IRC721EnumerableBase extends IRC721Base implements IIRC721Enumerabl
     @View
     public BigInteger tokenOfOwnerByIndex(@Required Address owner, @Required int index) {
         require(index < balanceOf(owner), "IRC721Enumerable: owner index out of bounds");
-        LinkedList<BigInteger> tokens = ownedTokens.get(owner);
+        ArrayList<BigInteger> tokens = ownedTokens.get(owner);
         if(tokens == null) {
             return null;
         }
@@ -95,6 +110,18 @@ public class IRC721EnumerableBase extends IRC721Base implements IIRC721Enumerabl
         require(super.checkOnIRC721Received(from, to, tokenId, data), "IRC721: transfer to non ERC721Receiver implementer");
     }
 
+    @Override
+    public void batchTransferFrom(@Required Address from, @Required Address to, @Required BigInteger[] tokenIds) {
+        super.batchTransferFrom(from, to, tokenIds);
+
+        ArrayList<BigInteger> tokens = ownedTokensWithCapacity(to, tokenIds.length);
+        for (BigInteger tokenId : tokenIds) {
+            removeTokenFromOwnerEnumeration(from, tokenId);
+            tokenIndexes.setOwnerIndex(tokenId, tokens.size());
+            tokens.add(tokenId);
+        }
+    }
+
     @Override
     protected void mintBase(Address to, BigInteger tokenId) {
         super.mintBase(to, tokenId);
@@ -105,34 +132,164 @@ public class IRC721EnumerableBase extends IRC721Base implements IIRC721Enumerabl
     }
 
     @Override
-    protected void burnBase(Address owner, BigInteger tokenId) {
-        super.burnBase(owner, tokenId);
+    protected void batchMintBase(Address to, BigInteger[] tokenIds) {
+        super.batchMintBase(to, tokenIds);
+
+        ArrayList<BigInteger> tokens = ownedTokensWithCapacity(to, tokenIds.length);
+        allTokens.ensureCapacity(allTokens.size() + tokenIds.length);
+        for (BigInteger tokenId : tokenIds) {
+            tokenIndexes.setOwnerIndex(tokenId, tokens.size());
+            tokens.add(tokenId);
+            addTokenToAllTokensEnumeration(tokenId);
+        }
+    }
+
+    @Override
+    protected void mintRangeBase(Address to, BigInteger startId, int count) {
+        super.mintRangeBase(to, startId, count);
+
+        ArrayList<BigInteger> tokens = ownedTokensWithCapacity(to, count);
+        allTokens.ensureCapacity(allTokens.size() + count);
+        BigInteger tokenId = startId;
+        for (int i = 0; i < count; i++) {
+            tokenIndexes.setOwnerIndex(tokenId, tokens.size());
+            tokens.add(tokenId);
+            addTokenToAllTokensEnumeration(tokenId);
+            tokenId = tokenId.add(BigInteger.ONE);
+        }
+    }
 
+    @Override
+    protected void burnOwnedBase(Address owner, BigInteger tokenId) {
+        // the enumerations are updated first, a packed storage drops the indexes with the token
         removeTokenFromOwnerEnumeration(owner, tokenId);
-        // Since tokenId will be deleted, we can clear its slot in _ownedTokensIndex to trigger a gas refund
-        ownedTokensIndex.remove(tokenId);
 
         removeTokenFromAllTokensEnumeration(tokenId);
+        // Since tokenId will be deleted, we can clear its index slots to trigger a gas refund
+        tokenIndexes.removeIndexes(tokenId);
+
+        super.burnOwnedBase(owner, tokenId);
     }
 
     @View
-    public LinkedList<BigInteger> tokensOfOwner(Address owner) {
+    public ArrayList<BigInteger> tokensOfOwner(Address owner) {
         return ownedTokens.get(owner);
     }
 
+    /**
+     * Page through the NFTs assigned to an owner
+     * @param owner An address where we are interested in NFTs owned by them
+     * @param offset Index of the first NFT of the page, `0` or the `next` of the previous page
+     * @param limit Maximum count of NFTs in the page, at most 500
+     * @return `{"total":balance,"next":offset of the next page or -1,"tokenIds":[...]}`
+     */
+    @View
+    public String tokensOfOwnerPaged(@Required Address owner, @Required int offset, @Required int limit) {
+        return TokenPage.toJson(ownedTokens.get(owner), offset, limit, "IRC721Enumerable");
+    }
+
+    /**
+     * Page through all NFTs tracked by this contract, see `tokensOfOwnerPaged`
+     */
+    @View
+    public String tokensPaged(@Required int offset, @Required int limit) {
+        return TokenPage.toJson(allTokens, offset, limit, "IRC721Enumerable");
+    }
+
+    /**
+     * Export the holders with their balances and tokens for a snapshot, in chunks walking the balances once
+     * <p>The cursor is a position in the balance table, it is only stable while no holder appears or leaves, so
+     * a snapshot is exported at a fixed block. A holder with more tokens than fit in the chunk goes on in the
+     * next one, with the same owner and balance.</p>
+     * @param cursor `0` or the `next` of the previous chunk
+     * @param limit Maximum count of token ids in the chunk, at most 1000
+     * @return `{"holders":count,"next":cursor of the next chunk or -1,"records":["owner,balance,tokenId tokenId ...",...]}`
+     */
+    @View
+    public String exportHolders(@Required long cursor, @Required int limit) {
+        require(limit > 0 && limit <= MAX_EXPORT_SIZE, "IRC721Enumerable: export limit out of bounds");
+        int slots = holderSlots();
+        int slot = (int) (cursor >>> 32);
+        int offset = (int) cursor;
+        require(cursor >= 0 && slot <= slots && offset >= 0, "IRC721Enumerable: export cursor out of bounds");
+
+        StringBuilder records = new StringBuilder(64 + limit * 8);
+        int remaining = limit;
+        while (remaining > 0) {
+            int holderSlot = nextHolderSlot(slot, slots);
+            if(holderSlot != slot) {
+                // the offset of a stale cursor belongs to a holder that left, it does not carry to the next one
+                slot = holderSlot;
+                offset = 0;
+            }
+            if(slot >= slots) {
+                break;
+            }
+            Address holder = holderAt(slot);
+            ArrayList<BigInteger> tokens = ownedTokens.get(holder);
+            if(offset > tokens.size()) {
+                // a stale cursor past the tokens of a holder whose balance dropped
+                offset = tokens.size();
+            }
+            int end = tokens.size() - offset <= remaining ? tokens.size() : offset + remaining;
+            if(end > offset) {
+                if(records.length() > 0) {
+                    records.append(',');
+                }
+                records.append('"').append(holder).append(',').append(holderBalanceAt(slot)).append(',');
+                for (int i = offset; i < end; i++) {
+                    if(i > offset) {
+                        records.append(' ');
+                    }
+                    records.append(tokens.get(i));
+                }
+                records.append('"');
+                remaining -= end - offset;
+            }
+            if(end < tokens.size()) {
+                offset = end;
+            } else {
+                slot++;
+                offset = 0;
+            }
+        }
+        // trailing empty slots are skipped, so that the last chunk already reports the end
+        if(offset == 0) {
+            slot = nextHolderSlot(slot, slots);
+        }
+        long next = slot < slots ? ((long) slot << 32) | offset : -1;
+        return new StringBuilder(48 + records.length())
+                .append("{\"holders\":").append(holderCount())
+                .append(",\"next\":").append(next)
+                .append(",\"records\":[").append(records).append("]}").toString();
+    }
+
+    private int nextHolderSlot(int slot, int slots) {
+        while (slot < slots && holderAt(slot) == null) {
+            slot++;
+        }
+        return slot;
+    }
+
     private void addTokenToOwnerEnumeration(Address to, BigInteger tokenId) {
-        int index = 0;
-        LinkedList<BigInteger> tokens = ownedTokens.get(to);
+        ArrayList<BigInteger> tokens = ownedTokensWithCapacity(to, 1);
+        tokenIndexes.setOwnerIndex(tokenId, tokens.size());
+        tokens.add(tokenId);
+    }
+
+    private ArrayList<BigInteger> ownedTokensWithCapacity(Address owner, int additional) {
+        ArrayList<BigInteger> tokens = ownedTokens.get(owner);
         if(tokens == null) {
-            tokens = new LinkedList<BigInteger>();
-            ownedTokens.put(to, tokens);
+            tokens = new ArrayList<BigInteger>(additional);
+            ownedTokens.put(owner, tokens);
+        } else if(additional > 1) {
+            tokens.ensureCapacity(tokens.size() + additional);
         }
-        ownedTokensIndex.put(tokenId, tokens.size());
-        tokens.add(tokenId);
+        return tokens;
     }
 
     private void addTokenToAllTokensEnumeration(BigInteger tokenId) {
-        allTokensIndex.put(tokenId, allTokens.size());
+        tokenIndexes.setGlobalIndex(tokenId, allTokens.size());
         allTokens.add(tokenId);
     }
 
@@ -140,37 +297,39 @@ public class IRC721EnumerableBase extends IRC721Base implements IIRC721Enumerabl
         // To prevent a gap in from's tokens array, we store the last token in the index of the token to delete, and
         // then delete the last slot (swap and pop).
 
-        LinkedList<BigInteger> tokens = ownedTokens.get(from);
+        ArrayList<BigInteger> tokens = ownedTokens.get(from);
         int lastTokenIndex = tokens.size() - 1;
-        int tokenIndex = ownedTokensIndex.get(tokenId);
+        int tokenIndex = tokenIndexes.ownerIndexOf(tokenId);
 
-        BigInteger lastTokenId = tokens.removeLast();
         // When the token to delete is the last token, the swap operation is unnecessary
         if (tokenIndex != lastTokenIndex) {
-            tokens.remove(tokenIndex);
-            tokens.add(tokenIndex, lastTokenId);
-            ownedTokensIndex.put(lastTokenId, tokenIndex); // Update the moved token's index
+            BigInteger lastTokenId = tokens.get(lastTokenIndex);
+
+            tokens.set(tokenIndex, lastTokenId); // Move the last token to the slot of the to-delete token
+            tokenIndexes.setOwnerIndex(lastTokenId, tokenIndex); // Update the moved token's index
         }
 
+        // This also deletes the contents at the last position of the array
+        tokens.remove(lastTokenIndex);
     }
 
     private void removeTokenFromAllTokensEnumeration(BigInteger tokenId) {
         // To prevent a gap in the tokens array, we store the last token in the index of the token to delete, and
         // then delete the last slot (swap and pop).
 
-        int tokenIndex = allTokensIndex.get(tokenId);
+        int lastTokenIndex = allTokens.size() - 1;
+        int tokenIndex = tokenIndexes.globalIndexOf(tokenId);
 
         // When the token to delete is the last token, the swap operation is unnecessary. However, since this occurs so
         // rarely (when the last minted token is burnt) that we still do the swap here to avoid the gas cost of adding
         // an 'if' statement (like in _removeTokenFromOwnerEnumeration)
-        BigInteger lastTokenId = allTokens.removeLast();
+        BigInteger lastTokenId = allTokens.get(lastTokenIndex);
 
-        allTokens.remove(tokenIndex);
-        allTokens.add(tokenIndex, lastTokenId);
-        ownedTokensIndex.put(lastTokenId, tokenIndex); // Update the moved token's index
+        allTokens.set(tokenIndex, lastTokenId); // Move the last token to the slot of the to-delete token
+        tokenIndexes.setGlobalIndex(lastTokenId, tokenIndex); // Update the moved token's index
 
         // This also deletes the contents at the last position of the array
-        allTokensIndex.remove(tokenId);
+        allTokens.remove(lastTokenIndex);
     }
 
 }
@@ -26,10 +26,11 @@ package io.icw.token.base;
 import io.icw.contract.sdk.Address;
 import io.icw.contract.sdk.annotation.Required;
 import io.icw.contract.sdk.annotation.View;
+import io.icw.token.storage.TokenIdMap;
+import io.icw.token.storage.TokenOwnerStorage;
 
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
 
 import static io.icw.contract.sdk.Utils.require;
 
@@ -41,7 +42,17 @@ public class IRC721FullBase extends IRC721EnumerableBase {
 
     private String name;
     private String symbol;
-    private Map<BigInteger, String> tokenURIs = new HashMap<BigInteger, String>();
+    /**
+     * Per-token URIs, only for tokens whose URI is not `base URI + tokenId + suffix`
+     */
+    private TokenIdMap<String> tokenURIs = new TokenIdMap<String>();
+    private String baseURI;
+    private String baseURISuffix = "";
+    /**
+     * Sorted start token ids and the base URI used from that id on, up to the next start
+     */
+    private ArrayList<BigInteger> rangeStarts = new ArrayList<BigInteger>();
+    private ArrayList<String> rangeBaseURIs = new ArrayList<String>();
 
     public IRC721FullBase(String name, String symbol) {
         // 由于Java没有多继承，所以挑选实现逻辑较少的IIRC721Metadata在Full类里重新实现一次
@@ -50,6 +61,13 @@ public class IRC721FullBase extends IRC721EnumerableBase {
         this.symbol = symbol;
     }
 
+    public IRC721FullBase(String name, String symbol, TokenOwnerStorage tokenOwner) {
+        super(tokenOwner);
+        super.registerInterface("IIRC721Metadata");
+        this.name = name;
+        this.symbol = symbol;
+    }
+
     @View
     public String name() {
         return name;
@@ -63,7 +81,92 @@ public class IRC721FullBase extends IRC721EnumerableBase {
     @View
     public String tokenURI(@Required BigInteger tokenId) {
         require(exists(tokenId), "IRC721Metadata: URI query for nonexistent token");
-        return tokenURIs.get(tokenId);
+        return resolveTokenURI(tokenId);
+    }
+
+    @View
+    public String baseURI() {
+        return baseURI;
+    }
+
+    /**
+     * Batched `ownerOf`
+     * @return The owners aligned with `tokenIds`, null for a nonexistent token
+     */
+    @View
+    public Address[] ownersOf(@Required BigInteger[] tokenIds) {
+        Address[] owners = new Address[tokenIds.length];
+        for (int i = 0; i < tokenIds.length; i++) {
+            owners[i] = findOwner(tokenIds[i]);
+        }
+        return owners;
+    }
+
+    /**
+     * Batched `balanceOf`
+     * @return The balances aligned with `owners`
+     */
+    @View
+    public int[] balancesOf(@Required Address[] owners) {
+        int[] balances = new int[owners.length];
+        for (int i = 0; i < owners.length; i++) {
+            balances[i] = balanceOf(owners[i]);
+        }
+        return balances;
+    }
+
+    /**
+     * Batched `tokenURI`
+     * @return The URIs aligned with `tokenIds`, null for a nonexistent token
+     */
+    @View
+    public String[] tokenURIs(@Required BigInteger[] tokenIds) {
+        String[] uris = new String[tokenIds.length];
+        for (int i = 0; i < tokenIds.length; i++) {
+            BigInteger tokenId = tokenIds[i];
+            if(exists(tokenId)) {
+                uris[i] = resolveTokenURI(tokenId);
+            }
+        }
+        return uris;
+    }
+
+    /**
+     * Batched `getApproved`
+     * @return The approved addresses aligned with `tokenIds`, null if there is none or for a nonexistent token,
+     *         `ownersOf` tells both apart
+     */
+    @View
+    public Address[] approvalsOf(@Required BigInteger[] tokenIds) {
+        Address[] approvals = new Address[tokenIds.length];
+        for (int i = 0; i < tokenIds.length; i++) {
+            // approvals are cleared on burn, so a nonexistent token never has one
+            approvals[i] = findApproved(tokenIds[i]);
+        }
+        return approvals;
+    }
+
+    /**
+     * Tokens without their own URI resolve to `baseURI + tokenId + suffix`
+     */
+    protected void setBaseURI(String baseURI, String suffix) {
+        this.baseURI = baseURI;
+        this.baseURISuffix = suffix == null ? "" : suffix;
+    }
+
+    /**
+     * Tokens from `fromTokenId` on, up to the next range start, resolve to `baseURI + tokenId + suffix`.
+     * Setting a start again replaces its base URI.
+     */
+    protected void setRangeBaseURI(BigInteger fromTokenId, String baseURI) {
+        require(baseURI != null, "IRC721Metadata: invalid base URI");
+        int index = rangeIndexOf(fromTokenId);
+        if(index >= 0 && rangeStarts.get(index).equals(fromTokenId)) {
+            rangeBaseURIs.set(index, baseURI);
+            return;
+        }
+        rangeStarts.add(index + 1, fromTokenId);
+        rangeBaseURIs.add(index + 1, baseURI);
     }
 
     protected void setTokenURI(BigInteger tokenId, String uri) {
@@ -71,9 +174,42 @@ public class IRC721FullBase extends IRC721EnumerableBase {
         tokenURIs.put(tokenId, uri);
     }
 
+    private String resolveTokenURI(BigInteger tokenId) {
+        String uri = tokenURIs.get(tokenId);
+        if(uri != null) {
+            return uri;
+        }
+        int index = rangeIndexOf(tokenId);
+        String prefix = index >= 0 ? rangeBaseURIs.get(index) : baseURI;
+        if(prefix == null) {
+            return null;
+        }
+        return prefix + tokenId.toString() + baseURISuffix;
+    }
+
+    /**
+     * @return The index of the last range starting at or before `tokenId`, -1 if there is none
+     */
+    private int rangeIndexOf(BigInteger tokenId) {
+        int low = 0;
+        int high = rangeStarts.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = rangeStarts.get(mid).compareTo(tokenId);
+            if(cmp == 0) {
+                return mid;
+            } else if(cmp < 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
     @Override
-    protected void burnBase(Address owner, BigInteger tokenId) {
-        super.burnBase(owner, tokenId);
+    protected void burnOwnedBase(Address owner, BigInteger tokenId) {
+        super.burnOwnedBase(owner, tokenId);
         tokenURIs.remove(tokenId);
     }
 
@@ -81,4 +217,13 @@ public class IRC721FullBase extends IRC721EnumerableBase {
         super.mintBase(to, tokenId);
         this.setTokenURI(tokenId, tokenURI);
     }
+
+    protected void batchMintWithTokenURIsBase(Address to, BigInteger[] tokenIds, String[] tokenURIs) {
+        require(tokenIds.length == tokenURIs.length, "IRC721Metadata: tokenIds and tokenURIs length mismatch");
+        super.batchMintBase(to, tokenIds);
+        // every token was just minted, so the existence check of setTokenURI can be skipped
+        for (int i = 0; i < tokenIds.length; i++) {
+            this.tokenURIs.put(tokenIds[i], tokenURIs[i]);
+        }
+    }
 }
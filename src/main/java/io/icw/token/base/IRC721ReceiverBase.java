@@ -26,8 +26,12 @@ package io.icw.token.base;
 import io.icw.contract.sdk.Address;
 import io.icw.contract.sdk.Msg;
 import io.icw.contract.sdk.annotation.Required;
+import io.icw.contract.sdk.annotation.View;
+import io.icw.token.interfaces.IIRC721BatchTokenReceiver;
 import io.icw.token.interfaces.IIRC721TokenReceiver;
+import io.icw.token.model.IRC721Custody;
 import io.icw.token.model.IRC721TransferRecord;
+import io.icw.token.model.TokenPage;
 
 import java.math.BigInteger;
 import java.util.HashMap;
@@ -39,13 +43,13 @@ import static io.icw.contract.sdk.Utils.require;
  * @author: PierreLuo
  * @date: 2019-06-13
  */
-public class IRC721ReceiverBase implements IIRC721TokenReceiver {
+public class IRC721ReceiverBase implements IIRC721TokenReceiver, IIRC721BatchTokenReceiver {
 
     /**
      * nrc721Address
-     * -- tokenId, IRC721TransferRecord
+     * -- held tokens with their IRC721TransferRecord
      */
-    private Map<Address, Map<BigInteger, IRC721TransferRecord>> nrc721tokenMap = new HashMap<Address, Map<BigInteger, IRC721TransferRecord>>();
+    private Map<Address, IRC721Custody> nrc721tokenMap = new HashMap<Address, IRC721Custody>();
 
     @Override
     public boolean onIRC721Received(@Required Address operator, @Required Address from, @Required BigInteger tokenId, @Required String data) {
@@ -53,38 +57,95 @@ public class IRC721ReceiverBase implements IIRC721TokenReceiver {
         if (!nrc721.isContract()) {
             return false;
         }
-        Map<BigInteger, IRC721TransferRecord> map = nrc721tokenMap.get(nrc721);
-        if (map == null) {
-            map = new HashMap<BigInteger, IRC721TransferRecord>();
-            map.put(tokenId, new IRC721TransferRecord(operator, from));
-            nrc721tokenMap.put(nrc721, map);
-            return true;
-        }
-        IRC721TransferRecord nrc721TransferRecord = map.get(tokenId);
-        if (nrc721TransferRecord != null) {
+        return custodyOf(nrc721).add(tokenId, new IRC721TransferRecord(operator, from));
+    }
+
+    @Override
+    public boolean onIRC721BatchReceived(@Required Address operator, @Required Address from, @Required BigInteger[] tokenIds, @Required String data) {
+        Address nrc721 = Msg.sender();
+        if (!nrc721.isContract()) {
             return false;
         }
-        nrc721TransferRecord = new IRC721TransferRecord(operator, from);
-        map.put(tokenId, nrc721TransferRecord);
+        IRC721Custody custody = custodyOf(nrc721);
+        // the whole batch is rejected if any token is already held, before anything is recorded
+        for (BigInteger tokenId : tokenIds) {
+            if (custody.holds(tokenId)) {
+                return false;
+            }
+        }
+        IRC721TransferRecord record = new IRC721TransferRecord(operator, from);
+        for (BigInteger tokenId : tokenIds) {
+            if (!custody.add(tokenId, record)) {
+                // the same token twice in the batch
+                return false;
+            }
+        }
         return true;
     }
 
     public void transferOtherIRC721(@Required Address nrc721, @Required Address to, @Required BigInteger tokenId) {
         require(!Msg.address().equals(nrc721), "Do nothing by yourself");
         require(nrc721.isContract(), "[" + nrc721.toString() + "] is not contract address");
-        Map<BigInteger, IRC721TransferRecord> map = nrc721tokenMap.get(nrc721);
-        require(map != null, "No IRC721 token received in [" + nrc721.toString() + "]");
-        require(map.remove(tokenId) != null, "No IRC721 token received in [" + nrc721.toString() + "]");
+        IRC721Custody custody = nrc721tokenMap.get(nrc721);
+        require(custody != null, "No IRC721 token received in [" + nrc721.toString() + "]");
+        require(custody.remove(tokenId), "No IRC721 token received in [" + nrc721.toString() + "]");
 
         String methodName = "transferFrom";
         if(to.isContract()) {
             methodName = "safeTransferFrom";
         }
-        String[][] args = new String[][]{
-                new String[]{Msg.address().toString()},
-                new String[]{to.toString()},
-                new String[]{tokenId.toString()}};
-        nrc721.call(methodName, "(Address from, Address to, BigInteger tokenId) return void", args, BigInteger.ZERO);
+        nrc721.call(methodName, "(Address from, Address to, BigInteger tokenId) return void", CallArgs.of(Msg.address(), to, tokenId, null), BigInteger.ZERO);
 
     }
+
+    /**
+     * Move several held tokens of one collection with a single `batchTransferFrom` (or `batchSafeTransferFrom`) call
+     */
+    public void transferOtherIRC721Batch(@Required Address nrc721, @Required Address to, @Required BigInteger[] tokenIds) {
+        require(!Msg.address().equals(nrc721), "Do nothing by yourself");
+        require(nrc721.isContract(), "[" + nrc721.toString() + "] is not contract address");
+        require(tokenIds.length > 0, "No IRC721 token to transfer");
+        IRC721Custody custody = nrc721tokenMap.get(nrc721);
+        require(custody != null, "No IRC721 token received in [" + nrc721.toString() + "]");
+        for (BigInteger tokenId : tokenIds) {
+            require(custody.remove(tokenId), "No IRC721 token [" + tokenId + "] received in [" + nrc721.toString() + "]");
+        }
+
+        String methodName = "batchTransferFrom";
+        if(to.isContract()) {
+            methodName = "batchSafeTransferFrom";
+        }
+        nrc721.call(methodName, "(Address from, Address to, BigInteger[] tokenIds) return void",
+                CallArgs.of(Msg.address(), to, CallArgs.tokenIds(tokenIds), null), BigInteger.ZERO);
+    }
+
+    /**
+     * @return The count of tokens of `nrc721` held by this contract
+     */
+    @View
+    public int heldCount(@Required Address nrc721) {
+        IRC721Custody custody = nrc721tokenMap.get(nrc721);
+        return custody == null ? 0 : custody.size();
+    }
+
+    /**
+     * Page through the tokens of `nrc721` held by this contract
+     * @param offset Index of the first token of the page, `0` or the `next` of the previous page
+     * @param limit Maximum count of tokens in the page, at most 500
+     * @return `{"total":count,"next":offset of the next page or -1,"tokenIds":[...]}`
+     */
+    @View
+    public String heldTokensPaged(@Required Address nrc721, @Required int offset, @Required int limit) {
+        IRC721Custody custody = nrc721tokenMap.get(nrc721);
+        return TokenPage.toJson(custody == null ? null : custody.tokens(), offset, limit, "IRC721Receiver");
+    }
+
+    private IRC721Custody custodyOf(Address nrc721) {
+        IRC721Custody custody = nrc721tokenMap.get(nrc721);
+        if (custody == null) {
+            custody = new IRC721Custody();
+            nrc721tokenMap.put(nrc721, custody);
+        }
+        return custody;
+    }
 }
@@ -0,0 +1,47 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.interfaces;
+
+import io.icw.contract.sdk.Address;
+import io.icw.contract.sdk.annotation.Required;
+
+import java.math.BigInteger;
+
+public interface IIRC721BatchTokenReceiver {
+
+    /**
+     * Handle the receipt of a batch of NFTs.
+     * The IRC721 smart contract calls this function once on the recipient
+     *  after a `batchSafeTransferFrom`, instead of calling `onIRC721Received`
+     *  for every token. This function MAY revert and reject the whole batch.
+     *  Note: the contract address is always the message sender.
+     * @param operator The address which called `batchSafeTransferFrom` function
+     * @param from The address which previously owned the tokens
+     * @param tokenIds The NFT identifiers which are being transferred
+     * @param data Additional data with no specified format
+     * @return `true` if it accepts the NFTs, otherwise `false`
+     */
+    boolean onIRC721BatchReceived(@Required Address operator, @Required Address from, @Required BigInteger[] tokenIds, @Required String data);
+}
@@ -0,0 +1,89 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.icw.token.model;
+
+import io.icw.token.storage.TokenIdIntMap;
+import io.icw.token.storage.TokenIdMap;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+
+/**
+ * The tokens of one IRC721 collection held by a receiver contract, with their transfer records.
+ * <p>The held token ids are also kept in a list (swap and pop on removal), so they can be counted and paged.</p>
+ */
+public class IRC721Custody {
+
+    private TokenIdMap<IRC721TransferRecord> records = new TokenIdMap<IRC721TransferRecord>();
+    private ArrayList<BigInteger> tokens = new ArrayList<BigInteger>();
+    private TokenIdIntMap tokensIndex = new TokenIdIntMap();
+
+    public int size() {
+        return tokens.size();
+    }
+
+    public boolean holds(BigInteger tokenId) {
+        return records.containsKey(tokenId);
+    }
+
+    public IRC721TransferRecord record(BigInteger tokenId) {
+        return records.get(tokenId);
+    }
+
+    public ArrayList<BigInteger> tokens() {
+        return tokens;
+    }
+
+    /**
+     * @return false if `tokenId` is already held
+     */
+    public boolean add(BigInteger tokenId, IRC721TransferRecord record) {
+        if(records.containsKey(tokenId)) {
+            return false;
+        }
+        records.put(tokenId, record);
+        tokensIndex.put(tokenId, tokens.size());
+        tokens.add(tokenId);
+        return true;
+    }
+
+    /**
+     * @return false if `tokenId` is not held
+     */
+    public boolean remove(BigInteger tokenId) {
+        if(records.remove(tokenId) == null) {
+            return false;
+        }
+        int lastIndex = tokens.size() - 1;
+        int index = tokensIndex.get(tokenId);
+        if(index != lastIndex) {
+            BigInteger lastTokenId = tokens.get(lastIndex);
+            tokens.set(index, lastTokenId);
+            tokensIndex.put(lastTokenId, index);
+        }
+        tokens.remove(lastIndex);
+        tokensIndex.remove(tokenId);
+        return true;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.icw.token.model;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import static io.icw.contract.sdk.Utils.require;
+
+/**
+ * Renders one page of a token id list as `{"total":size,"next":offset of the next page or -1,"tokenIds":[...]}`,
+ * or of another list under its own field name, such as the members of a role.
+ */
+public class TokenPage {
+
+    public static final int MAX_PAGE_SIZE = 500;
+
+    private TokenPage() {
+    }
+
+    /**
+     * @param tokens The whole list, null for an empty one
+     * @param scope Prefix of the revert messages, such as `IRC721Enumerable`
+     */
+    public static String toJson(List<BigInteger> tokens, int offset, int limit, String scope) {
+        return toJson(tokens, offset, limit, scope, "tokenIds", false);
+    }
+
+    /**
+     * @param items The whole list, null for an empty one
+     * @param field Name of the field holding the page items
+     * @param quoted Render the items as JSON strings, such as addresses
+     */
+    public static String toJson(List<?> items, int offset, int limit, String scope, String field, boolean quoted) {
+        require(offset >= 0, scope + ": page offset out of bounds");
+        require(limit > 0 && limit <= MAX_PAGE_SIZE, scope + ": page limit out of bounds");
+        int total = items == null ? 0 : items.size();
+        int end = offset >= total || total - offset <= limit ? total : offset + limit;
+
+        // Removals reorder the list (swap and pop), so a cursor is only stable while no item leaves the list
+        StringBuilder page = new StringBuilder(32 + (end > offset ? (end - offset) * (quoted ? 40 : 8) : 0));
+        page.append("{\"total\":").append(total)
+                .append(",\"next\":").append(end < total ? end : -1)
+                .append(",\"").append(field).append("\":[");
+        for (int i = offset; i < end; i++) {
+            if(i > offset) {
+                page.append(',');
+            }
+            if(quoted) {
+                page.append('"').append(items.get(i)).append('"');
+            } else {
+                page.append(items.get(i));
+            }
+        }
+        return page.append("]}").toString();
+    }
+}
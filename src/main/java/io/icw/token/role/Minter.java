@@ -25,11 +25,9 @@ package io.icw.token.role;
 
 import io.icw.contract.sdk.Address;
 import io.icw.contract.sdk.Msg;
+import io.icw.contract.sdk.annotation.Required;
 import io.icw.contract.sdk.annotation.View;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import static io.icw.contract.sdk.Utils.require;
 
 /**
@@ -38,10 +36,10 @@ import static io.icw.contract.sdk.Utils.require;
  */
 public class Minter {
 
-    private Map<Address, Boolean> minters = new HashMap<Address, Boolean>();
+    private RoleMembers minters = new RoleMembers();
 
     protected Minter() {
-        minters.put(Msg.sender(), true);
+        minters.add(Msg.sender());
     }
 
     protected void onlyMinter() {
@@ -50,16 +48,46 @@ public class Minter {
 
     @View
     public boolean isMinter(Address address) {
-        return minters.containsKey(address);
+        return minters.has(address);
     }
 
     public void addMinter(Address address) {
         onlyMinter();
-        minters.put(address, true);
+        minters.add(address);
+    }
+
+    public void addMinters(@Required Address[] addresses) {
+        onlyMinter();
+        for (Address address : addresses) {
+            minters.add(address);
+        }
+    }
+
+    public void removeMinters(@Required Address[] addresses) {
+        onlyMinter();
+        for (Address address : addresses) {
+            minters.remove(address);
+        }
     }
 
     public void renounceMinter() {
         minters.remove(Msg.sender());
     }
 
+    @View
+    public int minterCount() {
+        return minters.size();
+    }
+
+    /**
+     * Page through the minters
+     * @param offset Index of the first minter of the page, `0` or the `next` of the previous page
+     * @param limit Maximum count of minters in the page, at most 500
+     * @return `{"total":count,"next":offset of the next page or -1,"members":["address",...]}`
+     */
+    @View
+    public String mintersPaged(@Required int offset, @Required int limit) {
+        return minters.toJson(offset, limit, "MinterRole");
+    }
+
 }
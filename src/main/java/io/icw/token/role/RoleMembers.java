@@ -0,0 +1,94 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package io.icw.token.role;
+
+import io.icw.contract.sdk.Address;
+import io.icw.token.model.TokenPage;
+import io.icw.token.storage.AddressIntMap;
+
+import java.util.ArrayList;
+
+/**
+ * The members of one role, such as minters, pausers or URI setters.
+ * <p>Membership is one probe in an address index, and the members are also kept in a list
+ * (swap and pop on removal) to be counted and paged.</p>
+ */
+public class RoleMembers {
+
+    private ArrayList<Address> members = new ArrayList<Address>();
+    /**
+     * Position in `members` plus one, absent for non-members
+     */
+    private AddressIntMap positions = new AddressIntMap();
+
+    public boolean has(Address account) {
+        return positions.get(account) != 0;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public Address get(int index) {
+        return members.get(index);
+    }
+
+    /**
+     * @return false if `account` is already a member
+     */
+    public boolean add(Address account) {
+        if(has(account)) {
+            return false;
+        }
+        members.add(account);
+        positions.add(account, members.size());
+        return true;
+    }
+
+    /**
+     * @return false if `account` is not a member
+     */
+    public boolean remove(Address account) {
+        int position = positions.get(account);
+        if(position == 0) {
+            return false;
+        }
+        int lastIndex = members.size() - 1;
+        if(position - 1 != lastIndex) {
+            Address last = members.get(lastIndex);
+            members.set(position - 1, last);
+            positions.add(last, position - (lastIndex + 1));
+        }
+        members.remove(lastIndex);
+        positions.add(account, -position);
+        return true;
+    }
+
+    /**
+     * @return `{"total":count,"next":offset of the next page or -1,"members":["address",...]}`
+     */
+    public String toJson(int offset, int limit, String scope) {
+        return TokenPage.toJson(members, offset, limit, scope, "members", true);
+    }
+}
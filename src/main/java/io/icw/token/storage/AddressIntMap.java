@@ -0,0 +1,157 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+
+/**
+ * Open-addressing map from addresses to primitive `int` counts, such as token balances.
+ * <p>Counts are updated in place without a holder object, and a count that drops to zero removes its entry.
+ * Linear probing with backward-shift deletion, a null key marks an empty slot.</p>
+ */
+public class AddressIntMap {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Address[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    public AddressIntMap() {
+        this.keys = new Address[DEFAULT_CAPACITY];
+        this.values = new int[DEFAULT_CAPACITY];
+        this.mask = DEFAULT_CAPACITY - 1;
+    }
+
+    /**
+     * @return The count of addresses with a non-zero count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The count of `key`, 0 if it has none
+     */
+    public int get(Address key) {
+        int slot = slotOf(key);
+        return slot < 0 ? 0 : values[slot];
+    }
+
+    /**
+     * Add `delta`, possibly negative, to the count of `key`
+     * @return The new count
+     */
+    public int add(Address key, int delta) {
+        int slot = LongHashing.slot(key.hashCode(), mask);
+        while (keys[slot] != null) {
+            if(keys[slot].equals(key)) {
+                int value = values[slot] + delta;
+                if(value == 0) {
+                    removeSlot(slot);
+                } else {
+                    values[slot] = value;
+                }
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if(delta == 0) {
+            return 0;
+        }
+        keys[slot] = key;
+        values[slot] = delta;
+        if(++size * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        return delta;
+    }
+
+    /**
+     * @return The count of slots, with {@link #keyAt(int)} and {@link #valueAt(int)} to walk the entries
+     */
+    public int slots() {
+        return keys.length;
+    }
+
+    /**
+     * @return The key in `slot`, null for an empty slot
+     */
+    public Address keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    private int slotOf(Address key) {
+        int slot = LongHashing.slot(key.hashCode(), mask);
+        while (keys[slot] != null) {
+            if(keys[slot].equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void removeSlot(int slot) {
+        // shift the following entries of the probe chain back, so lookups never stop at the freed slot
+        int gap = slot;
+        int i = (gap + 1) & mask;
+        while (keys[i] != null) {
+            int ideal = LongHashing.slot(keys[i].hashCode(), mask);
+            if(((i - ideal) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[gap] = null;
+        values[gap] = 0;
+        size--;
+    }
+
+    private void resize(int capacity) {
+        Address[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new Address[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if(oldKeys[i] != null) {
+                int slot = LongHashing.slot(oldKeys[i].hashCode(), mask);
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+
+/**
+ * Open-addressing set of `(first, second)` address pairs, such as `(owner, operator)` approvals.
+ * <p>The pair is the key, so a lookup is one probe sequence without allocating a key object or a nested map.
+ * Linear probing with backward-shift deletion, a null `first` marks an empty slot.</p>
+ */
+public class AddressPairSet {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Address[] firsts;
+    private Address[] seconds;
+    private int size;
+    private int mask;
+
+    public AddressPairSet() {
+        this.firsts = new Address[DEFAULT_CAPACITY];
+        this.seconds = new Address[DEFAULT_CAPACITY];
+        this.mask = DEFAULT_CAPACITY - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(Address first, Address second) {
+        return slotOf(first, second) >= 0;
+    }
+
+    /**
+     * @return true if the pair was not in the set
+     */
+    public boolean add(Address first, Address second) {
+        int slot = slot(first, second);
+        while (firsts[slot] != null) {
+            if(firsts[slot].equals(first) && seconds[slot].equals(second)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        firsts[slot] = first;
+        seconds[slot] = second;
+        if(++size * 2 > firsts.length) {
+            resize(firsts.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the pair was in the set
+     */
+    public boolean remove(Address first, Address second) {
+        int slot = slotOf(first, second);
+        if(slot < 0) {
+            return false;
+        }
+        // shift the following entries of the probe chain back, so lookups never stop at the freed slot
+        int gap = slot;
+        int i = (gap + 1) & mask;
+        while (firsts[i] != null) {
+            int ideal = slot(firsts[i], seconds[i]);
+            if(((i - ideal) & mask) >= ((i - gap) & mask)) {
+                firsts[gap] = firsts[i];
+                seconds[gap] = seconds[i];
+                gap = i;
+            }
+            i = (i + 1) & mask;
+        }
+        firsts[gap] = null;
+        seconds[gap] = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * @return The count of slots, with {@link #firstAt(int)} and {@link #secondAt(int)} to walk the pairs
+     */
+    public int slots() {
+        return firsts.length;
+    }
+
+    /**
+     * @return The first address of the pair in `slot`, null for an empty slot
+     */
+    public Address firstAt(int slot) {
+        return firsts[slot];
+    }
+
+    public Address secondAt(int slot) {
+        return seconds[slot];
+    }
+
+    private int slotOf(Address first, Address second) {
+        int slot = slot(first, second);
+        while (firsts[slot] != null) {
+            if(firsts[slot].equals(first) && seconds[slot].equals(second)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slot(Address first, Address second) {
+        return LongHashing.slot(((long) first.hashCode() << 32) ^ (second.hashCode() & 0xFFFFFFFFL), mask);
+    }
+
+    private void resize(int capacity) {
+        Address[] oldFirsts = firsts;
+        Address[] oldSeconds = seconds;
+        firsts = new Address[capacity];
+        seconds = new Address[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldFirsts.length; i++) {
+            if(oldFirsts[i] != null) {
+                int slot = slot(oldFirsts[i], oldSeconds[i]);
+                while (firsts[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                firsts[slot] = oldFirsts[i];
+                seconds[slot] = oldSeconds[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+/**
+ * The balances of one holder, by block, for {@link OwnershipHistory}.
+ */
+class BalanceCheckpoints {
+
+    private long[] blocks = new long[2];
+    private int[] balances = new int[2];
+    private int size;
+
+    void record(long block, int balance) {
+        if(size > 0 && blocks[size - 1] == block) {
+            balances[size - 1] = balance;
+            return;
+        }
+        if(size == blocks.length) {
+            blocks = OwnershipHistory.grow(blocks);
+            int[] grown = new int[balances.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = balances[i];
+            }
+            balances = grown;
+        }
+        blocks[size] = block;
+        balances[size] = balance;
+        size++;
+    }
+
+    int balanceAt(long block) {
+        int index = OwnershipHistory.checkpointAt(blocks, size, block);
+        return index < 0 ? 0 : balances[index];
+    }
+}
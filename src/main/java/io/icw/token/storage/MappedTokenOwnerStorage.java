@@ -0,0 +1,69 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+
+import java.math.BigInteger;
+
+import static io.icw.contract.sdk.Utils.require;
+
+/**
+ * One map entry per token, token ids may be minted in any order.
+ */
+public class MappedTokenOwnerStorage implements TokenOwnerStorage {
+
+    private TokenIdMap<Address> tokenOwner = new TokenIdMap<Address>();
+
+    @Override
+    public Address ownerOf(BigInteger tokenId) {
+        return tokenOwner.get(tokenId);
+    }
+
+    @Override
+    public void mint(BigInteger tokenId, Address owner) {
+        require(!tokenOwner.containsKey(tokenId), "IRC721: token already minted");
+        tokenOwner.put(tokenId, owner);
+    }
+
+    @Override
+    public void mintRange(BigInteger startId, int count, Address owner) {
+        BigInteger tokenId = startId;
+        for (int i = 0; i < count; i++) {
+            mint(tokenId, owner);
+            tokenId = tokenId.add(BigInteger.ONE);
+        }
+    }
+
+    @Override
+    public void transfer(BigInteger tokenId, Address from, Address to) {
+        tokenOwner.put(tokenId, to);
+    }
+
+    @Override
+    public void burn(BigInteger tokenId, Address owner) {
+        tokenOwner.remove(tokenId);
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+
+/**
+ * The owners of one token, by block, for {@link OwnershipHistory}.
+ */
+class OwnerCheckpoints {
+
+    private long[] blocks = new long[2];
+    private Address[] owners = new Address[2];
+    private int size;
+
+    void record(long block, Address owner) {
+        if(size > 0 && blocks[size - 1] == block) {
+            owners[size - 1] = owner;
+            return;
+        }
+        if(size == blocks.length) {
+            blocks = OwnershipHistory.grow(blocks);
+            Address[] grown = new Address[owners.length * 2];
+            for (int i = 0; i < size; i++) {
+                grown[i] = owners[i];
+            }
+            owners = grown;
+        }
+        blocks[size] = block;
+        owners[size] = owner;
+        size++;
+    }
+
+    Address ownerAt(long block) {
+        int index = OwnershipHistory.checkpointAt(blocks, size, block);
+        return index < 0 ? null : owners[index];
+    }
+}
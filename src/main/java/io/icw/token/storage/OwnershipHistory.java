@@ -0,0 +1,105 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Owner checkpoints per token and balance checkpoints per holder, for point-in-time queries.
+ * <p>A checkpoint is appended for each block in which the value changed, later changes in the same block
+ * overwrite it, so a query answers with the value at the end of a block by a binary search over the
+ * checkpoints of one token or holder.</p>
+ */
+public class OwnershipHistory {
+
+    private TokenIdMap<OwnerCheckpoints> owners = new TokenIdMap<OwnerCheckpoints>();
+    private Map<Address, BalanceCheckpoints> balances = new HashMap<Address, BalanceCheckpoints>();
+
+    /**
+     * @param owner The owner from `block` on, null once burned
+     */
+    public void recordOwner(long block, BigInteger tokenId, Address owner) {
+        OwnerCheckpoints checkpoints = owners.get(tokenId);
+        if(checkpoints == null) {
+            checkpoints = new OwnerCheckpoints();
+            owners.put(tokenId, checkpoints);
+        }
+        checkpoints.record(block, owner);
+    }
+
+    public void recordBalance(long block, Address holder, int balance) {
+        BalanceCheckpoints checkpoints = balances.get(holder);
+        if(checkpoints == null) {
+            checkpoints = new BalanceCheckpoints();
+            balances.put(holder, checkpoints);
+        }
+        checkpoints.record(block, balance);
+    }
+
+    /**
+     * @return The owner of `tokenId` at the end of `block`, null if it did not exist then
+     */
+    public Address ownerAt(BigInteger tokenId, long block) {
+        OwnerCheckpoints checkpoints = owners.get(tokenId);
+        return checkpoints == null ? null : checkpoints.ownerAt(block);
+    }
+
+    /**
+     * @return The balance of `holder` at the end of `block`
+     */
+    public int balanceAt(Address holder, long block) {
+        BalanceCheckpoints checkpoints = balances.get(holder);
+        return checkpoints == null ? 0 : checkpoints.balanceAt(block);
+    }
+
+    /**
+     * @return The index of the last checkpoint at or before `block`, -1 if there is none
+     */
+    static int checkpointAt(long[] blocks, int size, long block) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if(blocks[mid] <= block) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    static long[] grow(long[] blocks) {
+        long[] grown = new long[blocks.length * 2];
+        for (int i = 0; i < blocks.length; i++) {
+            grown[i] = blocks[i];
+        }
+        return grown;
+    }
+}
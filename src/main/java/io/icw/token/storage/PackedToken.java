@@ -0,0 +1,74 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+
+/**
+ * The whole per-token state of {@link PackedTokenStorage} in one record.
+ */
+public class PackedToken {
+
+    private Address owner;
+    private Address approved;
+    private int ownerIndex;
+    private int globalIndex;
+
+    public PackedToken(Address owner) {
+        this.owner = owner;
+    }
+
+    public Address getOwner() {
+        return owner;
+    }
+
+    public void setOwner(Address owner) {
+        this.owner = owner;
+    }
+
+    public Address getApproved() {
+        return approved;
+    }
+
+    public void setApproved(Address approved) {
+        this.approved = approved;
+    }
+
+    public int getOwnerIndex() {
+        return ownerIndex;
+    }
+
+    public void setOwnerIndex(int ownerIndex) {
+        this.ownerIndex = ownerIndex;
+    }
+
+    public int getGlobalIndex() {
+        return globalIndex;
+    }
+
+    public void setGlobalIndex(int globalIndex) {
+        this.globalIndex = globalIndex;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+
+import java.math.BigInteger;
+
+import static io.icw.contract.sdk.Utils.require;
+
+/**
+ * Keeps owner, approved address and both enumeration indexes of a token in a single {@link PackedToken},
+ * instead of one entry in each of four maps.
+ * <p>A transfer loads and rewrites one record. Pass the same instance as owner, approval and index storage:</p>
+ * <pre>
+ *     super(name, symbol, new PackedTokenStorage());
+ * </pre>
+ */
+public class PackedTokenStorage implements TokenOwnerStorage, TokenApprovalStorage, TokenIndexStorage {
+
+    private TokenIdMap<PackedToken> tokens = new TokenIdMap<PackedToken>();
+
+    @Override
+    public Address ownerOf(BigInteger tokenId) {
+        PackedToken token = tokens.get(tokenId);
+        return token == null ? null : token.getOwner();
+    }
+
+    @Override
+    public void mint(BigInteger tokenId, Address owner) {
+        require(!tokens.containsKey(tokenId), "IRC721: token already minted");
+        tokens.put(tokenId, new PackedToken(owner));
+    }
+
+    @Override
+    public void mintRange(BigInteger startId, int count, Address owner) {
+        BigInteger tokenId = startId;
+        for (int i = 0; i < count; i++) {
+            mint(tokenId, owner);
+            tokenId = tokenId.add(BigInteger.ONE);
+        }
+    }
+
+    /**
+     * Also drops the approval, so a transfer rewrites the record once
+     */
+    @Override
+    public void transfer(BigInteger tokenId, Address from, Address to) {
+        PackedToken token = tokens.get(tokenId);
+        token.setOwner(to);
+        token.setApproved(null);
+    }
+
+    /**
+     * Also drops the approval and the indexes, the enumeration must be updated before
+     */
+    @Override
+    public void burn(BigInteger tokenId, Address owner) {
+        tokens.remove(tokenId);
+    }
+
+    @Override
+    public Address approvedOf(BigInteger tokenId) {
+        PackedToken token = tokens.get(tokenId);
+        return token == null ? null : token.getApproved();
+    }
+
+    @Override
+    public void approve(BigInteger tokenId, Address approved) {
+        tokens.get(tokenId).setApproved(approved);
+    }
+
+    @Override
+    public void clearApproval(BigInteger tokenId) {
+        PackedToken token = tokens.get(tokenId);
+        if(token != null) {
+            token.setApproved(null);
+        }
+    }
+
+    @Override
+    public int ownerIndexOf(BigInteger tokenId) {
+        return tokens.get(tokenId).getOwnerIndex();
+    }
+
+    @Override
+    public void setOwnerIndex(BigInteger tokenId, int index) {
+        tokens.get(tokenId).setOwnerIndex(index);
+    }
+
+    @Override
+    public int globalIndexOf(BigInteger tokenId) {
+        return tokens.get(tokenId).getGlobalIndex();
+    }
+
+    @Override
+    public void setGlobalIndex(BigInteger tokenId, int index) {
+        tokens.get(tokenId).setGlobalIndex(index);
+    }
+
+    @Override
+    public void removeIndexes(BigInteger tokenId) {
+        // the record goes away with the token
+    }
+}
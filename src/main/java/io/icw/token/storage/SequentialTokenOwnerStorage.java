@@ -0,0 +1,105 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.Set;
+
+import static io.icw.contract.sdk.Utils.require;
+
+/**
+ * Compact ownership for collections minting dense, sequential token ids (ERC721A layout).
+ * <p>The owner is only written at the first token of each run minted to the same owner,
+ * `ownerOf` scans back to the nearest written slot. A transfer or burn writes the slot of
+ * the next token first, so the rest of the run keeps resolving to the previous owner.</p>
+ * <p>Token ids must be minted in order, starting at `startTokenId`.</p>
+ */
+public class SequentialTokenOwnerStorage implements TokenOwnerStorage {
+
+    private BigInteger startTokenId;
+    private BigInteger nextTokenId;
+    /**
+     * tokenId -- owner of the run starting at tokenId
+     */
+    private TokenIdMap<Address> runOwners = new TokenIdMap<Address>();
+    private Set<BigInteger> burnedTokens = new HashSet<BigInteger>();
+
+    public SequentialTokenOwnerStorage(BigInteger startTokenId) {
+        this.startTokenId = startTokenId;
+        this.nextTokenId = startTokenId;
+    }
+
+    @Override
+    public Address ownerOf(BigInteger tokenId) {
+        if(tokenId.compareTo(startTokenId) < 0 || tokenId.compareTo(nextTokenId) >= 0 || burnedTokens.contains(tokenId)) {
+            return null;
+        }
+        // the slot of startTokenId is always written, so the scan terminates
+        BigInteger slot = tokenId;
+        Address owner = runOwners.get(slot);
+        while (owner == null) {
+            slot = slot.subtract(BigInteger.ONE);
+            owner = runOwners.get(slot);
+        }
+        return owner;
+    }
+
+    @Override
+    public void mint(BigInteger tokenId, Address owner) {
+        mintRange(tokenId, 1, owner);
+    }
+
+    @Override
+    public void mintRange(BigInteger startId, int count, Address owner) {
+        require(startId.compareTo(nextTokenId) >= 0, "IRC721: token already minted");
+        require(startId.equals(nextTokenId), "IRC721: token ids must be minted sequentially");
+
+        runOwners.put(startId, owner);
+        nextTokenId = nextTokenId.add(BigInteger.valueOf(count));
+    }
+
+    @Override
+    public void transfer(BigInteger tokenId, Address from, Address to) {
+        initializeNextSlot(tokenId, from);
+        runOwners.put(tokenId, to);
+    }
+
+    @Override
+    public void burn(BigInteger tokenId, Address owner) {
+        initializeNextSlot(tokenId, owner);
+        runOwners.remove(tokenId);
+        burnedTokens.add(tokenId);
+    }
+
+    private void initializeNextSlot(BigInteger tokenId, Address owner) {
+        BigInteger nextId = tokenId.add(BigInteger.ONE);
+        if(nextId.compareTo(nextTokenId) < 0 && !burnedTokens.contains(nextId) && !runOwners.containsKey(nextId)) {
+            runOwners.put(nextId, owner);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Map from token id to a non-negative `int`, see {@link TokenIdMap}.
+ */
+public class TokenIdIntMap {
+
+    /**
+     * Returned by {@link #get(BigInteger)} for a token id without value
+     */
+    public static final int NO_VALUE = -1;
+
+    private LongIntHashMap longIds = new LongIntHashMap();
+    private Map<BigInteger, Integer> bigIds;
+
+    public int get(BigInteger tokenId) {
+        if(LongHashing.fitsInLong(tokenId)) {
+            return longIds.get(tokenId.longValue(), NO_VALUE);
+        }
+        if(bigIds == null) {
+            return NO_VALUE;
+        }
+        Integer value = bigIds.get(tokenId);
+        return value == null ? NO_VALUE : value;
+    }
+
+    public void put(BigInteger tokenId, int value) {
+        if(LongHashing.fitsInLong(tokenId)) {
+            longIds.put(tokenId.longValue(), value);
+            return;
+        }
+        if(bigIds == null) {
+            bigIds = new HashMap<BigInteger, Integer>();
+        }
+        bigIds.put(tokenId, value);
+    }
+
+    public void remove(BigInteger tokenId) {
+        if(LongHashing.fitsInLong(tokenId)) {
+            longIds.remove(tokenId.longValue());
+        } else if(bigIds != null) {
+            bigIds.remove(tokenId);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Map keyed by token id. Ids that fit in 64 bits are stored as primitive keys of a {@link LongHashMap},
+ * larger ids fall back to a `HashMap` keyed by `BigInteger`.
+ */
+public class TokenIdMap<V> {
+
+    private LongHashMap<V> longIds = new LongHashMap<V>();
+    private Map<BigInteger, V> bigIds;
+
+    public int size() {
+        return bigIds == null ? longIds.size() : longIds.size() + bigIds.size();
+    }
+
+    public boolean containsKey(BigInteger tokenId) {
+        if(LongHashing.fitsInLong(tokenId)) {
+            return longIds.containsKey(tokenId.longValue());
+        }
+        return bigIds != null && bigIds.containsKey(tokenId);
+    }
+
+    public V get(BigInteger tokenId) {
+        if(LongHashing.fitsInLong(tokenId)) {
+            return longIds.get(tokenId.longValue());
+        }
+        return bigIds == null ? null : bigIds.get(tokenId);
+    }
+
+    public V put(BigInteger tokenId, V value) {
+        if(LongHashing.fitsInLong(tokenId)) {
+            return longIds.put(tokenId.longValue(), value);
+        }
+        if(bigIds == null) {
+            bigIds = new HashMap<BigInteger, V>();
+        }
+        return bigIds.put(tokenId, value);
+    }
+
+    public V remove(BigInteger tokenId) {
+        if(LongHashing.fitsInLong(tokenId)) {
+            return longIds.remove(tokenId.longValue());
+        }
+        return bigIds == null ? null : bigIds.remove(tokenId);
+    }
+}
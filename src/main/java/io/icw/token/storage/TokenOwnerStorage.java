@@ -0,0 +1,53 @@
+/**
+ * MIT License
+ * <p>
+ * Copyright (c) 2017-2018 nuls.io
+ * <p>
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package io.icw.token.storage;
+
+import io.icw.contract.sdk.Address;
+
+import java.math.BigInteger;
+
+/**
+ * Holds the owner of every existing token for {@link io.icw.token.base.IRC721Base}.
+ * Callers have already checked ownership and existence, except for the mint methods
+ * which must reject token ids that already exist.
+ */
+public interface TokenOwnerStorage {
+
+    /**
+     * @return The owner of `tokenId`, null if the token does not exist
+     */
+    Address ownerOf(BigInteger tokenId);
+
+    void mint(BigInteger tokenId, Address owner);
+
+    /**
+     * Mint `count` consecutive tokens starting at `startId` to `owner`
+     */
+    void mintRange(BigInteger startId, int count, Address owner);
+
+    void transfer(BigInteger tokenId, Address from, Address to);
+
+    void burn(BigInteger tokenId, Address owner);
+}